@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the regular expression that has been used to decide whether a query needs to be fully parsed for
+ * {@code CALL { … } IN TRANSACTIONS} with {@link CallInTransactionsScanner}. Both variants are followed by the parser
+ * if they find a candidate, just like in {@link AbstractQueryEvaluator}.
+ * <p>
+ * Run with {@code ./mvnw -pl neo4j-http-benchmarks -am package -Dfast && java -jar neo4j-http-benchmarks/target/benchmarks.jar TransactionModeBenchmark}.
+ *
+ * @author Michael J. Simons
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionModeBenchmark {
+
+	private static final Pattern CALL_PATTERN = Pattern.compile("(?ims)(?<!`)([^`\\s*]\\s*+CALL\\s*\\{.*}\\s*IN\\s+TRANSACTIONS)(?!`)");
+
+	/**
+	 * Roughly the number of characters in the generated query.
+	 */
+	@Param({"1000", "50000", "200000"})
+	public int size;
+
+	/**
+	 * The shape of the query.
+	 */
+	@Param({"PLAIN", "SUBQUERIES", "IN_TRANSACTIONS"})
+	public String shape;
+
+	private String query;
+
+	/**
+	 * Generates a query of the requested size and shape.
+	 */
+	@Setup
+	public void generateQuery() {
+
+		var numberOfItems = size / 8;
+		var list = IntStream.range(0, numberOfItems).mapToObj(i -> "'" + i + "'").collect(Collectors.joining(", ", "[", "]"));
+		this.query = switch (shape) {
+			case "PLAIN" -> "MATCH (n:Person) WHERE n.id IN " + list + " RETURN n";
+			// Many subqueries, none of them in transactions: Worst case for the regex
+			case "SUBQUERIES" -> IntStream.range(0, numberOfItems / 8)
+				.mapToObj(i -> "CALL { WITH n RETURN n.x AS x" + i + " }")
+				.collect(Collectors.joining("\n", "MATCH (n) WHERE n.id IN " + list + "\n", "\nRETURN n"));
+			case "IN_TRANSACTIONS" -> "UNWIND " + list + " AS id CALL { WITH id CREATE (n:Person {id: id}) } IN TRANSACTIONS";
+			default -> throw new IllegalArgumentException(shape);
+		};
+	}
+
+	/**
+	 * {@return the decision made by the regular expression plus parser}
+	 */
+	@Benchmark
+	public boolean regexAndParser() {
+
+		return CALL_PATTERN.matcher(query).find() && AbstractQueryEvaluator.getCharacteristics(query).callInTx();
+	}
+
+	/**
+	 * {@return the decision made by the scanner plus parser}
+	 */
+	@Benchmark
+	public boolean scannerAndParser() {
+
+		return CallInTransactionsScanner.containsCallInTransactions(query) && AbstractQueryEvaluator.getCharacteristics(query).callInTx();
+	}
+}
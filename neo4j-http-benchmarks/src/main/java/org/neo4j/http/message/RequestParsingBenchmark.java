@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.jackson.JsonObjectDeserializer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Compares the tree based parameter deserializer that has been used before with the token based one in
+ * {@link DefaultRequestFormatModule}. The payload is a list of rows, as typically used with {@code UNWIND $rows}.
+ * <p>
+ * Run with {@code ./mvnw -pl neo4j-http-benchmarks -am package -Dfast && java -jar neo4j-http-benchmarks/target/benchmarks.jar RequestParsingBenchmark -prof gc}
+ * to include allocation rates.
+ *
+ * @author Michael J. Simons
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+	/**
+	 * The number of rows in the payload.
+	 */
+	@Param({"1000", "100000"})
+	public int rows;
+
+	private ObjectMapper treeBased;
+
+	private ObjectMapper tokenBased;
+
+	private byte[] payload;
+
+	/**
+	 * Creates the mappers and the payload.
+	 */
+	@Setup
+	public void prepare() {
+
+		this.treeBased = new ObjectMapper().registerModule(new SimpleModule().addDeserializer(Value.class, new TreeBasedParameterDeserializer()));
+		this.tokenBased = new ObjectMapper().registerModule(new DefaultRequestFormatModule());
+		this.payload = IntStream.range(0, rows)
+			.mapToObj(i -> """
+				{"id": %d, "name": "Person %1$d", "score": %1$d.5, "active": %b, "tags": ["a", "b", "c"], "born": {"$type": "Date", "_value": "2022-10-21"}}"""
+				.formatted(i, i % 2 == 0))
+			.collect(Collectors.joining(",", "{\"rows\": [", "]}"))
+			.getBytes();
+	}
+
+	/**
+	 * {@return the parameters read via a tree}
+	 */
+	@Benchmark
+	public Value treeBased() throws IOException {
+
+		return treeBased.readValue(payload, Value.class);
+	}
+
+	/**
+	 * {@return the parameters read directly from the tokens}
+	 */
+	@Benchmark
+	public Value tokenBased() throws IOException {
+
+		return tokenBased.readValue(payload, Value.class);
+	}
+
+	/**
+	 * The previous implementation, materializing a tree for each nested value.
+	 */
+	static class TreeBasedParameterDeserializer extends JsonObjectDeserializer<Value> {
+
+		@Override
+		protected Value deserializeObject(JsonParser jsonParser, DeserializationContext context, ObjectCodec codec, JsonNode tree) throws IOException {
+
+			if (tree.isTextual()) {
+				return Values.value(tree.asText());
+			} else if (tree.isFloatingPointNumber()) {
+				return Values.value(tree.asDouble());
+			} else if (tree.isBoolean()) {
+				return Values.value(tree.asBoolean());
+			} else if (tree.isInt()) {
+				return Values.value(tree.asInt());
+			} else if (tree.isNumber()) {
+				return Values.value(tree.asLong());
+			} else if (tree.isArray()) {
+				return Values.value(codec.readValue(codec.treeAsTokens(tree), new TypeReference<List<Value>>() {
+				}));
+			} else if (tree.isObject()) {
+				var customType = tree.get(Fieldnames.CYPHER_TYPE);
+				if (customType != null) {
+					return CypherTypes.byNameOrValue(customType.asText()).getReader().apply(tree.get(Fieldnames.CYPHER_VALUE).asText());
+				}
+				return Values.value(codec.readValue(codec.treeAsTokens(tree), new TypeReference<Map<String, Value>>() {
+				}));
+			}
+			throw new IllegalArgumentException("Cannot parse %s as a valid parameter type".formatted(tree));
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.types.TypeSystem;
+import org.neo4j.http.db.EagerResult;
+import org.neo4j.http.db.ResultEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Measures the complete write path of the streaming encoders for a wide result, from the result events to the buffers
+ * handed to the server. One operation is one record. The buffers come from a pooled Netty factory, as on the server,
+ * and are released right away.
+ * <p>
+ * Run with {@code ./mvnw -pl neo4j-http-benchmarks -am package -Dfast && java -jar neo4j-http-benchmarks/target/benchmarks.jar ResultEncodingBenchmark -prof gc}.
+ *
+ * @author Michael J. Simons
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultEncodingBenchmark {
+
+	private static final int RECORDS = 1000;
+
+	/**
+	 * The encoder to use: The transactional JSON document or plain NDJSON records, which are written with their keys.
+	 */
+	@Param({"JSON", "NDJSON"})
+	public String format;
+
+	/**
+	 * Number of columns in each record.
+	 */
+	@Param({"64"})
+	public int columns;
+
+	private Encoder<ResultEvent> encoder;
+
+	private MediaType mediaType;
+
+	private DataBufferFactory bufferFactory;
+
+	private List<ResultEvent> events;
+
+	/**
+	 * Creates the encoder and the events.
+	 */
+	@Setup
+	public void prepare() {
+
+		var objectMapper = new ObjectMapper().registerModule(new DefaultResponseModule(TypeSystem.getDefault()));
+		switch (format) {
+			case "JSON" -> {
+				this.encoder = new ResultEventEncoder(objectMapper);
+				this.mediaType = MediaType.APPLICATION_JSON;
+			}
+			case "NDJSON" -> {
+				this.encoder = new ResultEventNdjsonEncoder(objectMapper);
+				this.mediaType = MediaType.APPLICATION_NDJSON;
+			}
+			default -> throw new IllegalArgumentException(format);
+		}
+		this.bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+		var keys = IntStream.range(0, columns).mapToObj(i -> "column_" + i).toList();
+		this.events = new ArrayList<>();
+		if ("JSON".equals(format)) {
+			events.add(new ResultEvent.Header(keys));
+		}
+		for (int i = 0; i < RECORDS; ++i) {
+			var offset = i * columns;
+			var values = IntStream.range(0, columns)
+				.mapToObj(c -> c % 2 == 0 ? Values.value(offset + c) : Values.value("Value " + (offset + c)))
+				.toArray(Value[]::new);
+			events.add(new ResultEvent.Data(new EagerResult.ResultData(new InternalRecord(keys, values), null, null)));
+		}
+		if ("JSON".equals(format)) {
+			events.add(new ResultEvent.Summary(null, List.of()));
+		}
+	}
+
+	/**
+	 * {@return the number of bytes written for all records}
+	 */
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public long encode() {
+
+		return encoder.encode(Flux.fromIterable(events), bufferFactory, ResolvableType.forClass(ResultEvent.class), mediaType, null)
+			.map(buffer -> {
+				var size = buffer.readableByteCount();
+				DataBufferUtils.release(buffer);
+				return (long) size;
+			})
+			.reduce(0L, Long::sum)
+			.block();
+	}
+}
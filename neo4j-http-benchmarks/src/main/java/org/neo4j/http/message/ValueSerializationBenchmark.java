@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalPath;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.types.TypeSystem;
+import org.neo4j.http.app.Views;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Measures how many cells per second {@link DefaultResponseModule} renders in the default format of the transactional
+ * endpoint, including the {@literal meta} array of each record. One operation is one cell, so that
+ * {@code -prof gc} reports the bytes allocated per cell as {@literal gc.alloc.rate.norm}.
+ * <p>
+ * Run with {@code ./mvnw -pl neo4j-http-benchmarks -am package -Dfast && java -jar neo4j-http-benchmarks/target/benchmarks.jar ValueSerializationBenchmark -prof gc}.
+ *
+ * @author Michael J. Simons
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueSerializationBenchmark {
+
+	private static final int RECORDS = 1000;
+
+	private static final int COLUMNS = 8;
+
+	private static final int CELLS = RECORDS * COLUMNS;
+
+	/**
+	 * The kind of values in all cells.
+	 */
+	@Param({"ROWS", "NODES", "PATHS", "TEMPORALS"})
+	public String shape;
+
+	private ObjectWriter objectWriter;
+
+	private List<Record> records;
+
+	/**
+	 * Creates the object writer and the records.
+	 */
+	@Setup
+	public void prepare() {
+
+		var objectMapper = new ObjectMapper()
+			.registerModules(new DefaultResponseModule(TypeSystem.getDefault()), new JavaTimeModule())
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+		this.objectWriter = objectMapper.writerWithView(Views.NEO4J_44_DEFAULT.class);
+
+		IntFunction<Value> cell = switch (shape) {
+			case "ROWS" -> ValueSerializationBenchmark::scalar;
+			case "NODES" -> i -> node(i).asValue();
+			case "PATHS" -> i -> new InternalPath(node(i), new InternalRelationship(i, i, i + 1, "KNOWS"), node(i + 1)).asValue();
+			case "TEMPORALS" -> ValueSerializationBenchmark::temporal;
+			default -> throw new IllegalArgumentException(shape);
+		};
+		var keys = IntStream.range(0, COLUMNS).mapToObj(i -> "c" + i).toList();
+		this.records = IntStream.range(0, RECORDS)
+			.<Record>mapToObj(i -> new InternalRecord(keys, IntStream.range(0, COLUMNS).mapToObj(c -> cell.apply(i * COLUMNS + c)).toArray(Value[]::new)))
+			.toList();
+	}
+
+	private static Value scalar(int i) {
+		return switch (i % COLUMNS) {
+			case 0 -> Values.value(i);
+			case 1 -> Values.value("Value " + i);
+			case 2 -> Values.value(i / 10.0);
+			case 3 -> Values.value(i % 2 == 0);
+			case 4 -> Values.NULL;
+			case 5 -> Values.value(List.of(i, i + 1, i + 2));
+			case 6 -> Values.value(Map.of("a", i));
+			default -> Values.value(Long.MAX_VALUE - i);
+		};
+	}
+
+	private static InternalNode node(int i) {
+		return new InternalNode(i, List.of("Person"), Map.of("id", Values.value(i), "name", Values.value("Person " + i), "score", Values.value(i / 10.0)));
+	}
+
+	private static Value temporal(int i) {
+		return switch (i % 6) {
+			case 0 -> Values.value(LocalDate.of(2022, 10, 21).plusDays(i));
+			case 1 -> Values.value(ZonedDateTime.of(2022, 10, 21, 7, 20, i % 60, 0, ZoneId.of("Europe/Berlin")));
+			case 2 -> Values.value(LocalDateTime.of(2022, 10, 21, 7, 20, i % 60));
+			case 3 -> Values.value(LocalTime.of(7, 20, i % 60));
+			case 4 -> Values.value(OffsetTime.of(7, 20, i % 60, 0, ZoneOffset.ofHours(2)));
+			default -> Values.isoDuration(i % 12, i % 30, i, 0);
+		};
+	}
+
+	/**
+	 * Writes all records into one stream, just like the endpoint does.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public void serialize() throws IOException {
+
+		try (var generator = objectWriter.createGenerator(OutputStream.nullOutputStream())) {
+			for (var record : records) {
+				objectWriter.writeValue(generator, record);
+			}
+		}
+	}
+}
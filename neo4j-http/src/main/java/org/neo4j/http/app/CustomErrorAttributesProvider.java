@@ -18,7 +18,9 @@ package org.neo4j.http.app;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.neo4j.http.db.DuplicatePersistedQueryException;
 import org.neo4j.http.db.InvalidQueryException;
+import org.neo4j.http.db.TransactionNotAvailableException;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
 import org.springframework.http.HttpStatus;
@@ -51,6 +53,24 @@ final class CustomErrorAttributesProvider extends DefaultErrorAttributes {
 			s.put("status", HttpStatus.BAD_REQUEST.value());
 			s.remove("trace");
 			return s;
+		} else if (error instanceof DuplicatePersistedQueryException duplicatePersistedQueryException) {
+			var s = new HashMap<>(errorAttributes);
+			s.put("error", "Duplicate persisted query");
+			s.put("message", duplicatePersistedQueryException.getMessage());
+			s.put("status", HttpStatus.CONFLICT.value());
+			s.remove("trace");
+			return s;
+		} else if (error instanceof TransactionNotAvailableException transactionNotAvailableException) {
+			var s = new HashMap<>(errorAttributes);
+			s.put("error", transactionNotAvailableException.code());
+			s.put("message", transactionNotAvailableException.getMessage());
+			s.put("status", switch (transactionNotAvailableException.code()) {
+				case TransactionNotAvailableException.NOT_FOUND -> HttpStatus.NOT_FOUND.value();
+				case TransactionNotAvailableException.ACCESSED_CONCURRENTLY -> HttpStatus.CONFLICT.value();
+				default -> HttpStatus.TOO_MANY_REQUESTS.value();
+			});
+			s.remove("trace");
+			return s;
 		}
 
 		return errorAttributes;
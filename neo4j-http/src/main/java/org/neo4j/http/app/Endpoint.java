@@ -15,23 +15,40 @@
  */
 package org.neo4j.http.app;
 
+import java.net.URI;
+import java.util.Map;
 import java.util.Optional;
 
-import org.neo4j.driver.Query;
-import org.neo4j.driver.Record;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.http.config.ApplicationProperties;
 import org.neo4j.http.db.AnnotatedQuery;
+import org.neo4j.http.db.ConcurrencyLimitReachedException;
+import org.neo4j.http.db.EagerResult;
 import org.neo4j.http.db.Neo4jAdapter;
 import org.neo4j.http.db.Neo4jPrincipal;
+import org.neo4j.http.db.PersistedQuery;
+import org.neo4j.http.db.PersistedQueryRegistry;
 import org.neo4j.http.db.ResultContainer;
+import org.neo4j.http.db.ResultEvent;
+import org.neo4j.http.message.ResultEventArrowEncoder;
+import org.neo4j.http.message.ResultEventEncoder;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import com.fasterxml.jackson.annotation.JsonView;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -40,34 +57,188 @@ import reactor.core.publisher.Mono;
  */
 @RestController
 @RequestMapping("/")
+@RegisterReflectionForBinding(Endpoint.QueryRegistration.class)
 public class Endpoint {
 
 	private static final String DEFAULT_DATABASE_NAME = "neo4j";
 
 	private final Neo4jAdapter neo4j;
 
+	private final PersistedQueryRegistry persistedQueryRegistry;
+
+	private final ApplicationProperties applicationProperties;
+
 	/**
-	 * @param neo4j all access to Neo4j goes through this adapter.
+	 * @param neo4j                  all access to Neo4j goes through this adapter.
+	 * @param persistedQueryRegistry registry for statements that are executed by id
+	 * @param applicationProperties  used for the defaults of optional request parameters
 	 */
-	public Endpoint(Neo4jAdapter neo4j) {
+	public Endpoint(Neo4jAdapter neo4j, PersistedQueryRegistry persistedQueryRegistry, ApplicationProperties applicationProperties) {
 		this.neo4j = neo4j;
+		this.persistedQueryRegistry = persistedQueryRegistry;
+		this.applicationProperties = applicationProperties;
+	}
+
+	/**
+	 * Payload for registering a persisted query.
+	 *
+	 * @param id        An optional id, will be derived from the database and the statement if not set
+	 * @param statement The statement to register
+	 */
+	public record QueryRegistration(String id, String statement) {
 	}
 
-	@JsonView(Views.NEO4J_44_DEFAULT.class)
-	@PostMapping(value = {"/db/{database}/tx/commit", "/db/data/transaction/commit"}, produces = MediaType.APPLICATION_JSON_VALUE)
-	Mono<ResultContainer> run(
+	@PostMapping(value = {"/db/{database}/tx/commit", "/db/data/transaction/commit"}, produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE})
+	Flux<ResultEvent> run(
 		@AuthenticationPrincipal Neo4jPrincipal authentication,
 		@PathVariable(required = false) Optional<String> database,
+		@RequestParam Optional<Boolean> singleTransaction,
 		@RequestBody AnnotatedQuery.Container queries
 	) {
+		assertRunnableBy(authentication, queries);
 		if (queries.value() == null || queries.value().isEmpty()) {
-			return Mono.just(new ResultContainer());
+			return Flux.empty();
+		}
+		return neo4j.streamResults(authentication, database.orElse(DEFAULT_DATABASE_NAME), singleTransaction.orElse(applicationProperties.singleTransaction()), queries.value().get(0), queries.value().stream().skip(1).toArray(AnnotatedQuery[]::new));
+	}
+
+	@PostMapping(value = {"/db/{database}/tx/commit", "/db/data/transaction/commit"}, produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE}, params = "buffered=true")
+	Flux<ResultEvent> runBuffered(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable(required = false) Optional<String> database,
+		@RequestParam Optional<Boolean> singleTransaction,
+		@RequestBody AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		if (queries.value() == null || queries.value().isEmpty()) {
+			return Flux.empty();
+		}
+		return neo4j.run(authentication, database.orElse(DEFAULT_DATABASE_NAME), singleTransaction.orElse(applicationProperties.singleTransaction()), queries.value().get(0), queries.value().stream().skip(1).toArray(AnnotatedQuery[]::new))
+			.flatMapMany(ResultContainer::toEvents);
+	}
+
+	/**
+	 * Streams the result of exactly one statement as columnar Arrow record batches.
+	 */
+	@PostMapping(value = "/db/{database}/tx/commit", produces = ResultEventArrowEncoder.APPLICATION_ARROW_STREAM_VALUE)
+	Flux<ResultEvent> runColumnar(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable String database,
+		@RequestBody AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		if (queries.value() == null || queries.value().size() != 1) {
+			return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exactly one statement is required for %s".formatted(ResultEventArrowEncoder.APPLICATION_ARROW_STREAM_VALUE)));
 		}
-		return neo4j.run(authentication, database.orElse(DEFAULT_DATABASE_NAME), queries.value().get(0), queries.value().stream().skip(1).toArray(AnnotatedQuery[]::new));
+		return neo4j.streamResults(authentication, database, false, queries.value().get(0));
 	}
 
+	/**
+	 * Streams either the records of a single query or, when the body contains a list of {@literal statements}, frames
+	 * for all events of all statements.
+	 */
 	@PostMapping(value = "/db/{database}/tx/commit", produces = MediaType.APPLICATION_NDJSON_VALUE)
-	Flux<Record> stream(@AuthenticationPrincipal Neo4jPrincipal authentication, @PathVariable String database, @RequestBody Query query) {
-		return neo4j.stream(authentication, database, query);
+	Flux<ResultEvent> stream(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable String database,
+		@RequestParam Optional<Boolean> singleTransaction,
+		@RequestBody AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		if (queries.single()) {
+			return neo4j.stream(authentication, database, queries.value().get(0))
+				.map(record -> new ResultEvent.Data(new EagerResult.ResultData(record, null, null)));
+		}
+		if (queries.value() == null || queries.value().isEmpty()) {
+			return Flux.empty();
+		}
+		return neo4j.streamResults(authentication, database, singleTransaction.orElse(applicationProperties.singleTransaction()), queries.value().get(0), queries.value().stream().skip(1).toArray(AnnotatedQuery[]::new));
+	}
+
+	@PostMapping(value = "/db/{database}/tx", produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE})
+	Mono<ResponseEntity<Flux<ResultEvent>>> beginTransaction(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable String database,
+		@RequestHeader(name = "Access-Mode", defaultValue = "WRITE") AccessMode accessMode,
+		@RequestBody(required = false) AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		return neo4j.beginTransaction(authentication, database, accessMode)
+			.map(id -> ResponseEntity.created(URI.create("/db/%s/tx/%d".formatted(database, id)))
+				.body(neo4j.extendTransaction(authentication, database, id, statements(queries))));
+	}
+
+	@PostMapping(value = "/db/{database}/tx/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE})
+	Flux<ResultEvent> extendTransaction(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable String database,
+		@PathVariable long id,
+		@RequestBody(required = false) AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		return neo4j.extendTransaction(authentication, database, id, statements(queries));
+	}
+
+	@PostMapping(value = "/db/{database}/tx/{id}/commit", produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE})
+	Flux<ResultEvent> commitTransaction(
+		@AuthenticationPrincipal Neo4jPrincipal authentication,
+		@PathVariable String database,
+		@PathVariable long id,
+		@RequestBody(required = false) AnnotatedQuery.Container queries
+	) {
+		assertRunnableBy(authentication, queries);
+		return neo4j.commitTransaction(authentication, database, id, statements(queries));
+	}
+
+	@DeleteMapping(value = "/db/{database}/tx/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, ResultEventEncoder.APPLICATION_SMILE_VALUE})
+	Flux<ResultEvent> rollbackTransaction(@AuthenticationPrincipal Neo4jPrincipal authentication, @PathVariable String database, @PathVariable long id) {
+		return neo4j.rollbackTransaction(authentication, database, id).thenMany(Flux.empty());
+	}
+
+	/**
+	 * Persisted queries share one namespace of ids, but only their owner can run them: Otherwise anyone could register a
+	 * statement under an id other clients are going to use and have it run with their credentials. Queries of other
+	 * principals are reported like unknown ones.
+	 */
+	private static void assertRunnableBy(Neo4jPrincipal principal, AnnotatedQuery.Container queries) {
+
+		if (queries == null || queries.value() == null) {
+			return;
+		}
+		for (var query : queries.value()) {
+			var persistedQuery = query.persistedQuery();
+			if (persistedQuery != null && !principal.username().equals(persistedQuery.owner())) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown persisted query %s".formatted(persistedQuery.id()));
+			}
+		}
+	}
+
+	private static AnnotatedQuery[] statements(AnnotatedQuery.Container queries) {
+		return queries == null || queries.value() == null ? new AnnotatedQuery[0] : queries.value().toArray(AnnotatedQuery[]::new);
+	}
+
+	@PostMapping(value = "/db/{database}/queries", produces = MediaType.APPLICATION_JSON_VALUE)
+	Mono<PersistedQuery> register(@AuthenticationPrincipal Neo4jPrincipal authentication, @PathVariable String database, @RequestBody QueryRegistration registration) {
+		return persistedQueryRegistry.register(authentication, database, registration.id(), registration.statement())
+			.onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+	}
+
+	/**
+	 * Rejects requests while too many queries are running, with a hint when to try again. The error attributes can't
+	 * carry headers, so this is handled here instead of in {@link CustomErrorAttributesProvider}.
+	 *
+	 * @param e The reason for the rejection
+	 * @return 429 if the principal runs too many queries, 503 if the database or the server is busy
+	 */
+	@ExceptionHandler(ConcurrencyLimitReachedException.class)
+	ResponseEntity<Map<String, Object>> concurrencyLimitReached(ConcurrencyLimitReachedException e) {
+
+		var status = ConcurrencyLimitReachedException.PRINCIPAL_LIMIT_REACHED.equals(e.code()) ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+		// Retry-After takes whole seconds
+		var retryAfter = (e.getRetryAfter().toMillis() + 999) / 1000;
+		return ResponseEntity.status(status)
+			.header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+			.contentType(MediaType.APPLICATION_JSON)
+			.body(Map.of("error", e.code(), "message", e.getMessage(), "status", status.value()));
 	}
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import java.io.Serial;
+import java.util.List;
+
+import org.neo4j.http.db.Neo4jPrincipal;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+/**
+ * A bearer token taken from the {@code Authorization} header, either still to be authenticated or already mapped to
+ * a {@link Neo4jPrincipal}.
+ *
+ * @author Michael J. Simons
+ */
+final class BearerTokenAuthentication extends AbstractAuthenticationToken {
+
+	@Serial
+	private static final long serialVersionUID = -2815006437524342150L;
+
+	private final String token;
+
+	private final Neo4jPrincipal principal;
+
+	BearerTokenAuthentication(String token) {
+		super(List.of());
+		this.token = token;
+		this.principal = null;
+	}
+
+	BearerTokenAuthentication(String token, Neo4jPrincipal principal) {
+		super(List.of());
+		this.token = token;
+		this.principal = principal;
+		super.setAuthenticated(true);
+	}
+
+	@Override
+	public String getCredentials() {
+		return token;
+	}
+
+	@Override
+	public Neo4jPrincipal getPrincipal() {
+		return principal;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.http.config.ApplicationProperties;
+import org.neo4j.http.db.Neo4jPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Passes JSON Web Tokens from an {@code Authorization: Bearer} header on to Neo4j as {@link AuthTokens#bearer(String)}.
+ * The subject of the token becomes the name of the principal. Neo4j is the authority for tokens, this provider only
+ * checks the expiry upfront: Tokens are verified against Neo4j once and the outcome is cached until the token expires,
+ * but not longer than the configured cache TTL, so that neither parsing nor verification happens on every request.
+ * <p>
+ * Servers that cannot verify tokens without running a query accept all tokens, which will be checked by the first
+ * query then. The claims of such tokens cannot be trusted, so these tokens are not cached and their principal is named
+ * after a hash of the token instead of the subject.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class BearerTokenAuthenticationProvider implements Neo4jAuthenticationProvider {
+
+	private static final String BEARER_PREFIX = "Bearer ";
+
+	private static final String UNVERIFIED_PREFIX = "unverified-bearer:";
+
+	private record Claims(String subject, Instant expiresAt) {
+	}
+
+	private record VerifiedToken(Neo4jPrincipal principal, boolean valid, Instant expiresAt) {
+	}
+
+	private final ObjectMapper objectMapper;
+
+	private final Driver driver;
+
+	private final Duration cacheTtl;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Clock clock;
+
+	private final Cache<String, VerifiedToken> tokens;
+
+	@Autowired
+	BearerTokenAuthenticationProvider(Driver driver, ObjectMapper objectMapper, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		this(driver, objectMapper, applicationProperties.authentication(), meterRegistry, Clock.systemUTC());
+	}
+
+	BearerTokenAuthenticationProvider(Driver driver, ObjectMapper objectMapper, ApplicationProperties.AuthenticationSettings settings, MeterRegistry meterRegistry, Clock clock) {
+		this.driver = driver;
+		this.objectMapper = objectMapper;
+		this.cacheTtl = settings.cacheTtl();
+		this.meterRegistry = meterRegistry;
+		this.clock = clock;
+
+		Ticker ticker = () -> TimeUnit.MILLISECONDS.toNanos(clock.millis());
+		this.tokens = Caffeine.newBuilder()
+			.maximumSize(settings.cacheMaximumSize())
+			.expireAfter(new Expiry<String, VerifiedToken>() {
+				@Override
+				public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+					return Math.max(0, Duration.between(clock.instant(), value.expiresAt()).toNanos());
+				}
+
+				@Override
+				public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+					return expireAfterCreate(key, value, currentTime);
+				}
+
+				@Override
+				public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+					return currentDuration;
+				}
+			})
+			.ticker(ticker)
+			.build();
+	}
+
+	@Override
+	public ServerAuthenticationConverter authenticationConverter() {
+		return exchange -> Mono.justOrEmpty(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+			.filter(value -> value.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length()))
+			.map(value -> new BearerTokenAuthentication(value.substring(BEARER_PREFIX.length()).trim()));
+	}
+
+	@Override
+	public ServerAuthenticationEntryPoint authenticationEntryPoint() {
+		return (exchange, e) -> Mono.fromRunnable(() -> {
+			var response = exchange.getResponse();
+			response.setStatusCode(HttpStatus.UNAUTHORIZED);
+			response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+		});
+	}
+
+	@Override
+	public Mono<Authentication> authenticate(Authentication authentication) {
+		var token = (String) authentication.getCredentials();
+		return Mono.defer(() -> {
+			var cached = tokens.getIfPresent(token);
+			if (cached != null) {
+				count(cached.valid() ? "cached" : "blocked");
+				return authenticated(token, cached);
+			}
+
+			var claims = parse(token);
+			return Mono.fromCallable(() -> Verification.of(driver, AuthTokens.bearer(token)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.flatMap(verification -> {
+					var expiresAt = claims.expiresAt().isAfter(clock.instant().plus(cacheTtl)) ? clock.instant().plus(cacheTtl) : claims.expiresAt();
+					if (verification == Verification.UNSUPPORTED) {
+						count("unverified");
+						var principal = new Neo4jPrincipal(UNVERIFIED_PREFIX + hash(token), AuthTokens.bearer(token));
+						return authenticated(token, new VerifiedToken(principal, true, expiresAt));
+					}
+					// Neo4j might map tokens to users by another claim than the subject, so they are never impersonated
+					var principal = new Neo4jPrincipal(claims.subject(), AuthTokens.bearer(token));
+					var verified = new VerifiedToken(principal, verification == Verification.VALID, expiresAt);
+					tokens.put(token, verified);
+					count(verification == Verification.VALID ? "verified" : "rejected");
+					return authenticated(token, verified);
+				});
+		});
+	}
+
+	/**
+	 * Extracts subject and expiry from the payload of a JSON Web Token without checking the signature, which is done
+	 * by Neo4j.
+	 */
+	private Claims parse(String token) {
+
+		var parts = token.split("\\.");
+		if (parts.length != 3) {
+			throw new BadCredentialsException("Malformed bearer token.");
+		}
+		try {
+			var payload = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+			var subject = payload.path("sub").textValue();
+			var exp = payload.path("exp");
+			if (subject == null || !exp.canConvertToLong()) {
+				throw new BadCredentialsException("Bearer token without subject or expiry.");
+			}
+			var expiresAt = Instant.ofEpochSecond(exp.longValue());
+			if (!expiresAt.isAfter(clock.instant())) {
+				throw new BadCredentialsException("Bearer token expired.");
+			}
+			return new Claims(subject, expiresAt);
+		} catch (IOException | IllegalArgumentException | DateTimeException e) {
+			throw new BadCredentialsException("Malformed bearer token.", e);
+		}
+	}
+
+	private static String hash(String token) {
+
+		try {
+			var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Mono<Authentication> authenticated(String token, VerifiedToken verifiedToken) {
+
+		if (!verifiedToken.valid()) {
+			return Mono.error(new BadCredentialsException("Authentication failed."));
+		}
+		return Mono.just(new BearerTokenAuthentication(token, verifiedToken.principal()));
+	}
+
+	private void count(String outcome) {
+		meterRegistry.counter(AUTHENTICATION_METRIC, "scheme", "bearer", "outcome", outcome).increment();
+	}
+}
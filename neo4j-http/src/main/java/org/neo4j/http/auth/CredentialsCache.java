@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.http.config.ApplicationProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Remembers which credentials have been verified against Neo4j and which credentials failed to authenticate recently.
+ * Passwords are never stored, only a salted hash of the last verified password per user and of failed passwords. Both
+ * caches are bounded.
+ * <p>
+ * Each failed attempt blocks the same combination of user and password for twice as long as the one before, up to a
+ * maximum. Blocked credentials are rejected without asking Neo4j. Other passwords of the same user are not blocked, so
+ * that someone guessing passwords cannot lock out a legitimate user, whether the right password has been verified
+ * before or not. Attempts with ever changing passwords are left to the limits Neo4j itself puts on failed attempts.
+ *
+ * @author Michael J. Simons
+ */
+final class CredentialsCache {
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private record Verified(byte[] salt, byte[] hash) {
+	}
+
+	private record Failed(int attempts, Instant blockedUntil) {
+	}
+
+	private final ApplicationProperties.AuthenticationSettings settings;
+
+	private final Clock clock;
+
+	private final Cache<String, Verified> verified;
+
+	/**
+	 * Failed attempts by a salted hash of user and password.
+	 */
+	private final Cache<String, Failed> failed;
+
+	/**
+	 * Salt for the keys of failed attempts, which must be the same for all attempts with the same credentials.
+	 */
+	private final byte[] failedSalt = new byte[16];
+
+	CredentialsCache(ApplicationProperties.AuthenticationSettings settings, Clock clock) {
+		this.settings = settings;
+		this.clock = clock;
+		RANDOM.nextBytes(failedSalt);
+
+		Ticker ticker = () -> TimeUnit.MILLISECONDS.toNanos(clock.millis());
+		this.verified = Caffeine.newBuilder()
+			.maximumSize(settings.cacheMaximumSize())
+			.expireAfterWrite(settings.cacheTtl())
+			.ticker(ticker)
+			.build();
+		this.failed = Caffeine.newBuilder()
+			.maximumSize(settings.cacheMaximumSize())
+			.expireAfterWrite(settings.maxBackoff().multipliedBy(2))
+			.ticker(ticker)
+			.build();
+	}
+
+	/**
+	 * {@return true if exactly these credentials have been verified recently}
+	 */
+	boolean isVerified(String username, String password) {
+
+		var entry = verified.getIfPresent(username);
+		return entry != null && MessageDigest.isEqual(entry.hash(), hash(entry.salt(), password));
+	}
+
+	/**
+	 * {@return true if the credentials failed to authenticate recently and need to wait before they are tried again}
+	 */
+	boolean isBlocked(String username, String password) {
+
+		var entry = failed.getIfPresent(failedKey(username, password));
+		return entry != null && clock.instant().isBefore(entry.blockedUntil());
+	}
+
+	void verified(String username, String password) {
+
+		var salt = new byte[16];
+		RANDOM.nextBytes(salt);
+		verified.put(username, new Verified(salt, hash(salt, password)));
+		failed.invalidate(failedKey(username, password));
+	}
+
+	/**
+	 * Blocks the credentials for a while. Neither verified credentials nor other passwords of the user are affected.
+	 */
+	void failed(String username, String password) {
+
+		failed.asMap().compute(failedKey(username, password), (key, previous) -> {
+			var attempts = previous == null ? 1 : previous.attempts() + 1;
+			return new Failed(attempts, clock.instant().plus(backoff(attempts)));
+		});
+	}
+
+	private Duration backoff(int attempts) {
+
+		var backoff = settings.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 30));
+		return backoff.compareTo(settings.maxBackoff()) > 0 ? settings.maxBackoff() : backoff;
+	}
+
+	private String failedKey(String username, String password) {
+		return Base64.getEncoder().encodeToString(hash(failedSalt, username + '\0' + password));
+	}
+
+	private static byte[] hash(byte[] salt, String password) {
+
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -15,31 +15,104 @@
  */
 package org.neo4j.http.auth;
 
+import java.time.Clock;
 import java.util.List;
 
 import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.http.config.ApplicationProperties;
 import org.neo4j.http.db.Neo4jPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.security.web.server.authentication.ServerHttpBasicAuthenticationConverter;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
- * Processes the authentication from the HTTP request and maps it to the driver's {@link org.neo4j.driver.AuthToken}.
+ * Processes HTTP Basic authentication from the HTTP request and maps it to the driver's {@link org.neo4j.driver.AuthToken}.
+ * Credentials are verified against Neo4j before they are used and are remembered for a while afterwards, see
+ * {@link CredentialsCache}. Servers that cannot verify credentials without running a query accept all credentials, which
+ * will be checked by the first query then. This is the primary provider, also used by Spring wherever a single
+ * {@link org.springframework.security.authentication.ReactiveAuthenticationManager} is expected.
  * <p>
  * Note: Standard Spring practice is for the credentials to be erased from this point but they are kept on purpose
  * so that they can be passed to the driver.
  * @author Michael J. Simons
  */
 @Component
+@Primary
 final class DefaultAuthenticationProvider implements Neo4jAuthenticationProvider {
+
+	private final Driver driver;
+
+	private final CredentialsCache credentialsCache;
+
+	private final MeterRegistry meterRegistry;
+
+	@Autowired
+	DefaultAuthenticationProvider(Driver driver, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		this(driver, new CredentialsCache(applicationProperties.authentication(), Clock.systemUTC()), meterRegistry);
+	}
+
+	DefaultAuthenticationProvider(Driver driver, CredentialsCache credentialsCache, MeterRegistry meterRegistry) {
+		this.driver = driver;
+		this.credentialsCache = credentialsCache;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public ServerAuthenticationConverter authenticationConverter() {
+		return new ServerHttpBasicAuthenticationConverter();
+	}
+
 	@Override
 	public Mono<Authentication> authenticate(Authentication authentication) {
-		//TODO Support other kinds of AuthToken (e.g bearer, kerberos, none)
-		return Mono.<Authentication>fromCallable(() ->
-				new UsernamePasswordAuthenticationToken(new Neo4jPrincipal(authentication.getName(),
-						AuthTokens.basic(authentication.getName(), (String) authentication.getCredentials())),
-						authentication.getCredentials(), List.of())).share();
+		var username = authentication.getName();
+		var password = (String) authentication.getCredentials();
+		return Mono.defer(() -> {
+			if (credentialsCache.isVerified(username, password)) {
+				return Mono.just(authenticated(authentication, "cached", true));
+			}
+			if (credentialsCache.isBlocked(username, password)) {
+				count("blocked");
+				return Mono.error(new BadCredentialsException("Authentication failed."));
+			}
+			return Mono.fromCallable(() -> Verification.of(driver, AuthTokens.basic(username, password)))
+				.subscribeOn(Schedulers.boundedElastic())
+				.flatMap(verification -> switch (verification) {
+					case VALID -> {
+						credentialsCache.verified(username, password);
+						yield Mono.just(authenticated(authentication, "verified", true));
+					}
+					case INVALID -> {
+						credentialsCache.failed(username, password);
+						count("rejected");
+						yield Mono.error(new BadCredentialsException("Authentication failed."));
+					}
+					case UNSUPPORTED -> Mono.just(authenticated(authentication, "unverified", false));
+				});
+		});
+	}
+
+	/**
+	 * Only credentials that have actually been verified are good enough for impersonating the user.
+	 */
+	private Authentication authenticated(Authentication authentication, String outcome, boolean verified) {
+
+		count(outcome);
+		return new UsernamePasswordAuthenticationToken(new Neo4jPrincipal(authentication.getName(),
+			AuthTokens.basic(authentication.getName(), (String) authentication.getCredentials()), verified),
+			authentication.getCredentials(), List.of());
+	}
+
+	private void count(String outcome) {
+		meterRegistry.counter(AUTHENTICATION_METRIC, "scheme", "basic", "outcome", outcome).increment();
 	}
 }
@@ -18,16 +18,38 @@ package org.neo4j.http.auth;
 import java.util.logging.Logger;
 
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.HttpBasicServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
 
 /**
- * Facade over Spring's own {@link ReactiveAuthenticationManager}.
+ * Facade over Spring's own {@link ReactiveAuthenticationManager}. Each provider handles one authentication scheme
+ * and brings the converter that extracts the credentials of that scheme from a request and the entry point that
+ * challenges clients whose credentials have been rejected.
  *
  * @author Michael J. Simons
  */
-public sealed interface Neo4jAuthenticationProvider extends ReactiveAuthenticationManager permits DefaultAuthenticationProvider {
+public sealed interface Neo4jAuthenticationProvider extends ReactiveAuthenticationManager permits DefaultAuthenticationProvider, BearerTokenAuthenticationProvider {
 
 	/**
 	 * Shared logger for all authentication provider instances.
 	 */
 	Logger LOGGER = Logger.getLogger(Neo4jAuthenticationProvider.class.getName());
+
+	/**
+	 * Name of the counter of authentication attempts, tagged by scheme and outcome.
+	 */
+	String AUTHENTICATION_METRIC = "neo4j.http.authentication";
+
+	/**
+	 * {@return the converter extracting the credentials this provider can authenticate from a request}
+	 */
+	ServerAuthenticationConverter authenticationConverter();
+
+	/**
+	 * {@return the entry point challenging clients whose credentials have been rejected by this provider, HTTP Basic by default}
+	 */
+	default ServerAuthenticationEntryPoint authenticationEntryPoint() {
+		return new HttpBasicServerAuthenticationEntryPoint();
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.neo4j.driver.AuthToken;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.exceptions.AuthenticationException;
+import org.neo4j.driver.exceptions.UnsupportedFeatureException;
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Outcome of verifying an {@link AuthToken} against Neo4j.
+ *
+ * @author Michael J. Simons
+ */
+enum Verification {
+
+	/**
+	 * Neo4j accepted the token.
+	 */
+	VALID,
+	/**
+	 * Neo4j rejected the token.
+	 */
+	INVALID,
+	/**
+	 * The server cannot verify tokens without running a query, the token will be checked by the first query.
+	 */
+	UNSUPPORTED;
+
+	private static final AtomicBoolean UNSUPPORTED_LOGGED = new AtomicBoolean();
+
+	/**
+	 * Verifies the given token, blocking until the server answered.
+	 *
+	 * @param driver    The driver to use
+	 * @param authToken The token to verify
+	 * @return the outcome of the verification
+	 * @throws AuthenticationServiceException if the server could not be asked
+	 */
+	static Verification of(Driver driver, AuthToken authToken) {
+
+		try {
+			return driver.verifyAuthentication(authToken) ? VALID : INVALID;
+		} catch (AuthenticationException e) {
+			return INVALID;
+		} catch (UnsupportedFeatureException e) {
+			if (UNSUPPORTED_LOGGED.compareAndSet(false, true)) {
+				Neo4jAuthenticationProvider.LOGGER.log(Level.WARNING, "Credentials cannot be verified upfront with this server, they will be checked by the first query: {0}", e.getMessage());
+			}
+			return UNSUPPORTED;
+		} catch (RuntimeException e) {
+			throw new AuthenticationServiceException("Credentials could not be verified.", e);
+		}
+	}
+}
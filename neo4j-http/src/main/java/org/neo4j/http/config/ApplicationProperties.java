@@ -15,30 +15,273 @@
  */
 package org.neo4j.http.config;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Optional;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * @author Michael J. Simons
- * @param fetchSize The fetch size is important to create proper throughput
+ * @param fetchSize The fetch size is important to create proper throughput, used for queries that have not been seen before
  * @param verifyConnectivity Set to {@literal true} to enable verification of the connection during startup
  * @param defaultToSsr Set to {@literal true} to default to Server-Side routing when our checks fail during connectivity issues on startup
+ * @param executionRequirementsCache Settings for the cache of execution requirements
+ * @param shareExecutionRequirements Set to {@literal true} to evaluate queries once for all principals
+ * @param persistedQueries The file in which persisted queries are stored
+ * @param transactions Settings for explicit transactions spanning several requests
+ * @param singleTransaction Set to {@literal true} to run all statements of a request in one transaction by default
+ * @param bufferedResults Settings for results that are collected completely before they are sent
+ * @param adaptiveFetchSize Settings for fetch sizes learned per query
+ * @param authentication Settings for the verification of credentials
+ * @param concurrency Limits for the number of queries running at the same time
+ * @param admission Limits for the number of queries running in total, adapted to the connection pool
  * @soundtrack Queen - The Miracle
  */
 @ConfigurationProperties("org.neo4j.http")
 public record ApplicationProperties(
 	Integer fetchSize,
 	boolean verifyConnectivity,
-	boolean defaultToSsr
+	boolean defaultToSsr,
+	CacheSettings executionRequirementsCache,
+	boolean shareExecutionRequirements,
+	Path persistedQueries,
+	TransactionSettings transactions,
+	boolean singleTransaction,
+	BufferSettings bufferedResults,
+	AdaptiveFetchSizeSettings adaptiveFetchSize,
+	AuthenticationSettings authentication,
+	ConcurrencySettings concurrency,
+	AdmissionSettings admission
 ) {
 
 	/**
 	 * @param fetchSize defaults to 2000 if not set
 	 * @param verifyConnectivity Set to {@literal true} to enable verification of the connection during startup
 	 * @param defaultToSsr Set to {@literal true} to default to Server-Side routing when our checks fail during connectivity issues on startup
+	 * @param executionRequirementsCache defaults to 10000 entries, expiring one hour after last access
+	 * @param shareExecutionRequirements Set to {@literal true} to evaluate queries once for all principals with the credentials of the driver
+	 * @param persistedQueries An optional file in which persisted queries are stored, they are only kept in memory if not set
+	 * @param transactions defaults to a one-minute idle timeout, a maximum duration of five minutes and at most 50 open transactions, 10 per principal
+	 * @param singleTransaction Set to {@literal true} to run all statements of a request in one transaction unless the client requests otherwise
+	 * @param bufferedResults defaults to 16MB in memory per request, 256MB in memory in total and at most 1GB per request, spilling into the temporary directory
+	 * @param adaptiveFetchSize defaults to fetch sizes between 10 and 100000 records and batches of at most 16MB, learned for up to 10000 queries
+	 * @param authentication defaults to keeping verified credentials of up to 10000 users for five minutes and backing off from one second up to five minutes after failed attempts
+	 * @param concurrency defaults to no limits, when enabled to 10 running and 50 queued queries per principal and as many running queries as the connection pool has connections and 500 queued queries per database, waiting at most ten seconds
+	 * @param admission defaults to admitting all queries, when enabled to admitting between 10 and 1000 running queries, starting with 200 and backing off when acquiring a connection takes longer than 50ms
 	 */
 	public ApplicationProperties {
 		fetchSize = Optional.ofNullable(fetchSize).orElse(2000);
+		executionRequirementsCache = Optional.ofNullable(executionRequirementsCache).orElseGet(() -> new CacheSettings(null, null));
+		transactions = Optional.ofNullable(transactions).orElseGet(() -> new TransactionSettings(null, null, null, null));
+		bufferedResults = Optional.ofNullable(bufferedResults).orElseGet(() -> new BufferSettings(null, null, null, null));
+		adaptiveFetchSize = Optional.ofNullable(adaptiveFetchSize).orElseGet(() -> new AdaptiveFetchSizeSettings(null, null, null, null, null));
+		authentication = Optional.ofNullable(authentication).orElseGet(() -> new AuthenticationSettings(null, null, null, null, null));
+		concurrency = Optional.ofNullable(concurrency).orElseGet(() -> new ConcurrencySettings(null, null, null, null, null, null));
+		admission = Optional.ofNullable(admission).orElseGet(() -> new AdmissionSettings(null, null, null, null, null, null, null));
+	}
+
+	/**
+	 * {@return true if execution requirements are evaluated once for all principals, either because it has been
+	 * configured like that or because users are impersonated anyway}
+	 */
+	public boolean executionRequirementsShared() {
+		return shareExecutionRequirements || authentication.impersonate();
+	}
+
+	/**
+	 * Bounds for a cache.
+	 *
+	 * @param maximumSize       The maximum number of entries in the cache
+	 * @param expireAfterAccess The duration after which an entry is removed after it has been last accessed
+	 */
+	public record CacheSettings(Long maximumSize, Duration expireAfterAccess) {
+
+		/**
+		 * @param maximumSize       defaults to 10000 if not set
+		 * @param expireAfterAccess defaults to one hour if not set
+		 */
+		public CacheSettings {
+			maximumSize = Optional.ofNullable(maximumSize).orElse(10_000L);
+			expireAfterAccess = Optional.ofNullable(expireAfterAccess).orElseGet(() -> Duration.ofHours(1));
+		}
+	}
+
+	/**
+	 * Bounds for explicit transactions. Each open transaction holds a connection from the pool of the driver and
+	 * possibly locks in the database for its whole lifetime, so the limits should be well below the pool size.
+	 *
+	 * @param idleTimeout     The duration after which a transaction that has not been used is rolled back
+	 * @param maxDuration     The maximum duration of a transaction, regardless of activity, also used as server side timeout
+	 * @param maxOpen         The maximum number of open transactions
+	 * @param maxPerPrincipal The maximum number of open transactions per principal
+	 */
+	public record TransactionSettings(Duration idleTimeout, Duration maxDuration, Integer maxOpen, Integer maxPerPrincipal) {
+
+		/**
+		 * @param idleTimeout     defaults to one minute if not set
+		 * @param maxDuration     defaults to five minutes if not set
+		 * @param maxOpen         defaults to 50 if not set
+		 * @param maxPerPrincipal defaults to 10 if not set
+		 */
+		public TransactionSettings {
+			idleTimeout = Optional.ofNullable(idleTimeout).orElseGet(() -> Duration.ofMinutes(1));
+			maxDuration = Optional.ofNullable(maxDuration).orElseGet(() -> Duration.ofMinutes(5));
+			maxOpen = Optional.ofNullable(maxOpen).orElse(50);
+			maxPerPrincipal = Optional.ofNullable(maxPerPrincipal).orElse(10);
+		}
+	}
+
+	/**
+	 * Bounds for results that are collected completely before the response is written. Records exceeding one of the
+	 * memory limits are written to a temporary file instead of being kept on the heap.
+	 *
+	 * @param maxInMemoryPerRequest The size of records a single request may keep in memory
+	 * @param maxInMemory           The size of records all requests together may keep in memory
+	 * @param maxSize               The maximum size of the results of a single request, including records written to disk
+	 * @param spillDirectory        The directory in which temporary files are created
+	 */
+	public record BufferSettings(DataSize maxInMemoryPerRequest, DataSize maxInMemory, DataSize maxSize, Path spillDirectory) {
+
+		/**
+		 * @param maxInMemoryPerRequest defaults to 16MB if not set
+		 * @param maxInMemory           defaults to 256MB if not set
+		 * @param maxSize               defaults to 1GB if not set
+		 * @param spillDirectory        defaults to the temporary directory of the JVM if not set
+		 */
+		public BufferSettings {
+			maxInMemoryPerRequest = Optional.ofNullable(maxInMemoryPerRequest).orElseGet(() -> DataSize.ofMegabytes(16));
+			maxInMemory = Optional.ofNullable(maxInMemory).orElseGet(() -> DataSize.ofMegabytes(256));
+			maxSize = Optional.ofNullable(maxSize).orElseGet(() -> DataSize.ofGigabytes(1));
+			spillDirectory = Optional.ofNullable(spillDirectory).orElseGet(() -> Path.of(System.getProperty("java.io.tmpdir")));
+		}
+	}
+
+	/**
+	 * Bounds for the fetch size that is learned per query from the number and the size of the records it returned
+	 * before. Queries that have not been seen before use the default {@link #fetchSize()}.
+	 *
+	 * @param enabled      Set to {@literal false} to always use the default fetch size
+	 * @param minimum      The smallest fetch size used
+	 * @param maximum      The largest fetch size used, also for fetch sizes requested by clients
+	 * @param maxBatchSize The maximum estimated size of one batch of records
+	 * @param maximumSize  The maximum number of queries for which fetch sizes are learned
+	 */
+	public record AdaptiveFetchSizeSettings(Boolean enabled, Integer minimum, Integer maximum, DataSize maxBatchSize, Long maximumSize) {
+
+		/**
+		 * @param enabled      defaults to {@literal true} if not set
+		 * @param minimum      defaults to 10 if not set
+		 * @param maximum      defaults to 100000 if not set
+		 * @param maxBatchSize defaults to 16MB if not set
+		 * @param maximumSize  defaults to 10000 if not set
+		 */
+		public AdaptiveFetchSizeSettings {
+			enabled = Optional.ofNullable(enabled).orElse(true);
+			minimum = Optional.ofNullable(minimum).orElse(10);
+			maximum = Optional.ofNullable(maximum).orElse(100_000);
+			maxBatchSize = Optional.ofNullable(maxBatchSize).orElseGet(() -> DataSize.ofMegabytes(16));
+			maximumSize = Optional.ofNullable(maximumSize).orElse(10_000L);
+		}
+	}
+
+	/**
+	 * Credentials are verified against Neo4j once and are kept as salted hashes afterwards. Credentials that could not be
+	 * verified are rejected without asking Neo4j again for a while, growing exponentially with each failed attempt. Other
+	 * passwords of the same user are not affected.
+	 *
+	 * @param cacheTtl         The duration for which verified credentials are kept
+	 * @param cacheMaximumSize The maximum number of users whose credentials are kept, least recently used ones are removed first
+	 * @param initialBackoff   The duration for which the same credentials are rejected after the first failed attempt
+	 * @param maxBackoff       The maximum duration for which the same credentials are rejected after failed attempts
+	 * @param impersonate      Run queries with the credentials of the driver, impersonating users whose credentials have
+	 *                         been verified, on Neo4j Enterprise Edition
+	 */
+	public record AuthenticationSettings(Duration cacheTtl, Long cacheMaximumSize, Duration initialBackoff, Duration maxBackoff, Boolean impersonate) {
+
+		/**
+		 * @param cacheTtl         defaults to five minutes if not set
+		 * @param cacheMaximumSize defaults to 10000 if not set
+		 * @param initialBackoff   defaults to one second if not set
+		 * @param maxBackoff       defaults to five minutes if not set
+		 * @param impersonate      Set to {@literal true} to run queries of verified users with the credentials of the driver,
+		 *                         impersonating the user, defaults to {@literal false}
+		 */
+		public AuthenticationSettings {
+			cacheTtl = Optional.ofNullable(cacheTtl).orElseGet(() -> Duration.ofMinutes(5));
+			cacheMaximumSize = Optional.ofNullable(cacheMaximumSize).orElse(10_000L);
+			initialBackoff = Optional.ofNullable(initialBackoff).orElseGet(() -> Duration.ofSeconds(1));
+			maxBackoff = Optional.ofNullable(maxBackoff).orElseGet(() -> Duration.ofMinutes(5));
+			impersonate = Optional.ofNullable(impersonate).orElse(false);
+		}
+	}
+
+	/**
+	 * Queries wait in a queue when too many of them are running at the same time, either for one principal or in one
+	 * database. Principals take turns when they wait for the same database. Requests are rejected right away when the
+	 * queue is full and after waiting too long.
+	 *
+	 * @param enabled                   Set to {@literal true} to limit the queries per principal and per database
+	 * @param maxConcurrentPerPrincipal The maximum number of queries one principal can run at the same time
+	 * @param maxQueuedPerPrincipal     The maximum number of queries of one principal waiting to be run
+	 * @param maxConcurrentPerDatabase  The maximum number of queries running at the same time in one database
+	 * @param maxQueuedPerDatabase      The maximum number of queries waiting to be run in one database
+	 * @param maxWait                   The maximum duration a query waits before it is rejected
+	 */
+	public record ConcurrencySettings(Boolean enabled, Integer maxConcurrentPerPrincipal, Integer maxQueuedPerPrincipal, Integer maxConcurrentPerDatabase, Integer maxQueuedPerDatabase, Duration maxWait) {
+
+		/**
+		 * @param enabled                   defaults to {@literal false} if not set
+		 * @param maxConcurrentPerPrincipal defaults to 10 if not set
+		 * @param maxQueuedPerPrincipal     defaults to 50 if not set
+		 * @param maxConcurrentPerDatabase  defaults to the maximum size of the driver's connection pool if not set
+		 * @param maxQueuedPerDatabase      defaults to 500 if not set
+		 * @param maxWait                   defaults to ten seconds if not set
+		 */
+		public ConcurrencySettings {
+			enabled = Optional.ofNullable(enabled).orElse(false);
+			maxConcurrentPerPrincipal = Optional.ofNullable(maxConcurrentPerPrincipal).orElse(10);
+			maxQueuedPerPrincipal = Optional.ofNullable(maxQueuedPerPrincipal).orElse(50);
+			maxQueuedPerDatabase = Optional.ofNullable(maxQueuedPerDatabase).orElse(500);
+			maxWait = Optional.ofNullable(maxWait).orElseGet(() -> Duration.ofSeconds(10));
+		}
+	}
+
+	/**
+	 * Bounds the number of queries running at the same time in total. The bound adapts to the connection pool
+	 * of the driver: It is decreased multiplicatively when acquiring connections takes too long, times out or when a
+	 * pool is nearly exhausted while queries are waiting for connections, and increased by one otherwise, as long as at
+	 * least half of it is used. Queries exceeding the bound are rejected right away. Queries waiting for the limits of
+	 * {@link ConcurrencySettings} don't count, so that their queues can be used.
+	 *
+	 * @param enabled               Set to {@literal true} to bound the number of queries
+	 * @param initialLimit          The number of queries admitted at the same time before the pool has been observed
+	 * @param minLimit              The lower bound of admitted queries
+	 * @param maxLimit              The upper bound of admitted queries
+	 * @param targetAcquisitionTime The average time it may take to acquire a connection without backing off
+	 * @param backoffRatio          The factor by which the bound is multiplied when backing off
+	 * @param interval              The interval in which the pool is observed and the bound is adapted
+	 */
+	public record AdmissionSettings(Boolean enabled, Integer initialLimit, Integer minLimit, Integer maxLimit, Duration targetAcquisitionTime, Double backoffRatio, Duration interval) {
+
+		/**
+		 * @param enabled               defaults to {@literal false} if not set
+		 * @param initialLimit          defaults to 200 if not set
+		 * @param minLimit              defaults to 10 if not set
+		 * @param maxLimit              defaults to 1000 if not set
+		 * @param targetAcquisitionTime defaults to 50 milliseconds if not set
+		 * @param backoffRatio          defaults to 0.9 if not set
+		 * @param interval              defaults to one second if not set
+		 */
+		public AdmissionSettings {
+			enabled = Optional.ofNullable(enabled).orElse(false);
+			initialLimit = Optional.ofNullable(initialLimit).orElse(200);
+			minLimit = Optional.ofNullable(minLimit).orElse(10);
+			maxLimit = Optional.ofNullable(maxLimit).orElse(1000);
+			targetAcquisitionTime = Optional.ofNullable(targetAcquisitionTime).orElseGet(() -> Duration.ofMillis(50));
+			backoffRatio = Optional.ofNullable(backoffRatio).orElse(0.9);
+			interval = Optional.ofNullable(interval).orElseGet(() -> Duration.ofSeconds(1));
+		}
 	}
 }
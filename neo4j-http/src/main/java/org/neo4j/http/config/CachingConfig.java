@@ -15,13 +15,70 @@
  */
 package org.neo4j.http.config;
 
+import java.util.List;
+
+import org.neo4j.http.db.QueryEvaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+
 /**
  * @author Michael J. Simons
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
 public class CachingConfig {
+
+	/**
+	 * A bounded cache manager. The caches are created upfront, so that Spring Boot can bind their statistics to the
+	 * meter registry on startup (available as {@code cache.gets}, {@code cache.puts}, {@code cache.evictions} and
+	 * {@code cache.size}). Requesting any other cache is an error.
+	 *
+	 * @param applicationProperties Properties belonging to this application
+	 * @return the cache manager used throughout the application
+	 */
+	@Bean
+	CacheManager cacheManager(@Autowired ApplicationProperties applicationProperties) {
+
+		var settings = applicationProperties.executionRequirementsCache();
+		var cacheManager = new CaffeineCacheManager();
+		cacheManager.setCaffeine(Caffeine.newBuilder()
+			.maximumSize(settings.maximumSize())
+			.expireAfterAccess(settings.expireAfterAccess())
+			.recordStats());
+		cacheManager.setCacheNames(List.of(QueryEvaluator.EXECUTION_REQUIREMENTS_CACHE));
+		cacheManager.setAllowNullValues(false);
+		return cacheManager;
+	}
+
+	/**
+	 * Execution requirements are cached per principal, database and fingerprint of the query, or without the principal
+	 * when they are shared.
+	 *
+	 * @param applicationProperties Properties belonging to this application
+	 * @param meterRegistry         Used to count the queries per fingerprint
+	 * @return the key generator for the execution requirements cache
+	 */
+	@Bean(QueryEvaluator.EXECUTION_REQUIREMENTS_KEY_GENERATOR)
+	KeyGenerator executionRequirementsKeyGenerator(@Autowired ApplicationProperties applicationProperties, @Autowired MeterRegistry meterRegistry) {
+		return new ExecutionRequirementsKeyGenerator(applicationProperties.executionRequirementsShared(), meterRegistry);
+	}
+
+	/**
+	 * Clients may send an unbounded number of different queries, so the number of fingerprints tagged is capped.
+	 *
+	 * @return a filter limiting the number of fingerprints recorded
+	 */
+	@Bean
+	MeterFilter queriesPerFingerprintFilter() {
+		return MeterFilter.maximumAllowableTags(ExecutionRequirementsKeyGenerator.QUERIES_METRIC, ExecutionRequirementsKeyGenerator.FINGERPRINT_TAG, 1000, MeterFilter.deny());
+	}
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.config;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.http.db.QueryEvaluator;
+import org.neo4j.http.db.QueryFingerprint;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Generates keys for the execution requirements cache based on the {@link QueryFingerprint fingerprint} of a query
+ * and counts the queries per fingerprint along the way. In shared mode the principal is not part of the key and all
+ * principals share the same evaluation. The arguments are expected in the order of
+ * {@link QueryEvaluator#getExecutionRequirements(org.neo4j.http.db.Neo4jPrincipal, String, String, QueryFingerprint)}, the
+ * fingerprint is computed once by the caller.
+ *
+ * @author Michael J. Simons
+ */
+final class ExecutionRequirementsKeyGenerator implements KeyGenerator {
+
+	private static final Logger LOGGER = Logger.getLogger(ExecutionRequirementsKeyGenerator.class.getName());
+
+	static final String QUERIES_METRIC = "neo4j.http.queries";
+
+	static final String FINGERPRINT_TAG = "fingerprint";
+
+	private final boolean shared;
+
+	private final MeterRegistry meterRegistry;
+
+	ExecutionRequirementsKeyGenerator(boolean shared, MeterRegistry meterRegistry) {
+		this.shared = shared;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public Object generate(Object target, Method method, Object... params) {
+
+		var fingerprint = (QueryFingerprint) params[3];
+		count(fingerprint);
+		return shared ? new SimpleKey(params[1], fingerprint) : new SimpleKey(params[0], params[1], fingerprint);
+	}
+
+	private void count(QueryFingerprint fingerprint) {
+
+		var hash = fingerprint.hash();
+		if (LOGGER.isLoggable(Level.FINE) && meterRegistry.find(QUERIES_METRIC).tag(FINGERPRINT_TAG, hash).counter() == null) {
+			LOGGER.log(Level.FINE, "New query with fingerprint {0}: {1}", new Object[] {hash, fingerprint.value()});
+		}
+		Counter.builder(QUERIES_METRIC)
+			.description("Number of queries per fingerprint, non-parameterized queries use literals where they could use parameters")
+			.tag(FINGERPRINT_TAG, hash)
+			.tag("parameterized", Boolean.toString(!fingerprint.literalsReplaced()))
+			.register(meterRegistry)
+			.increment();
+	}
+}
@@ -15,19 +15,33 @@
  */
 package org.neo4j.http.config;
 
+import java.util.Optional;
+
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.types.TypeSystem;
+import org.neo4j.http.db.PersistedQuery;
+import org.neo4j.http.db.PersistedQueryRegistry;
 import org.neo4j.http.message.DefaultRequestFormatModule;
 import org.neo4j.http.message.DefaultResponseModule;
+import org.neo4j.http.message.ResultEventArrowEncoder;
+import org.neo4j.http.message.ResultEventEncoder;
+import org.neo4j.http.message.ResultEventNdjsonEncoder;
 import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.codec.CodecCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 /**
@@ -37,13 +51,30 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
  */
 @Configuration(proxyBeanMethods = false)
 @RegisterReflectionForBinding({
-	DefaultRequestFormatModule.AnnotatedQueryContainerMixIn.class,
 	DefaultResponseModule.InputPositionMixIn.class,
 	DefaultResponseModule.Neo4jExceptionMixIn.class,
 	DefaultResponseModule.NotificationMixIn.class,
+	PersistedQuery.class
 })
 public class JacksonConfig {
 
+	private final ObjectProvider<PersistedQueryRegistry> persistedQueryRegistry;
+
+	/**
+	 * Creates a configuration without support for persisted queries.
+	 */
+	public JacksonConfig() {
+		this(null);
+	}
+
+	/**
+	 * @param persistedQueryRegistry used to resolve persisted queries, looked up lazily as it depends on the driver itself
+	 */
+	@Autowired
+	public JacksonConfig(ObjectProvider<PersistedQueryRegistry> persistedQueryRegistry) {
+		this.persistedQueryRegistry = persistedQueryRegistry;
+	}
+
 	/**
 	 * @param driver needed to retrieve the type-system
 	 * @return changes to the default, application context wide instance of {@link com.fasterxml.jackson.databind.ObjectMapper}
@@ -53,7 +84,7 @@ public class JacksonConfig {
 
 		return builder -> {
 			builder.modules(
-				new DefaultRequestFormatModule(),
+				new DefaultRequestFormatModule(this::findPersistedQuery),
 				new DefaultResponseModule(TypeSystem.getDefault()),
 				new JavaTimeModule()
 			);
@@ -67,4 +98,37 @@ public class JacksonConfig {
 			builder.serializationInclusion(JsonInclude.Include.NON_ABSENT);
 		};
 	}
+
+	private Optional<PersistedQuery> findPersistedQuery(String id) {
+		return Optional.ofNullable(persistedQueryRegistry)
+			.map(ObjectProvider::getIfAvailable)
+			.flatMap(registry -> registry.find(id));
+	}
+
+	/**
+	 * The Smile codecs use an object mapper created from the same, customized builder as the application context wide
+	 * instance, so that requests and responses are handled by the same modules regardless of the format.
+	 *
+	 * @param objectMapper          the application context wide instance of {@link ObjectMapper}
+	 * @param objectMapperBuilder   a new builder with all customizations applied
+	 * @param applicationProperties used for the size of Arrow record batches
+	 * @return a customizer registering the encoders for streamed results and the Smile codecs
+	 */
+	@Bean
+	public CodecCustomizer resultEventCodecCustomizer(
+		@Autowired ObjectMapper objectMapper,
+		@Autowired Jackson2ObjectMapperBuilder objectMapperBuilder,
+		@Autowired ApplicationProperties applicationProperties
+	) {
+
+		var smileObjectMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+		return configurer -> {
+			configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileObjectMapper));
+			configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileObjectMapper));
+			configurer.customCodecs().register(new ResultEventEncoder(objectMapper));
+			configurer.customCodecs().register(new ResultEventEncoder(smileObjectMapper, ResultEventEncoder.APPLICATION_SMILE));
+			configurer.customCodecs().register(new ResultEventNdjsonEncoder(objectMapper));
+			configurer.customCodecs().register(new ResultEventArrowEncoder(objectMapper, applicationProperties.fetchSize()));
+		};
+	}
 }
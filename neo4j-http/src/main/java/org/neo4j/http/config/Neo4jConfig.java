@@ -32,6 +32,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Configures all beans necessary to interact with a Neo4j database. The database can be a single instance or a cluster
  * instance. All versions supported by the driver in use are fine.
@@ -120,7 +122,7 @@ public class Neo4jConfig {
 	 * @return A query evaluator based on the given capabilities.
 	 */
 	@Bean
-	QueryEvaluator queryEvaluator(Driver driver, Capabilities capabilities) {
-		return QueryEvaluator.create(driver, capabilities);
+	QueryEvaluator queryEvaluator(Driver driver, Capabilities capabilities, MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+		return QueryEvaluator.create(driver, capabilities, meterRegistry, applicationProperties.executionRequirementsShared());
 	}
 }
@@ -15,12 +15,19 @@
  */
 package org.neo4j.http.config;
 
+import java.util.List;
+
+import org.neo4j.http.auth.Neo4jAuthenticationProvider;
 import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
 import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpBasicServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
 
 /**
  * Custom security configuration. For example, CSRF protection is useful when dealing with web forms etc. but not with a REST api.
@@ -31,18 +38,26 @@ import org.springframework.security.web.server.SecurityWebFilterChain;
 public class SecurityConfig {
 
 	/**
-	 * @param http Existing chain
-	 * @return A chain that requires all requests to be authenticated and disables CSRF
+	 * @param http                    Existing chain
+	 * @param authenticationProviders All authentication providers, each one will get its own filter
+	 * @return A chain that requires all requests to be authenticated with one of the supported schemes and disables CSRF
 	 */
 	@Bean
-	public SecurityWebFilterChain filterChain(ServerHttpSecurity http) {
+	public SecurityWebFilterChain filterChain(ServerHttpSecurity http, List<Neo4jAuthenticationProvider> authenticationProviders) {
+
+		for (var authenticationProvider : authenticationProviders) {
+			var filter = new AuthenticationWebFilter(authenticationProvider);
+			filter.setServerAuthenticationConverter(authenticationProvider.authenticationConverter());
+			filter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(authenticationProvider.authenticationEntryPoint()));
+			http.addFilterAt(filter, SecurityWebFiltersOrder.AUTHENTICATION);
+		}
 
 		return http
 			.authorizeExchange(exchanges -> exchanges
 				.matchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
 				.anyExchange().authenticated()
 			)
-			.httpBasic().and()
+			.exceptionHandling().authenticationEntryPoint(new HttpBasicServerAuthenticationEntryPoint()).and()
 			.csrf().disable()
 			.build();
 	}
@@ -19,7 +19,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Pattern;
 
 import org.neo4j.cypher.internal.ast.factory.ASTExceptionFactory;
 import org.neo4j.cypher.internal.ast.factory.ASTFactory;
@@ -40,6 +39,9 @@ import org.neo4j.cypher.internal.parser.javacc.CypherCharStream;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.reactivestreams.ReactiveSession;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import reactor.core.publisher.Mono;
 
 /**
@@ -49,13 +51,17 @@ import reactor.core.publisher.Mono;
  */
 abstract class AbstractQueryEvaluator implements QueryEvaluator {
 
-	private static final Pattern CALL_PATTERN = Pattern.compile("(?ims)(?<!`)([^`\\s*]\\s*+CALL\\s*\\{.*}\\s*IN\\s+TRANSACTIONS)(?!`)");
-
 	protected final Driver driver;
 	private final Mono<Boolean> enterpriseEdition;
+	private final MeterRegistry meterRegistry;
 
 	AbstractQueryEvaluator(Driver driver) {
+		this(driver, Metrics.globalRegistry);
+	}
+
+	AbstractQueryEvaluator(Driver driver, MeterRegistry meterRegistry) {
 		this.driver = driver;
+		this.meterRegistry = meterRegistry;
 		this.enterpriseEdition = Mono.usingWhen(
 				Mono.fromCallable(() -> driver.session(ReactiveSession.class)),
 				rxSession -> Mono.fromDirect(rxSession.run("CALL dbms.components() YIELD edition RETURN toLower(edition) = 'enterprise'")).flatMap(rs -> Mono.fromDirect(rs.records())).map(record -> record.get(0).asBoolean()),
@@ -68,6 +74,28 @@ abstract class AbstractQueryEvaluator implements QueryEvaluator {
 		return enterpriseEdition;
 	}
 
+	/**
+	 * Records the time it takes to compute the requirements. This is meant to be applied before any caching operator,
+	 * so that it only measures actual evaluations and not cache hits.
+	 *
+	 * @param requirements The computation to measure
+	 * @return The measured computation
+	 */
+	protected final Mono<ExecutionRequirements> timed(Mono<ExecutionRequirements> requirements) {
+
+		return Mono.defer(() -> {
+			var sample = Timer.start(meterRegistry);
+			return requirements.doOnEach(signal -> {
+				if (signal.isOnComplete() || signal.isOnError()) {
+					sample.stop(Timer.builder("neo4j.http.execution.requirements")
+						.description("Time spent evaluating the execution requirements of a query")
+						.tag("outcome", signal.isOnError() ? "error" : "success")
+						.register(meterRegistry));
+				}
+			});
+		});
+	}
+
 	/**
 	 * Computes or retrieves the transaction mode required by the query.
 	 *
@@ -77,7 +105,8 @@ abstract class AbstractQueryEvaluator implements QueryEvaluator {
 	protected final Mono<TransactionMode> getTransactionMode(String query) {
 
 		var result = TransactionMode.MANAGED;
-		if (CALL_PATTERN.matcher(query).find()) {
+		// The scanner is cheap and rules out the vast majority of queries, the parser confirms the rest
+		if (CallInTransactionsScanner.containsCallInTransactions(query)) {
 			var characteristics = AbstractQueryEvaluator.getCharacteristics(query);
 			result = characteristics.callInTx() ? TransactionMode.IMPLICIT : TransactionMode.MANAGED;
 		}
@@ -85,7 +114,7 @@ abstract class AbstractQueryEvaluator implements QueryEvaluator {
 		return Mono.just(result);
 	}
 
-	private record QueryCharacteristics(boolean callInTx) {
+	record QueryCharacteristics(boolean callInTx) {
 	}
 
 	/**
@@ -94,7 +123,7 @@ abstract class AbstractQueryEvaluator implements QueryEvaluator {
 	 * @param query The query to evaluate
 	 * @return The details of the query
 	 */
-	private static QueryCharacteristics getCharacteristics(String query) {
+	static QueryCharacteristics getCharacteristics(String query) {
 		ASTFactoryImpl astFactory = new ASTFactoryImpl();
 		try {
 			// We are using the side effects of the factory
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.driver.ConnectionPoolMetrics;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Metrics;
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.neo4j.Neo4jProperties;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Adapts the number of queries admitted at the same time to the connection pools of the driver, following an
+ * additive increase / multiplicative decrease scheme: In each interval, the limit is multiplied with the backoff ratio
+ * if any pool showed signs of overload, that is acquiring a connection timed out, took longer than the target on
+ * average or queries are waiting for a connection while the pool is nearly exhausted. Otherwise the limit is increased
+ * by one, but only if at least half of it has been used, so that it does not grow while idle.
+ * <p>
+ * Without this, queries exceeding what the pools can serve would pile up waiting for a connection until they time out.
+ * Rejecting them right away keeps the latency of admitted queries bounded.
+ * <p>
+ * The pools can only be observed with the metrics of the driver enabled. All queries are admitted without them.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class AdmissionController implements InitializingBean, DisposableBean {
+
+	private static final Logger LOGGER = Logger.getLogger(AdmissionController.class.getName());
+
+	static final String LIMIT_METRIC = "neo4j.http.admission.limit";
+
+	/**
+	 * The share of connections in use from which on a pool with waiting queries is considered to be exhausted.
+	 */
+	private static final double SATURATION = 0.9;
+
+	private record Sample(long acquired, long acquisitionTime, long timedOut) {
+
+		static final Sample NONE = new Sample(0, 0, 0);
+
+		static Sample of(ConnectionPoolMetrics pool) {
+			return new Sample(pool.acquired(), pool.totalAcquisitionTime(), pool.timedOutToAcquire());
+		}
+	}
+
+	private final ApplicationProperties.AdmissionSettings settings;
+
+	/**
+	 * Metrics of the driver, {@literal null} if they are not available.
+	 */
+	private final Metrics metrics;
+
+	private final int maxPoolSize;
+
+	private final Map<String, Sample> samples = new HashMap<>();
+
+	private final AtomicInteger peak = new AtomicInteger();
+
+	private volatile int limit;
+
+	private Disposable sampler;
+
+	@Autowired
+	AdmissionController(ApplicationProperties applicationProperties, Driver driver, Neo4jProperties neo4jProperties, MeterRegistry meterRegistry) {
+		this(applicationProperties.admission(), driver.isMetricsEnabled() ? driver.metrics() : null, neo4jProperties.getPool().getMaxConnectionPoolSize(), meterRegistry);
+	}
+
+	AdmissionController(ApplicationProperties.AdmissionSettings settings, Metrics metrics, int maxPoolSize, MeterRegistry meterRegistry) {
+		this.settings = settings;
+		this.metrics = metrics;
+		this.maxPoolSize = maxPoolSize;
+		this.limit = settings.initialLimit();
+
+		if (isActive()) {
+			Gauge.builder(LIMIT_METRIC, this, AdmissionController::limit)
+				.description("Number of queries admitted to run at the same time")
+				.register(meterRegistry);
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+
+		if (!settings.enabled()) {
+			return;
+		}
+		if (metrics == null) {
+			LOGGER.log(Level.WARNING, "Metrics of the driver are disabled, admitting all queries");
+			return;
+		}
+		var interval = settings.interval().toNanos();
+		this.sampler = Schedulers.parallel().schedulePeriodically(this::adjust, interval, interval, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void destroy() {
+
+		if (sampler != null) {
+			sampler.dispose();
+		}
+	}
+
+	/**
+	 * {@return the number of queries admitted at the same time}
+	 */
+	int limit() {
+		return isActive() ? limit : Integer.MAX_VALUE;
+	}
+
+	private boolean isActive() {
+		return settings.enabled() && metrics != null;
+	}
+
+	/**
+	 * Decides whether another query is admitted.
+	 *
+	 * @param inFlight The number of queries running right now
+	 * @return {@literal true} if another query can be admitted
+	 */
+	boolean admits(int inFlight) {
+
+		peak.accumulateAndGet(inFlight + 1, Math::max);
+		return inFlight < limit();
+	}
+
+	/**
+	 * Observes the pools since the last call and adapts the limit accordingly.
+	 */
+	void adjust() {
+
+		try {
+			var overloaded = false;
+			for (var pool : metrics.connectionPoolMetrics()) {
+				overloaded |= isOverloaded(pool, samples.getOrDefault(pool.id(), Sample.NONE));
+				samples.put(pool.id(), Sample.of(pool));
+			}
+
+			var current = limit;
+			var used = peak.getAndSet(0);
+			if (overloaded) {
+				limit = Math.max(settings.minLimit(), (int) (current * settings.backoffRatio()));
+			} else if (2 * used >= current) {
+				limit = Math.min(settings.maxLimit(), current + 1);
+			}
+			if (limit != current) {
+				LOGGER.log(Level.FINE, "Adjusted admission limit from {0} to {1}", new Object[] {current, limit});
+			}
+		} catch (Exception e) {
+			// Keep the last limit, the next interval might be more successful
+			LOGGER.log(Level.WARNING, e, () -> "Could not adjust the admission limit");
+		}
+	}
+
+	private boolean isOverloaded(ConnectionPoolMetrics pool, Sample previous) {
+
+		if (pool.timedOutToAcquire() > previous.timedOut()) {
+			return true;
+		}
+		var acquired = pool.acquired() - previous.acquired();
+		if (acquired > 0 && (pool.totalAcquisitionTime() - previous.acquisitionTime()) / acquired > settings.targetAcquisitionTime().toMillis()) {
+			return true;
+		}
+		return pool.acquiring() > 0 && pool.inUse() >= SATURATION * maxPoolSize;
+	}
+}
@@ -52,8 +52,35 @@ import org.neo4j.driver.Query;
  * @param value              The actual query
  * @param includeStats       flag to include stats or not
  * @param resultDataContents One or more formats, not applicable to the streaming API
+ * @param persistedQuery     The persisted query this query has been created from, might be {@literal null}
+ * @param fetchSize          The fetch size requested by the client, might be {@literal null} to use a learned one
+ * @param fingerprint        The fingerprint of the persisted query this query has been created from or of the query itself
  */
-public record AnnotatedQuery(Query value, boolean includeStats, Set<ResultFormat> resultDataContents) {
+public record AnnotatedQuery(Query value, boolean includeStats, Set<ResultFormat> resultDataContents, PersistedQuery persistedQuery, Integer fetchSize, QueryFingerprint fingerprint) {
+
+	/**
+	 * Creates an annotated query that has not been created from a {@link PersistedQuery persisted query}.
+	 *
+	 * @param value              The actual query
+	 * @param includeStats       flag to include stats or not
+	 * @param resultDataContents One or more formats, not applicable to the streaming API
+	 */
+	public AnnotatedQuery(Query value, boolean includeStats, Set<ResultFormat> resultDataContents) {
+		this(value, includeStats, resultDataContents, null, null);
+	}
+
+	/**
+	 * Creates an annotated query and computes its fingerprint once, unless it can be taken from the persisted query.
+	 *
+	 * @param value              The actual query
+	 * @param includeStats       flag to include stats or not
+	 * @param resultDataContents One or more formats, not applicable to the streaming API
+	 * @param persistedQuery     The persisted query this query has been created from, might be {@literal null}
+	 * @param fetchSize          The fetch size requested by the client, might be {@literal null} to use a learned one
+	 */
+	public AnnotatedQuery(Query value, boolean includeStats, Set<ResultFormat> resultDataContents, PersistedQuery persistedQuery, Integer fetchSize) {
+		this(value, includeStats, resultDataContents, persistedQuery, fetchSize, persistedQuery == null ? QueryFingerprint.of(value.text()) : persistedQuery.fingerprint());
+	}
 
 	/**
 	 * Possible result formats
@@ -70,15 +97,31 @@ public record AnnotatedQuery(Query value, boolean includeStats, Set<ResultFormat
 		/**
 		 * Subset of the old rest format.
 		 */
-		REST
+		REST,
+		/**
+		 * Like {@link #GRAPH}, but each node and relationship is only contained in the graph of the first row it appears
+		 * in. The graph of each row references all of its entities by id instead. Takes precedence over {@link #GRAPH}.
+		 */
+		DEDUPLICATED_GRAPH
 	}
 
 	/**
 	 * This is a container for {@link AnnotatedQuery annotated queries}
 	 *
-	 * @param value the content of this container
+	 * @param value  the content of this container
+	 * @param single {@literal true} if the request contained exactly one statement on the top level instead of a list
+	 *               of {@literal statements}
 	 */
-	public record Container(List<AnnotatedQuery> value) {
+	public record Container(List<AnnotatedQuery> value, boolean single) {
+
+		/**
+		 * Creates a container for a list of statements.
+		 *
+		 * @param value the content of this container
+		 */
+		public Container(List<AnnotatedQuery> value) {
+			this(value, false);
+		}
 	}
 
 	/**
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.neo4j.Neo4jProperties;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Limits the number of queries running at the same time per principal and per database, so that a single principal
+ * cannot take all connections of the driver's pool. Queries that cannot run right away wait in a queue per database,
+ * in which principals take turns: Each principal with waiting queries gets one query started before any principal
+ * gets a second one. Queries are rejected with a {@link ConcurrencyLimitReachedException} when the queue of their
+ * principal or database is full or when they waited too long. They are also rejected right away when the
+ * {@link AdmissionController} does not admit any more running queries because the connection pool of the driver is
+ * saturated. Waiting queries don't count against admission, but are only started while it admits them.
+ * <p>
+ * The limits per principal and per database must be enabled, without them queries are only subject to admission. The
+ * number of queries running in one database is limited to the size of the connection pool by default.
+ * <p>
+ * The number of running and waiting queries as well as the time spent waiting are exported per database. Database names
+ * come from the request, so the state of idle databases is removed and the number of databases tagged is capped.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class Bulkheads {
+
+	static final String RUNNING_METRIC = "neo4j.http.queries.running";
+
+	static final String QUEUED_METRIC = "neo4j.http.queries.queued";
+
+	static final String WAIT_METRIC = "neo4j.http.queries.wait";
+
+	static final String REJECTED_METRIC = "neo4j.http.queries.rejected";
+
+	/**
+	 * Maximum number of databases for which metrics are recorded.
+	 */
+	static final int MAX_TAGGED_DATABASES = 100;
+
+	/**
+	 * Weight of the latest duration a permit has been held in the average.
+	 */
+	private static final double ALPHA = 0.2;
+
+	private static final Duration MIN_RETRY_AFTER = Duration.ofSeconds(1);
+
+	private final ApplicationProperties.ConcurrencySettings settings;
+
+	private final int maxConcurrentPerPrincipal;
+
+	private final int maxConcurrentPerDatabase;
+
+	private final IntPredicate admission;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Database> databases = new HashMap<>();
+
+	private final Map<String, Principal> principals = new HashMap<>();
+
+	private double averageHoldNanos;
+
+	/**
+	 * Number of queries running in all databases.
+	 */
+	private int totalRunning;
+
+	/**
+	 * Number of queries waiting in all databases.
+	 */
+	private int totalQueued;
+
+	@Autowired
+	Bulkheads(ApplicationProperties applicationProperties, Neo4jProperties neo4jProperties, AdmissionController admissionController, MeterRegistry meterRegistry) {
+		this(applicationProperties.concurrency(), neo4jProperties.getPool().getMaxConnectionPoolSize(), admissionController::admits, meterRegistry);
+	}
+
+	Bulkheads(ApplicationProperties.ConcurrencySettings settings, int maxPoolSize, MeterRegistry meterRegistry) {
+		this(settings, maxPoolSize, inFlight -> true, meterRegistry);
+	}
+
+	Bulkheads(ApplicationProperties.ConcurrencySettings settings, int maxPoolSize, IntPredicate admission, MeterRegistry meterRegistry) {
+		this.settings = settings;
+		if (settings.enabled()) {
+			this.maxConcurrentPerPrincipal = settings.maxConcurrentPerPrincipal();
+			this.maxConcurrentPerDatabase = Optional.ofNullable(settings.maxConcurrentPerDatabase()).orElse(maxPoolSize);
+		} else {
+			this.maxConcurrentPerPrincipal = Integer.MAX_VALUE;
+			this.maxConcurrentPerDatabase = Integer.MAX_VALUE;
+		}
+		this.admission = admission;
+		this.meterRegistry = meterRegistry;
+
+		this.meterRegistry.config().meterFilter(MeterFilter.maximumAllowableTags("neo4j.http.queries.", "database", MAX_TAGGED_DATABASES, MeterFilter.deny()));
+	}
+
+	/**
+	 * Runs the given work once the principal and the database can run another query.
+	 *
+	 * @param principal The principal running the work
+	 * @param database  The database in which the work is done
+	 * @param work      The work to do, subscribed to at most once
+	 * @param <T>       The type of the elements
+	 * @return the results of the work
+	 */
+	<T> Flux<T> limit(Neo4jPrincipal principal, String database, Flux<T> work) {
+		return Flux.usingWhen(acquire(principal.username(), database), permit -> work, Permit::release);
+	}
+
+	/**
+	 * Runs the given work once the principal and the database can run another query.
+	 *
+	 * @param principal The principal running the work
+	 * @param database  The database in which the work is done
+	 * @param work      The work to do, subscribed to at most once
+	 * @param <T>       The type of the element
+	 * @return the result of the work
+	 */
+	<T> Mono<T> limit(Neo4jPrincipal principal, String database, Mono<T> work) {
+		return Mono.usingWhen(acquire(principal.username(), database), permit -> work, Permit::release);
+	}
+
+	Mono<Permit> acquire(String principalName, String databaseName) {
+
+		return Mono.<Permit>create(sink -> {
+			Permit permit = null;
+			ConcurrencyLimitReachedException rejection = null;
+			synchronized (this) {
+				var database = databases.computeIfAbsent(databaseName, Database::new);
+				var principal = principals.computeIfAbsent(principalName, Principal::new);
+				// After each dispatch, nobody who could run is waiting, so the new query does not jump the queue
+				if (!admission.test(totalRunning)) {
+					rejection = ConcurrencyLimitReachedException.admission(totalRunning, retryAfter(totalQueued, Math.max(totalRunning, 1)));
+				} else if (principal.running < maxConcurrentPerPrincipal && database.running < maxConcurrentPerDatabase) {
+					permit = grant(principal, database, System.nanoTime());
+				} else if (principal.queued >= settings.maxQueuedPerPrincipal()) {
+					rejection = ConcurrencyLimitReachedException.principal(settings.maxQueuedPerPrincipal(), retryAfter(principal.queued, maxConcurrentPerPrincipal));
+				} else if (database.queued >= settings.maxQueuedPerDatabase()) {
+					rejection = ConcurrencyLimitReachedException.database(databaseName, settings.maxQueuedPerDatabase(), retryAfter(database.queued, maxConcurrentPerDatabase));
+				} else {
+					var waiter = new Waiter(principal, database, sink, System.nanoTime());
+					database.waiters.computeIfAbsent(principalName, k -> new ArrayDeque<>()).add(waiter);
+					++database.queued;
+					++principal.queued;
+					++totalQueued;
+					waiter.timeout = Schedulers.parallel().schedule(() -> expire(waiter), settings.maxWait().toNanos(), TimeUnit.NANOSECONDS);
+					sink.onCancel(() -> cancel(waiter));
+				}
+				if (rejection != null) {
+					meterRegistry.counter(REJECTED_METRIC, "database", databaseName, "reason", rejection.code()).increment();
+					removeIfIdle(principal);
+					removeIfIdle(database);
+				}
+			}
+			if (permit != null) {
+				sink.success(permit);
+			} else if (rejection != null) {
+				sink.error(rejection);
+			}
+		});
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 */
+	private Permit grant(Principal principal, Database database, long queuedSince) {
+
+		++principal.running;
+		++database.running;
+		++totalRunning;
+		database.waitTimer.record(System.nanoTime() - queuedSince, TimeUnit.NANOSECONDS);
+		return new Permit(principal, database);
+	}
+
+	private void release(Permit permit) {
+
+		List<Waiter> granted;
+		synchronized (this) {
+			--permit.principal.running;
+			--permit.database.running;
+			--totalRunning;
+			var heldFor = System.nanoTime() - permit.grantedAt;
+			averageHoldNanos = averageHoldNanos == 0 ? heldFor : ALPHA * heldFor + (1 - ALPHA) * averageHoldNanos;
+			granted = dispatch();
+			removeIfIdle(permit.principal);
+			removeIfIdle(permit.database);
+		}
+		granted.forEach(Waiter::notifyGranted);
+	}
+
+	private void cancel(Waiter waiter) {
+
+		synchronized (this) {
+			if (waiter.permit == null) {
+				dequeue(waiter);
+				return;
+			}
+		}
+		// Granted, but the permit didn't reach the subscriber anymore
+		waiter.permit.releaseNow();
+	}
+
+	private void expire(Waiter waiter) {
+
+		ConcurrencyLimitReachedException rejection;
+		synchronized (this) {
+			if (waiter.permit != null || !dequeue(waiter)) {
+				return;
+			}
+			var principalLimitReached = waiter.principal.running >= maxConcurrentPerPrincipal;
+			var retryAfter = principalLimitReached
+				? retryAfter(waiter.principal.queued, maxConcurrentPerPrincipal)
+				: retryAfter(waiter.database.queued, maxConcurrentPerDatabase);
+			rejection = ConcurrencyLimitReachedException.timeout(principalLimitReached, settings.maxWait(), retryAfter);
+			meterRegistry.counter(REJECTED_METRIC, "database", waiter.database.name, "reason", rejection.code()).increment();
+		}
+		waiter.sink.error(rejection);
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 *
+	 * @return {@literal true} if the waiter was still waiting
+	 */
+	private boolean dequeue(Waiter waiter) {
+
+		var queue = waiter.database.waiters.get(waiter.principal.name);
+		if (queue == null || !queue.remove(waiter)) {
+			return false;
+		}
+		--waiter.database.queued;
+		--waiter.principal.queued;
+		--totalQueued;
+		if (queue.isEmpty()) {
+			waiter.database.waiters.remove(waiter.principal.name);
+		}
+		waiter.timeout.dispose();
+		removeIfIdle(waiter.principal);
+		removeIfIdle(waiter.database);
+		return true;
+	}
+
+	/**
+	 * Starts as many waiting queries as possible, one per principal and round, so that principals take turns. Must be
+	 * called while holding the lock.
+	 *
+	 * @return the waiters that have been granted a permit and must be notified after the lock has been released
+	 */
+	private List<Waiter> dispatch() {
+
+		var granted = new ArrayList<Waiter>();
+		for (var database : databases.values()) {
+			var progress = true;
+			while (progress && database.queued > 0 && database.running < maxConcurrentPerDatabase) {
+				progress = false;
+				for (var principalName : List.copyOf(database.waiters.keySet())) {
+					var principal = principals.get(principalName);
+					if (database.running >= maxConcurrentPerDatabase || !admission.test(totalRunning)) {
+						break;
+					} else if (principal.running >= maxConcurrentPerPrincipal) {
+						continue;
+					}
+					// Removing and adding the queue again moves the principal to the end of the line
+					var queue = database.waiters.remove(principalName);
+					var waiter = queue.poll();
+					if (!queue.isEmpty()) {
+						database.waiters.put(principalName, queue);
+					}
+					--database.queued;
+					--principal.queued;
+					--totalQueued;
+					waiter.timeout.dispose();
+					waiter.permit = grant(principal, database, waiter.queuedSince);
+					granted.add(waiter);
+					progress = true;
+				}
+			}
+		}
+		return granted;
+	}
+
+	/**
+	 * {@return an estimate how long it takes until the queries waiting in a queue have been run}
+	 */
+	private Duration retryAfter(int queued, int maxConcurrent) {
+
+		var estimate = Duration.ofNanos((long) (averageHoldNanos * (queued / maxConcurrent + 1)));
+		return estimate.compareTo(MIN_RETRY_AFTER) < 0 ? MIN_RETRY_AFTER : estimate;
+	}
+
+	private void removeIfIdle(Principal principal) {
+
+		if (principal.running == 0 && principal.queued == 0) {
+			principals.remove(principal.name);
+		}
+	}
+
+	/**
+	 * Removes the state of the database and the gauges referring to it. The timer is kept and picked up again when the
+	 * database becomes busy. Must be called while holding the lock.
+	 */
+	private void removeIfIdle(Database database) {
+
+		if (database.running == 0 && database.queued == 0) {
+			databases.remove(database.name);
+			meterRegistry.remove(database.runningGauge);
+			meterRegistry.remove(database.queuedGauge);
+		}
+	}
+
+	/**
+	 * The right to run a query. Must be released exactly once, releasing it more often has no effect.
+	 */
+	final class Permit {
+
+		private final Principal principal;
+
+		private final Database database;
+
+		private final long grantedAt = System.nanoTime();
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(Principal principal, Database database) {
+			this.principal = principal;
+			this.database = database;
+		}
+
+		Mono<Void> release() {
+			return Mono.fromRunnable(this::releaseNow);
+		}
+
+		void releaseNow() {
+			if (released.compareAndSet(false, true)) {
+				Bulkheads.this.release(this);
+			}
+		}
+	}
+
+	private static final class Principal {
+
+		private final String name;
+
+		private int running;
+
+		private int queued;
+
+		Principal(String name) {
+			this.name = name;
+		}
+	}
+
+	private final class Database {
+
+		/**
+		 * Waiting queries per principal, in the order in which the principals are served next.
+		 */
+		private final LinkedHashMap<String, Deque<Waiter>> waiters = new LinkedHashMap<>();
+
+		private final String name;
+
+		private final Timer waitTimer;
+
+		private final Gauge runningGauge;
+
+		private final Gauge queuedGauge;
+
+		private int running;
+
+		private int queued;
+
+		Database(String name) {
+			this.name = name;
+			this.runningGauge = Gauge.builder(RUNNING_METRIC, this, database -> database.running)
+				.tag("database", name)
+				.description("Number of queries running at the same time")
+				.register(meterRegistry);
+			this.queuedGauge = Gauge.builder(QUEUED_METRIC, this, database -> database.queued)
+				.tag("database", name)
+				.description("Number of queries waiting to be run")
+				.register(meterRegistry);
+			this.waitTimer = Timer.builder(WAIT_METRIC)
+				.tag("database", name)
+				.description("Time queries waited before they were run")
+				.register(meterRegistry);
+		}
+	}
+
+	private static final class Waiter {
+
+		private final Principal principal;
+
+		private final Database database;
+
+		private final MonoSink<Permit> sink;
+
+		private final long queuedSince;
+
+		private Permit permit;
+
+		private Disposable timeout = Disposables.disposed();
+
+		Waiter(Principal principal, Database database, MonoSink<Permit> sink, long queuedSince) {
+			this.principal = principal;
+			this.database = database;
+			this.sink = sink;
+			this.queuedSince = queuedSince;
+		}
+
+		void notifyGranted() {
+			sink.success(permit);
+		}
+	}
+}
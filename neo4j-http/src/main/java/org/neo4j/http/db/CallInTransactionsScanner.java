@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.util.BitSet;
+
+/**
+ * A single pass scanner looking for {@code CALL { … } IN TRANSACTIONS}. It understands just enough Cypher to not be
+ * fooled by string literals, escaped names and comments and keeps track of which curly braces belong to a {@code CALL}
+ * subquery. It does not validate the query: A query for which this scanner returns {@literal true} might still be
+ * invalid, but a query for which it returns {@literal false} does for sure not contain a subquery in transactions.
+ *
+ * @author Michael J. Simons
+ */
+final class CallInTransactionsScanner {
+
+	private enum State {
+		NONE,
+		AFTER_CALL,
+		AFTER_CALL_SUBQUERY,
+		AFTER_IN
+	}
+
+	/**
+	 * Scans the given query.
+	 *
+	 * @param query The query to scan
+	 * @return {@literal true} if the query contains at least one {@code CALL { … } IN TRANSACTIONS}
+	 */
+	static boolean containsCallInTransactions(String query) {
+
+		var length = query.length();
+		// Each bit represents an open curly brace, set if it started a CALL subquery
+		var braces = new BitSet();
+		var depth = 0;
+		var state = State.NONE;
+
+		var i = 0;
+		while (i < length) {
+			var c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				++i;
+			} else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '/') {
+				i = skipUntil(query, i + 2, "\n");
+			} else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+				i = skipUntil(query, i + 2, "*/");
+			} else if (c == '\'' || c == '"') {
+				i = skipString(query, i + 1, c);
+				state = State.NONE;
+			} else if (c == '`') {
+				i = skipUntil(query, i + 1, "`");
+				state = State.NONE;
+			} else if (Character.isJavaIdentifierStart(c)) {
+				var start = i;
+				while (i < length && Character.isJavaIdentifierPart(query.charAt(i))) {
+					++i;
+				}
+				if (state == State.AFTER_CALL_SUBQUERY && isKeyword(query, start, i, "IN")) {
+					state = State.AFTER_IN;
+				} else if (state == State.AFTER_IN && isKeyword(query, start, i, "TRANSACTIONS")) {
+					return true;
+				} else {
+					state = isKeyword(query, start, i, "CALL") && !isPropertyKey(query, start) ? State.AFTER_CALL : State.NONE;
+				}
+			} else if (c == '{') {
+				braces.set(depth++, state == State.AFTER_CALL);
+				state = State.NONE;
+				++i;
+			} else if (c == '}') {
+				state = depth > 0 && braces.get(--depth) ? State.AFTER_CALL_SUBQUERY : State.NONE;
+				++i;
+			} else {
+				state = State.NONE;
+				++i;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isKeyword(String query, int start, int end, String keyword) {
+		return end - start == keyword.length() && query.regionMatches(true, start, keyword, 0, keyword.length());
+	}
+
+	private static boolean isPropertyKey(String query, int start) {
+
+		var i = start - 1;
+		while (i >= 0 && Character.isWhitespace(query.charAt(i))) {
+			--i;
+		}
+		return i >= 0 && query.charAt(i) == '.';
+	}
+
+	/**
+	 * {@return the index after the end marker or the length of the query if there is no such marker}
+	 */
+	private static int skipUntil(String query, int from, String endMarker) {
+
+		var end = query.indexOf(endMarker, from);
+		return end < 0 ? query.length() : end + endMarker.length();
+	}
+
+	/**
+	 * {@return the index after the closing quote or the length of the query if the string is not terminated}
+	 */
+	private static int skipString(String query, int from, char quote) {
+
+		var i = from;
+		while (i < query.length()) {
+			var c = query.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == quote) {
+				return i + 1;
+			} else {
+				++i;
+			}
+		}
+		return query.length();
+	}
+
+	private CallInTransactionsScanner() {
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.Serial;
+import java.time.Duration;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+
+/**
+ * Thrown when a query cannot be run because too many queries are running or waiting already, either of the same
+ * principal, in the same database or in total, while the connection pool of the driver is saturated. Clients may try
+ * again after {@link #getRetryAfter()}.
+ *
+ * @author Michael J. Simons
+ */
+public final class ConcurrencyLimitReachedException extends Neo4jException {
+
+	@Serial
+	private static final long serialVersionUID = 3217447418330858127L;
+
+	/**
+	 * The principal has too many queries running or waiting.
+	 */
+	public static final String PRINCIPAL_LIMIT_REACHED = "Neo.TransientError.Request.PrincipalConcurrencyLimitReached";
+
+	/**
+	 * The database has too many queries running or waiting.
+	 */
+	public static final String DATABASE_LIMIT_REACHED = "Neo.TransientError.Request.DatabaseConcurrencyLimitReached";
+
+	/**
+	 * The connection pool of the driver is saturated and the number of admitted queries has been reached.
+	 */
+	public static final String ADMISSION_LIMIT_REACHED = "Neo.TransientError.Request.AdmissionLimitReached";
+
+	private final Duration retryAfter;
+
+	private ConcurrencyLimitReachedException(String code, String message, Duration retryAfter) {
+		super(code, message);
+		this.retryAfter = retryAfter;
+	}
+
+	static ConcurrencyLimitReachedException principal(int maxQueued, Duration retryAfter) {
+		return new ConcurrencyLimitReachedException(PRINCIPAL_LIMIT_REACHED, "Unable to run the query since %d queries of this user are waiting already.".formatted(maxQueued), retryAfter);
+	}
+
+	static ConcurrencyLimitReachedException database(String database, int maxQueued, Duration retryAfter) {
+		return new ConcurrencyLimitReachedException(DATABASE_LIMIT_REACHED, "Unable to run the query since %d queries are waiting for database %s already.".formatted(maxQueued, database), retryAfter);
+	}
+
+	static ConcurrencyLimitReachedException admission(int limit, Duration retryAfter) {
+		return new ConcurrencyLimitReachedException(ADMISSION_LIMIT_REACHED, "Unable to run the query since %d queries are running already.".formatted(limit), retryAfter);
+	}
+
+	static ConcurrencyLimitReachedException timeout(boolean principalLimitReached, Duration maxWait, Duration retryAfter) {
+		return new ConcurrencyLimitReachedException(principalLimitReached ? PRINCIPAL_LIMIT_REACHED : DATABASE_LIMIT_REACHED, "Unable to run the query since it waited more than %d ms.".formatted(maxWait.toMillis()), retryAfter);
+	}
+
+	/**
+	 * {@return an estimate after which a retry might succeed}
+	 */
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+}
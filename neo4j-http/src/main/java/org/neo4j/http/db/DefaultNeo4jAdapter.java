@@ -15,35 +15,49 @@
  */
 package org.neo4j.http.db;
 
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.neo4j.driver.AccessMode;
 import org.neo4j.driver.BookmarkManager;
 import org.neo4j.driver.Driver;
-import org.neo4j.driver.Query;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.SessionConfig;
 import org.neo4j.driver.exceptions.Neo4jException;
 import org.neo4j.driver.reactivestreams.ReactiveQueryRunner;
-import org.neo4j.driver.reactivestreams.ReactiveResult;
 import org.neo4j.driver.reactivestreams.ReactiveSession;
+import org.neo4j.driver.reactivestreams.ReactiveTransaction;
 import org.neo4j.driver.summary.ResultSummary;
 import org.neo4j.http.config.ApplicationProperties;
 import org.reactivestreams.Publisher;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuples;
+import reactor.core.scheduler.Schedulers;
 
 /**
+ * Executes queries with the driver. Cancelling any of the returned publishers, for example because the client went
+ * away, cancels the work in the database right away: The transaction is rolled back, or the session of an implicit
+ * transaction is closed, which resets the connection and stops the query on the server. Records that have
+ * already been fetched but are not going to be sent are discarded and counted.
+ * <p>
+ * Each request holds one permit of the {@link Bulkheads} while its statements are run, explicit transactions are only
+ * limited while statements are run in them.
+ *
  * @author Michael J. Simons
  */
 @Service
 class DefaultNeo4jAdapter implements Neo4jAdapter {
 
+	static final String CANCELLED_QUERIES_METRIC = "neo4j.http.queries.cancelled";
+
+	static final String DISCARDED_RECORDS_METRIC = "neo4j.http.records.discarded";
+
 	private final ApplicationProperties applicationProperties;
 
 	private final QueryEvaluator queryEvaluator;
@@ -52,62 +66,353 @@ class DefaultNeo4jAdapter implements Neo4jAdapter {
 
 	private final BookmarkManager bookmarkManager;
 
-	DefaultNeo4jAdapter(ApplicationProperties applicationProperties, QueryEvaluator queryEvaluator, Driver driver, BookmarkManager bookmarkManager) {
+	private final TransactionRegistry transactionRegistry;
+
+	private final ResultBuffers resultBuffers;
+
+	private final FetchSizeAdvisor fetchSizeAdvisor;
+
+	private final Bulkheads bulkheads;
+
+	private final Counter cancelledQueries;
+
+	private final Counter discardedRecords;
+
+	DefaultNeo4jAdapter(
+		ApplicationProperties applicationProperties, QueryEvaluator queryEvaluator, Driver driver, BookmarkManager bookmarkManager,
+		TransactionRegistry transactionRegistry, ResultBuffers resultBuffers, FetchSizeAdvisor fetchSizeAdvisor, Bulkheads bulkheads,
+		MeterRegistry meterRegistry
+	) {
 		this.applicationProperties = applicationProperties;
 		this.queryEvaluator = queryEvaluator;
 		this.driver = driver;
 		this.bookmarkManager = bookmarkManager;
+		this.transactionRegistry = transactionRegistry;
+		this.resultBuffers = resultBuffers;
+		this.fetchSizeAdvisor = fetchSizeAdvisor;
+		this.bulkheads = bulkheads;
+
+		this.cancelledQueries = Counter.builder(CANCELLED_QUERIES_METRIC)
+			.description("Number of query executions that have been cancelled before they completed, usually because the client went away")
+			.register(meterRegistry);
+		this.discardedRecords = Counter.builder(DISCARDED_RECORDS_METRIC)
+			.description("Number of records that have been fetched from the database but not sent because the query has been cancelled")
+			.register(meterRegistry);
 	}
 
 	@Override
-	public Flux<Record> stream(Neo4jPrincipal principal, String database, Query query) {
+	public Flux<Record> stream(Neo4jPrincipal principal, String database, AnnotatedQuery query) {
 
-		return queryEvaluator.getExecutionRequirements(principal, query.text())
-			.flatMapMany(requirements -> this.execute0(principal, database, requirements, q -> Mono.fromDirect(q.run(query)).flatMapMany(ReactiveResult::records)));
+		return bulkheads.limit(principal, database, getExecutionRequirements(principal, database, query)
+			.flatMapMany(requirements -> this.executeStreaming(principal, database, requirements, fetchSize(query),
+				q -> Mono.fromDirect(q.run(query.value())).flatMapMany(result -> observed(query.fingerprint(), result.records())))));
 	}
 
-	@Override
-	public Mono<ResultContainer> run(Neo4jPrincipal principal, String database, AnnotatedQuery query, AnnotatedQuery... additionalQueries) {
+	/**
+	 * Feeds the records of one execution into the {@link FetchSizeAdvisor}.
+	 */
+	private Flux<Record> observed(QueryFingerprint fingerprint, Publisher<Record> records) {
 
-		Flux<AnnotatedQuery> queries = Flux.just(query);
-		if (additionalQueries != null && additionalQueries.length > 0) {
-			queries = queries.concatWith(Flux.fromStream(Arrays.stream(additionalQueries)));
-		}
+		var observation = fetchSizeAdvisor.observe(fingerprint);
+		return Flux.from(records).doOnNext(observation::record).doOnComplete(observation::complete);
+	}
+
+	/**
+	 * {@return the fetch size for one query, either learned or requested by the client}
+	 */
+	private int fetchSize(AnnotatedQuery query) {
+		return fetchSizeAdvisor.fetchSize(query.fingerprint(), query.fetchSize());
+	}
+
+	/**
+	 * {@return the largest fetch size of all queries, as all of them are run in one session}
+	 */
+	private int fetchSize(AnnotatedQuery query, AnnotatedQuery... additionalQueries) {
 
-		record ResultAndSummary(EagerResult result, ResultSummary summary) {
+		var fetchSize = fetchSize(query);
+		if (additionalQueries != null) {
+			for (AnnotatedQuery additionalQuery : additionalQueries) {
+				fetchSize = Math.max(fetchSize, fetchSize(additionalQuery));
+			}
 		}
+		return fetchSize;
+	}
+
+	/**
+	 * The eagerly collected result of a single statement.
+	 */
+	private record ResultAndSummary(EagerResult result, ResultSummary summary) {
+	}
+
+	@Override
+	public Mono<ResultContainer> run(Neo4jPrincipal principal, String database, boolean singleTransaction, AnnotatedQuery query, AnnotatedQuery... additionalQueries) {
+
+		return bulkheads.limit(principal, database, Mono.defer(() -> {
+			var budget = resultBuffers.newBudget();
+			Flux<ResultAndSummary> results;
+			if (singleTransaction) {
+				var queries = toFlux(query, additionalQueries);
+				results = inSingleTransaction(principal, database, queries,
+					requirements -> this.executeOnce(principal, database, requirements, fetchSize(query, additionalQueries), runner -> queries.concatMap(theQuery -> runEagerly(runner, theQuery, budget))),
+					() -> runSeparately(principal, database, queries, budget),
+					e -> new ResultAndSummary(EagerResult.error(e), null)
+				);
+			} else {
+				results = runSeparately(principal, database, toFlux(query, additionalQueries), budget);
+			}
 
-		return queries.flatMapSequential(theQuery -> Mono.just(theQuery).zipWith(queryEvaluator.getExecutionRequirements(principal, theQuery.text()))
-				.flatMap(q -> Mono.fromDirect(this.execute0(principal, database, q.getT2(), runner -> {
-					var annotatedQuery = q.getT1();
-					var rxResult = runner.run(annotatedQuery.value());
-					return Mono.fromDirect(rxResult)
-						.flatMap(reactiveResult -> Mono.just(reactiveResult.keys())
-							.zipWith(Flux.from(reactiveResult.records()).collectList())
-							.flatMap(v -> Mono.just(v).zipWith(Mono.fromDirect(reactiveResult.consume()), (t, s) -> Tuples.of(t.getT1(), t.getT2(), s))))
-						.map(content -> new ResultAndSummary(EagerResult.success(content, annotatedQuery.includeStats(), annotatedQuery.resultDataContents()), content.getT3()));
-				}))).onErrorResume(Neo4jException.class, e -> e.code().equals("Neo.ClientError.Security.Unauthorized") ? Mono.error(new BadCredentialsException("Authentication failed.")) : Mono.just(new ResultAndSummary(EagerResult.error(e), null)))
-			)
-			.collect(ResultContainer::new, (container, element) -> {
+			return results.collect(() -> new ResultContainer(budget), (ResultContainer container, ResultAndSummary element) -> {
 				if (element.result().isError()) {
 					container.errors.add(element.result().exception());
 				} else {
 					container.results.add(element.result());
 					container.notifications.addAll(element.summary().notifications());
 				}
+			})
+				.doOnError(e -> budget.close())
+				.doOnCancel(() -> discardedRecords.increment(budget.discard()));
+		}));
+	}
+
+	private Flux<ResultAndSummary> runSeparately(Neo4jPrincipal principal, String database, Flux<AnnotatedQuery> queries, ResultBuffers.Budget budget) {
+
+		return queries.flatMapSequential(theQuery -> getExecutionRequirements(principal, database, theQuery)
+			.flatMap(requirements -> Mono.fromDirect(this.execute0(principal, database, requirements, fetchSize(theQuery), runner -> runEagerly(runner, theQuery, budget))))
+			.onErrorResume(Neo4jException.class, e -> recover(e, ex -> new ResultAndSummary(EagerResult.error(ex), null)))
+		);
+	}
+
+	/**
+	 * Collects the records of one statement into a buffer of the given budget. The buffer is closed if the statement
+	 * fails, so that a retried transaction starts with a new one.
+	 */
+	private Mono<ResultAndSummary> runEagerly(ReactiveQueryRunner runner, AnnotatedQuery annotatedQuery, ResultBuffers.Budget budget) {
+
+		var includeRest = annotatedQuery.resultDataContents().contains(AnnotatedQuery.ResultFormat.REST);
+		return Mono.fromDirect(runner.run(annotatedQuery.value()))
+			.flatMap(reactiveResult -> {
+				var keys = reactiveResult.keys();
+				var buffer = budget.newBuffer(keys);
+				// Collecting instead of ignoring the records, which would discard them. Records are buffered off the
+				// event loop of the driver, as buffering them may write to a spill file.
+				return observed(annotatedQuery.fingerprint(), reactiveResult.records())
+					.publishOn(Schedulers.boundedElastic())
+					.collect(() -> buffer, (RecordBuffer theBuffer, Record record) -> {
+						if (includeRest) {
+							EagerResult.assertRestSupported(record);
+						}
+						theBuffer.add(record);
+					})
+					.then(Mono.fromDirect(reactiveResult.consume()))
+					.map(summary -> new ResultAndSummary(EagerResult.success(keys, buffer, summary, annotatedQuery.includeStats(), annotatedQuery.resultDataContents()), summary))
+					.doOnError(e -> buffer.close())
+					.doOnCancel(buffer::close);
 			});
 	}
 
-	<T> Publisher<T> execute0(Neo4jPrincipal principal, String database, QueryEvaluator.ExecutionRequirements requirements, Function<ReactiveQueryRunner, Publisher<T>> query) {
-		var sessionSupplier = queryEvaluator.isEnterpriseEdition().
-			flatMap(v -> {
+	@Override
+	public Flux<ResultEvent> streamResults(Neo4jPrincipal principal, String database, boolean singleTransaction, AnnotatedQuery query, AnnotatedQuery... additionalQueries) {
+
+		// Statements are executed strictly one after another: Eagerly subscribing to the next statement would require
+		// buffering its records until all records of the previous one have been consumed.
+		var queries = toFlux(query, additionalQueries);
+		if (singleTransaction) {
+			return bulkheads.limit(principal, database, inSingleTransaction(principal, database, queries,
+				requirements -> this.executeOnce(principal, database, requirements, fetchSize(query, additionalQueries), runner -> queries.concatMap(theQuery -> toResultEvents(runner, theQuery))),
+				() -> streamSeparately(principal, database, queries),
+				ResultEvent.Failure::new
+			));
+		}
+		return bulkheads.limit(principal, database, streamSeparately(principal, database, queries));
+	}
+
+	private Flux<ResultEvent> streamSeparately(Neo4jPrincipal principal, String database, Flux<AnnotatedQuery> queries) {
+
+		return queries.concatMap(theQuery -> getExecutionRequirements(principal, database, theQuery)
+			.flatMapMany(requirements -> this.executeStreaming(principal, database, requirements, fetchSize(theQuery), runner -> toResultEvents(runner, theQuery)))
+			.onErrorResume(Neo4jException.class, e -> recover(e, ResultEvent.Failure::new))
+		);
+	}
+
+	/**
+	 * Executes a query whose elements are passed on as they arrive. Managed transactions are run via
+	 * {@link #executeOnce}, as a retried transaction function would emit elements that have already been sent again.
+	 */
+	private <T> Flux<T> executeStreaming(Neo4jPrincipal principal, String database, QueryEvaluator.ExecutionRequirements requirements, int fetchSize, Function<ReactiveQueryRunner, Publisher<T>> query) {
+
+		if (requirements.transactionMode() == QueryEvaluator.TransactionMode.MANAGED) {
+			return executeOnce(principal, database, requirements, fetchSize, query);
+		}
+		return Flux.from(execute0(principal, database, requirements, fetchSize, query));
+	}
+
+	/**
+	 * Evaluates all queries and runs them together with the strongest requirements among them. Queries that require
+	 * implicit transactions cannot be run in one transaction together with others, in that case all queries are run
+	 * separately. A failing evaluation fails the whole request, no query will be run in that case. A failing query rolls
+	 * back the transaction, results that have already been produced by the queries before are kept.
+	 *
+	 * @param principal    The authenticated principal
+	 * @param database     The database in which to execute the queries
+	 * @param queries      The queries to run
+	 * @param together     Runs all queries in one transaction with the given requirements
+	 * @param separately   Runs each query on its own
+	 * @param errorElement Creates the element representing an error
+	 * @param <T>          The type of the elements
+	 * @return The results of all queries
+	 */
+	private <T> Flux<T> inSingleTransaction(
+		Neo4jPrincipal principal, String database, Flux<AnnotatedQuery> queries,
+		Function<QueryEvaluator.ExecutionRequirements, Flux<T>> together, Supplier<Flux<T>> separately, Function<Neo4jException, T> errorElement
+	) {
+		return queries.flatMap(theQuery -> getExecutionRequirements(principal, database, theQuery))
+			.reduce(DefaultNeo4jAdapter::strongest)
+			.flatMapMany(requirements -> requirements.transactionMode() == QueryEvaluator.TransactionMode.IMPLICIT ? separately.get() : together.apply(requirements))
+			.onErrorResume(Neo4jException.class, e -> recover(e, errorElement));
+	}
+
+	/**
+	 * {@return requirements satisfying both given requirements}
+	 */
+	static QueryEvaluator.ExecutionRequirements strongest(QueryEvaluator.ExecutionRequirements r1, QueryEvaluator.ExecutionRequirements r2) {
+
+		QueryEvaluator.Target target;
+		if (r1.target() == QueryEvaluator.Target.WRITERS || r2.target() == QueryEvaluator.Target.WRITERS) {
+			target = QueryEvaluator.Target.WRITERS;
+		} else if (r1.target() == QueryEvaluator.Target.AUTO || r2.target() == QueryEvaluator.Target.AUTO) {
+			target = QueryEvaluator.Target.AUTO;
+		} else {
+			target = QueryEvaluator.Target.READERS;
+		}
+		var transactionMode = r1.transactionMode() == QueryEvaluator.TransactionMode.IMPLICIT || r2.transactionMode() == QueryEvaluator.TransactionMode.IMPLICIT
+			? QueryEvaluator.TransactionMode.IMPLICIT : QueryEvaluator.TransactionMode.MANAGED;
+		return new QueryEvaluator.ExecutionRequirements(target, transactionMode);
+	}
+
+	@Override
+	public Mono<Long> beginTransaction(Neo4jPrincipal principal, String database, AccessMode accessMode) {
+
+		return transactionRegistry.begin(principal, database, newSession(principal, database, accessMode, applicationProperties.fetchSize()))
+			.map(TransactionRegistry.OpenTransaction::id)
+			.onErrorMap(DefaultNeo4jAdapter::isUnauthorized, e -> new BadCredentialsException("Authentication failed."));
+	}
+
+	@Override
+	public Flux<ResultEvent> extendTransaction(Neo4jPrincipal principal, String database, long id, AnnotatedQuery... queries) {
+		return bulkheads.limit(principal, database, runInTransaction(principal, database, id, false, queries));
+	}
+
+	@Override
+	public Flux<ResultEvent> commitTransaction(Neo4jPrincipal principal, String database, long id, AnnotatedQuery... queries) {
+		return bulkheads.limit(principal, database, runInTransaction(principal, database, id, true, queries));
+	}
+
+	@Override
+	public Mono<Void> rollbackTransaction(Neo4jPrincipal principal, String database, long id) {
+		return transactionRegistry.acquire(principal, database, id).flatMap(transactionRegistry::rollback);
+	}
+
+	/**
+	 * Runs the queries one after another in an explicit transaction. The first failing query rolls back the
+	 * transaction, as the Neo4j server does in its own HTTP API.
+	 */
+	private Flux<ResultEvent> runInTransaction(Neo4jPrincipal principal, String database, long id, boolean commit, AnnotatedQuery... queries) {
+
+		return transactionRegistry.acquire(principal, database, id).flatMapMany(transaction -> {
+			var failed = new AtomicBoolean();
+			var results = Flux.fromArray(queries)
+				.concatMap(theQuery -> toResultEvents(transaction.transaction(), theQuery)
+					.onErrorResume(Neo4jException.class, e -> recover(e, ResultEvent.Failure::new)))
+				.doOnNext(event -> {
+					if (event instanceof ResultEvent.Failure) {
+						failed.set(true);
+					}
+				})
+				.takeUntil(ResultEvent.Failure.class::isInstance);
+			var end = Flux.defer(() -> {
+				if (failed.get()) {
+					return transactionRegistry.rollback(transaction).thenMany(Flux.<ResultEvent>empty());
+				} else if (commit) {
+					return transactionRegistry.commit(transaction).thenMany(Flux.<ResultEvent>empty())
+						.onErrorResume(Neo4jException.class, e -> recover(e, ResultEvent.Failure::new));
+				}
+				return Mono.fromSupplier(() -> new ResultEvent.Transaction(id, database, transactionRegistry.release(transaction)));
+			});
+			return results.concatWith(end)
+				.doOnError(e -> transactionRegistry.discard(transaction))
+				.doOnCancel(() -> transactionRegistry.release(transaction))
+				.limitRate(applicationProperties.fetchSize(), applicationProperties.fetchSize() / 2);
+		});
+	}
+
+	private Flux<ResultEvent> toResultEvents(ReactiveQueryRunner runner, AnnotatedQuery query) {
+
+		return Mono.fromDirect(runner.run(query.value()))
+			.flatMapMany(reactiveResult -> Flux.concat(
+				Mono.just(new ResultEvent.Header(reactiveResult.keys())),
+				observed(query.fingerprint(), reactiveResult.records()).map(EagerResult.shaper(query.resultDataContents())).map(ResultEvent.Data::new),
+				Mono.fromDirect(reactiveResult.consume()).map(summary -> new ResultEvent.Summary(query.includeStats() ? summary.counters() : null, summary.notifications()))
+			));
+	}
+
+	/**
+	 * Uses the requirements of a persisted query if it has been evaluated for the same database and evaluates the query
+	 * otherwise.
+	 */
+	private Mono<QueryEvaluator.ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String database, AnnotatedQuery query) {
+
+		var persistedQuery = query.persistedQuery();
+		if (persistedQuery != null && persistedQuery.database().equals(database)) {
+			return Mono.just(persistedQuery.requirements());
+		}
+		return queryEvaluator.getExecutionRequirements(principal, database, query.text(), query.fingerprint());
+	}
+
+	private static Flux<AnnotatedQuery> toFlux(AnnotatedQuery query, AnnotatedQuery... additionalQueries) {
+
+		Flux<AnnotatedQuery> queries = Flux.just(query);
+		if (additionalQueries != null && additionalQueries.length > 0) {
+			queries = queries.concatWith(Flux.fromArray(additionalQueries));
+		}
+		return queries;
+	}
+
+	/**
+	 * Turns a Neo4j exception into a regular element of a result, unless it is an authentication failure.
+	 *
+	 * @param e      The exception to recover from
+	 * @param mapper Creates the element representing the error
+	 * @param <T>    The type of the element
+	 * @return A publisher emitting the element representing the error or an error signal for failed authentication
+	 */
+	private static <T> Mono<T> recover(Neo4jException e, Function<Neo4jException, T> mapper) {
+		return isUnauthorized(e) ? Mono.error(new BadCredentialsException("Authentication failed.")) : Mono.just(mapper.apply(e));
+	}
+
+	private static boolean isUnauthorized(Throwable e) {
+		return e instanceof Neo4jException neo4jException && "Neo.ClientError.Security.Unauthorized".equals(neo4jException.code());
+	}
+
+	private Mono<ReactiveSession> newSession(Neo4jPrincipal principal, String database, AccessMode accessMode, int fetchSize) {
+
+		return queryEvaluator.isEnterpriseEdition().
+			flatMap(enterpriseEdition -> {
 				var sessionConfig = SessionConfig.builder()
 					.withBookmarkManager(bookmarkManager)
 					.withDatabase(database)
-					.withDefaultAccessMode(requirements.target() == QueryEvaluator.Target.WRITERS ? AccessMode.WRITE : AccessMode.READ)
-					.build();
-				return Mono.fromCallable(() -> driver.session(ReactiveSession.class, sessionConfig, principal.authToken()));
+					.withDefaultAccessMode(accessMode)
+					.withFetchSize(fetchSize);
+				// Sessions with the driver's own credentials reuse pooled connections without authenticating them again
+				if (enterpriseEdition && principal.impersonable() && applicationProperties.authentication().impersonate()) {
+					sessionConfig.withImpersonatedUser(principal.username());
+					return Mono.fromCallable(() -> driver.session(ReactiveSession.class, sessionConfig.build()));
+				}
+				return Mono.fromCallable(() -> driver.session(ReactiveSession.class, sessionConfig.build(), principal.authToken()));
 			});
+	}
+
+	<T> Publisher<T> execute0(Neo4jPrincipal principal, String database, QueryEvaluator.ExecutionRequirements requirements, int fetchSize, Function<ReactiveQueryRunner, Publisher<T>> query) {
+		var sessionSupplier = newSession(principal, database, requirements.target() == QueryEvaluator.Target.WRITERS ? AccessMode.WRITE : AccessMode.READ, fetchSize);
 
 		Flux<T> flow;
 		if (requirements.transactionMode() == QueryEvaluator.TransactionMode.IMPLICIT) {
@@ -126,6 +431,40 @@ class DefaultNeo4jAdapter implements Neo4jAdapter {
 				);
 			};
 		}
-		return flow.limitRate(applicationProperties.fetchSize(), applicationProperties.fetchSize() / 2);
+		return limited(flow, fetchSize);
+	}
+
+	/**
+	 * Runs the given function in one unmanaged transaction, which is committed when the function completes and rolled
+	 * back otherwise. Other than the transaction functions used by {@link #execute0}, the transaction is never retried,
+	 * so that no element that has already been emitted is emitted again.
+	 */
+	<T> Flux<T> executeOnce(Neo4jPrincipal principal, String database, QueryEvaluator.ExecutionRequirements requirements, int fetchSize, Function<ReactiveQueryRunner, Publisher<T>> query) {
+
+		// Same routing as with the transaction functions, automatic targets go to the writers
+		var flow = Flux.usingWhen(
+			newSession(principal, database, requirements.target() == QueryEvaluator.Target.READERS ? AccessMode.READ : AccessMode.WRITE, fetchSize),
+			session -> Flux.usingWhen(session.beginTransaction(), query, ReactiveTransaction::commit, (transaction, e) -> transaction.rollback(), ReactiveTransaction::rollback),
+			ReactiveSession::close
+		);
+		return limited(flow, fetchSize);
+	}
+
+	private <T> Flux<T> limited(Flux<T> flow, int fetchSize) {
+
+		return flow.limitRate(fetchSize, Math.max(1, fetchSize / 2))
+			.doOnCancel(cancelledQueries::increment)
+			.doOnDiscard(Object.class, this::discarded);
+	}
+
+	/**
+	 * Counts records that are dropped by the operators of an execution, for example the prefetched records in the queue
+	 * of {@link Flux#limitRate(int, int)} on cancellation.
+	 */
+	private void discarded(Object element) {
+
+		if (element instanceof Record || element instanceof ResultEvent.Data) {
+			discardedRecords.increment();
+		}
 	}
 }
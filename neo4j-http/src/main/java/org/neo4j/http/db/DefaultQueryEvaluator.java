@@ -29,39 +29,58 @@ import org.neo4j.driver.summary.Plan;
 import org.neo4j.driver.summary.ResultSummary;
 import org.springframework.cache.annotation.Cacheable;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import reactor.core.publisher.Mono;
 
 class DefaultQueryEvaluator extends AbstractQueryEvaluator {
 
+	/**
+	 * Flag whether the {@code EXPLAIN} is run as the principal or as the user the driver has been configured with.
+	 */
+	private final boolean shared;
+
 	DefaultQueryEvaluator(Driver driver) {
-		super(driver);
+		this(driver, Metrics.globalRegistry, false);
+	}
+
+	DefaultQueryEvaluator(Driver driver, MeterRegistry meterRegistry, boolean shared) {
+		super(driver, meterRegistry);
+		this.shared = shared;
 	}
 
-	@Cacheable("executionRequirements")
+	@Cacheable(cacheNames = EXECUTION_REQUIREMENTS_CACHE, keyGenerator = EXECUTION_REQUIREMENTS_KEY_GENERATOR, sync = true)
 	@Override
-	public Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String query) {
+	public Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String database, String query, QueryFingerprint fingerprint) {
 
-		return getQueryTarget(principal, query)
-			.zipWith(getTransactionMode(query), ExecutionRequirements::new).cache();
+		// The synchronized cache makes sure only one publisher is created per key, caching that publisher makes sure
+		// all subscribers to it share the one and only EXPLAIN being run
+		return timed(getQueryTarget(principal, database, query)
+			.zipWith(getTransactionMode(query), ExecutionRequirements::new)).cache();
 	}
 
 	/**
 	 * Computes or retrieves the target against a query should be executed.
 	 * <p>
+	 * When evaluation is shared across principals, the query is explained with the credentials of the driver itself:
+	 * The operators in a plan don't depend on who is asking, and the principals credentials will be checked anyway when
+	 * the query is actually run.
 	 *
 	 * @param principal The authenticated principal for whom the query is evaluated
+	 * @param database  The database in which the query is going to be executed
 	 * @param query     The string value of a query to be executed, must not be {@literal null} or blank
 	 * @return A target for the query
 	 * @throws IllegalArgumentException if the query can not be dealt with
 	 */
-	private Mono<Target> getQueryTarget(Neo4jPrincipal principal, String query) {
+	private Mono<Target> getQueryTarget(Neo4jPrincipal principal, String database, String query) {
 
 		var sessionSupplier = isEnterpriseEdition()
 			.flatMap(v -> {
 				var sessionConfig = SessionConfig.builder()
+					.withDatabase(database)
 					.withDefaultAccessMode(AccessMode.READ)
 					.build();
-				return Mono.fromCallable(() -> driver.session(ReactiveSession.class, sessionConfig, principal.authToken()));
+				return Mono.fromCallable(() -> shared ? driver.session(ReactiveSession.class, sessionConfig) : driver.session(ReactiveSession.class, sessionConfig, principal.authToken()));
 			});
 
 		// Invalid queries will end up here for the first time.
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.Serial;
+
+/**
+ * Thrown by the {@link PersistedQueryRegistry} when a different statement has already been registered under a given id.
+ *
+ * @author Michael J. Simons
+ */
+public final class DuplicatePersistedQueryException extends RuntimeException {
+
+	@Serial
+	private static final long serialVersionUID = 4632918436125517207L;
+
+	/**
+	 * The id that is already taken.
+	 */
+	private final String id;
+
+	DuplicatePersistedQueryException(String id) {
+		super("Another query has already been registered under the id " + id);
+		this.id = id;
+	}
+
+	/**
+	 * {@return the id that is already taken}
+	 */
+	public String getId() {
+		return id;
+	}
+}
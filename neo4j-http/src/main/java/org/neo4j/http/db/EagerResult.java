@@ -16,13 +16,11 @@
 package org.neo4j.http.db;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.StreamSupport;
 
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Value;
@@ -34,141 +32,223 @@ import org.neo4j.driver.types.Relationship;
 import org.neo4j.driver.types.TypeSystem;
 import org.neo4j.http.db.AnnotatedQuery.ResultFormat;
 
-import reactor.util.function.Tuple3;
-
 /**
- * A view on a list of records, the columns contained and potentially errors or messages. Instances of this record are
- * potentially mutable as we want to avoid creating copies of potentially large lists during construction. Please refrain
- * from changing the contents.
+ * A view on buffered records, the columns contained and potentially errors or messages. The records are brought into
+ * the requested shape while the data is iterated, so that records which have been spilled to disk are never held in
+ * memory together.
  *
  * @author Michael J. Simons
  * @param columns   The columns of the result set (only non-null if shape contained ROW)
- * @param data      The actual data
+ * @param data      The actual data, can be iterated several times
  * @param stats     Optional counters
  * @param exception An optional exception. If it is {@literal null}, both {@link #columns} and {@link #data} will not be empty
  * @soundtrack Nightwish - Decades: Live In Buenos Aires
  */
-public record EagerResult(List<String> columns, List<ResultData> data, SummaryCounters stats, Neo4jException exception) {
+public record EagerResult(List<String> columns, Iterable<ResultData> data, SummaryCounters stats, Neo4jException exception) {
 
 	/**
-	 * A wrapping structure for the odd shape of things in the old api
+	 * A wrapping structure for the odd shape of things in the old api. Neither the graph nor the rest shape is
+	 * materialized: Both are rendered from the record and the entities it references when the data is serialized.
 	 *
-	 * @param records Plain list of records
-	 * @param graph   Optional graph shaped values
-	 * @param rest    Optional rest-ish shaped values (no hyperlinks)
+	 * @param records The record
+	 * @param shape   The requested formats, defaults to {@link ResultFormat#ROW}
+	 * @param graph   The entities to render in the graph format, only present if requested
 	 */
-	public record ResultData(Record records, Map<String, Collection<Map<String, Object>>> graph, List<Object> rest) {
+	public record ResultData(Record records, Set<ResultFormat> shape, Graph graph) {
+
+		/**
+		 * Defaults the shape.
+		 *
+		 * @param records The record
+		 * @param shape   The requested formats, defaults to {@link ResultFormat#ROW}
+		 * @param graph   The entities to render in the graph format, only present if requested
+		 */
+		public ResultData {
+			shape = shape == null ? Set.of(ResultFormat.ROW) : shape;
+		}
+
+		/**
+		 * {@return true if the record itself should be rendered}
+		 */
+		public boolean includeRow() {
+			return shape.contains(ResultFormat.ROW);
+		}
+
+		/**
+		 * {@return true if the record should be rendered in the rest format}
+		 */
+		public boolean includeRest() {
+			return shape.contains(ResultFormat.REST);
+		}
 	}
 
-	static EagerResult success(Tuple3<List<String>, List<Record>, ResultSummary> content, boolean includeStats, Set<ResultFormat> shape) {
+	/**
+	 * The entities of one row that are rendered in the graph format. These are references to the entities of the record,
+	 * not copies.
+	 *
+	 * @param nodes           Distinct nodes in order of appearance
+	 * @param relationships   Distinct relationships in order of appearance
+	 * @param nodeIds         The ids of all nodes of the row, in no particular order, if the graph has been requested
+	 *                        de-duplicated, otherwise {@literal null}. {@link #nodes} contains only the new ones then.
+	 * @param relationshipIds The ids of all relationships of the row, see {@link #nodeIds}
+	 */
+	public record Graph(List<Node> nodes, List<Relationship> relationships, long[] nodeIds, long[] relationshipIds) {
 
-		List<ResultData> resultData = new ArrayList<>();
-		for (Record record : content.getT2()) {
-			resultData.add(new ResultData(
-				shape.contains(ResultFormat.ROW) ? record : null,
-				shape.contains(ResultFormat.GRAPH) ? buildGraphModel(record) : null,
-				shape.contains(ResultFormat.REST) ? buildRestModel(record) : null
-			));
+		/**
+		 * {@return true if the graph has been de-duplicated across all rows}
+		 */
+		public boolean deduplicated() {
+			return nodeIds != null;
 		}
+	}
+
+	static EagerResult success(List<String> columns, Iterable<Record> records, ResultSummary summary, boolean includeStats, Set<ResultFormat> shape) {
 
-		List<String> columns = content.getT1();
-		return new EagerResult(columns, resultData, includeStats ? content.getT3().counters() : null, null);
+		Iterable<ResultData> resultData = () -> {
+			var shaper = shaper(shape);
+			var iterator = records.iterator();
+			return new Iterator<>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public ResultData next() {
+					return shaper.apply(iterator.next());
+				}
+			};
+		};
+		return new EagerResult(columns, resultData, includeStats ? summary.counters() : null, null);
 	}
 
-	private static Map<String, Collection<Map<String, Object>>> buildGraphModel(Record row) {
+	/**
+	 * Creates a function that brings the records of one result into the requested shape. Used for both the eager and
+	 * the streaming variant. The function is stateful if the graph has been requested as
+	 * {@link ResultFormat#DEDUPLICATED_GRAPH}, so a new one is required for each result.
+	 *
+	 * @param shape The requested result formats
+	 * @return A function shaping the records of one result
+	 */
+	static Function<Record, ResultData> shaper(Set<ResultFormat> shape) {
 
-		var typeSystem = TypeSystem.getDefault();
+		Function<Record, Graph> graph;
+		if (shape.contains(ResultFormat.DEDUPLICATED_GRAPH)) {
+			graph = new DeduplicatedGraph()::next;
+		} else if (shape.contains(ResultFormat.GRAPH)) {
+			graph = EagerResult::collectGraph;
+		} else {
+			graph = record -> null;
+		}
+		var includeRest = shape.contains(ResultFormat.REST);
+		return record -> {
+			if (includeRest) {
+				assertRestSupported(record);
+			}
+			return new ResultData(record, shape, graph.apply(record));
+		};
+	}
+
+	@SuppressWarnings("deprecation")
+	private static Graph collectGraph(Record row) {
 
-		var graph = new HashMap<String, Collection<Map<String, Object>>>();
-		var nodes = new HashMap<Long, Map<String, Object>>();
-		var relationships = new HashMap<Long, Map<String, Object>>();
+		var nodes = new ArrayList<Node>();
+		var relationships = new ArrayList<Relationship>();
+		var nodeIds = new LongHashSet(8);
+		var relationshipIds = new LongHashSet(8);
 
 		for (var column : row.values()) {
-			handleValue(typeSystem, nodes, relationships, column);
+			collectEntities(
+				column,
+				node -> {
+					if (nodeIds.add(node.id())) {
+						nodes.add(node);
+					}
+				},
+				relationship -> {
+					if (relationshipIds.add(relationship.id())) {
+						relationships.add(relationship);
+					}
+				}
+			);
 		}
+		return new Graph(nodes, relationships, null, null);
+	}
+
+	/**
+	 * Keeps track of the entities that have already been sent for one result, so that each node and relationship is
+	 * rendered only in the first row it appears in. Each row references all of its entities by id, in no particular
+	 * order. Only the ids are kept, in primitive sets.
+	 */
+	private static final class DeduplicatedGraph {
+
+		private final LongHashSet sentNodes = new LongHashSet();
+		private final LongHashSet sentRelationships = new LongHashSet();
 
-		graph.put("nodes", nodes.values());
-		graph.put("relationships", relationships.values());
-		return graph;
+		@SuppressWarnings("deprecation")
+		Graph next(Record row) {
+
+			var nodes = new ArrayList<Node>();
+			var relationships = new ArrayList<Relationship>();
+			var nodeIds = new LongHashSet(8);
+			var relationshipIds = new LongHashSet(8);
+
+			for (var column : row.values()) {
+				collectEntities(
+					column,
+					node -> {
+						if (nodeIds.add(node.id()) && sentNodes.add(node.id())) {
+							nodes.add(node);
+						}
+					},
+					relationship -> {
+						if (relationshipIds.add(relationship.id()) && sentRelationships.add(relationship.id())) {
+							relationships.add(relationship);
+						}
+					}
+				);
+			}
+			return new Graph(nodes, relationships, nodeIds.toArray(), relationshipIds.toArray());
+		}
 	}
 
-	private static void handleValue(TypeSystem typeSystem, HashMap<Long, Map<String, Object>> nodes, HashMap<Long, Map<String, Object>> relationships, Value column) {
+	private static void collectEntities(Value column, Consumer<Node> nodes, Consumer<Relationship> relationships) {
+
+		var typeSystem = TypeSystem.getDefault();
 		if (column.hasType(typeSystem.NODE())) {
-			handleNode(nodes, column.asNode());
+			nodes.accept(column.asNode());
 		} else if (column.hasType(typeSystem.RELATIONSHIP())) {
-			handleRelationship(relationships, column.asRelationship());
+			relationships.accept(column.asRelationship());
 		} else if (column.hasType(typeSystem.PATH())) {
 			var path = column.asPath();
 			for (var segment : path) {
-				handleNode(nodes, segment.start());
-				handleRelationship(relationships, segment.relationship());
+				nodes.accept(segment.start());
+				relationships.accept(segment.relationship());
 			}
-			handleNode(nodes, path.end());
+			nodes.accept(path.end());
 		} else if (column.hasType(typeSystem.LIST())) {
-			for (Value elem : column.values()) {
-				handleValue(typeSystem, nodes, relationships, elem);
+			for (int i = 0; i < column.size(); ++i) {
+				collectEntities(column.get(i), nodes, relationships);
 			}
 		} else if (column.hasType(typeSystem.MAP())) {
-			for (Value elem : column.asMap(Function.identity()).values()) {
-				handleValue(typeSystem, nodes, relationships, elem);
+			for (Value elem : column.values()) {
+				collectEntities(elem, nodes, relationships);
 			}
 		}
 	}
 
-	@SuppressWarnings("deprecation")
-	private static void handleNode(HashMap<Long, Map<String, Object>> nodes, Node node) {
-		var id = node.id();
-		if (nodes.containsKey(id)) {
-			return;
-		}
-		nodes.put(id, Map.of(
-			"id", id,
-			"labels", StreamSupport.stream(node.labels().spliterator(), false).toArray(String[]::new),
-			"properties", node.asMap(Function.identity())
-		));
-	}
-
-	@SuppressWarnings("deprecation")
-	private static void handleRelationship(HashMap<Long, Map<String, Object>> relationships, Relationship rel) {
-		var id = rel.id();
-		if (relationships.containsKey(id)) {
-			return;
-		}
-		relationships.put(id, Map.of(
-			"id", id,
-			"type", rel.type(),
-			"properties", rel.asMap(Function.identity()),
-			"startNode", rel.startNodeId(),
-			"endNode", rel.endNodeId()
-		));
-	}
-
-	@SuppressWarnings("deprecation")
-	private static List<Object> buildRestModel(Record row) {
+	/**
+	 * The rest format is rendered when the record is serialized, but unsupported columns must be rejected right away.
+	 * Buffered records are checked while being collected.
+	 */
+	static void assertRestSupported(Record row) {
 
 		var typeSystem = TypeSystem.getDefault();
-
-		var rest = new ArrayList<>();
-		for (var column : row.values()) {
-			if (column.hasType(typeSystem.NODE())) {
-				var node = column.asNode();
-				Map<String, Object> metaData = new HashMap<>();
-				metaData.put("id", node.id());
-				metaData.put("labels", StreamSupport.stream(node.labels().spliterator(), false).toArray(String[]::new));
-				rest.add(Map.of("metadata", metaData, "data", node.asMap(Function.identity())));
-			} else if (column.hasType(typeSystem.RELATIONSHIP())) {
-				var rel = column.asRelationship();
-				Map<String, Object> metaData = new HashMap<>();
-				metaData.put("id", rel.id());
-				metaData.put("type", rel.type());
-				rest.add(Map.of("metadata", metaData, "data", rel.asMap(Function.identity())));
-			} else if (column.hasType(typeSystem.PATH())) {
+		for (int i = 0; i < row.size(); ++i) {
+			if (row.get(i).hasType(typeSystem.PATH())) {
 				throw new UnsupportedOperationException("Paths are not supported with REST shape");
-			} else {
-				rest.add(column);
 			}
 		}
-		return rest;
 	}
 
 	static EagerResult error(Neo4jException exception) {
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import org.neo4j.driver.Record;
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Learns a fetch size per {@link QueryFingerprint fingerprint} from the number of records and their size observed in
+ * previous executions, using exponentially weighted moving averages. Queries returning a few records get a fetch size
+ * that fits all of them into the first batch, so that they complete in one round trip. Queries returning many records
+ * get large batches, bounded by the estimated size of a batch.
+ * <p>
+ * A fetch size requested by the client replaces the learned number of records, but is bounded like a learned fetch size:
+ * By the configured minimum and maximum and, as soon as the size of the records is known, by the size of a batch.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class FetchSizeAdvisor {
+
+	/**
+	 * Weight of the latest observation.
+	 */
+	private static final double ALPHA = 0.25;
+
+	/**
+	 * Only every n-th record is measured, measuring is not free.
+	 */
+	private static final int SAMPLE_RATE = 64;
+
+	/**
+	 * The observed averages for one fingerprint.
+	 *
+	 * @param records     Number of records per execution
+	 * @param recordBytes Estimated size of one record
+	 */
+	record Estimate(double records, double recordBytes) {
+
+		Estimate next(Estimate observed) {
+
+			double nextRecordBytes;
+			if (recordBytes == 0 || observed.recordBytes == 0) {
+				nextRecordBytes = Math.max(recordBytes, observed.recordBytes);
+			} else {
+				nextRecordBytes = recordBytes + ALPHA * (observed.recordBytes - recordBytes);
+			}
+			return new Estimate(records + ALPHA * (observed.records - records), nextRecordBytes);
+		}
+	}
+
+	private final int defaultFetchSize;
+
+	private final ApplicationProperties.AdaptiveFetchSizeSettings settings;
+
+	private final Cache<QueryFingerprint, Estimate> estimates;
+
+	@Autowired
+	FetchSizeAdvisor(ApplicationProperties applicationProperties) {
+		this(applicationProperties.fetchSize(), applicationProperties.adaptiveFetchSize());
+	}
+
+	FetchSizeAdvisor(int defaultFetchSize, ApplicationProperties.AdaptiveFetchSizeSettings settings) {
+		this.defaultFetchSize = defaultFetchSize;
+		this.settings = settings;
+		this.estimates = Caffeine.newBuilder().maximumSize(settings.maximumSize()).build();
+	}
+
+	/**
+	 * Computes the fetch size for the next execution of a query.
+	 *
+	 * @param fingerprint The fingerprint of the query
+	 * @param requested   The fetch size requested by the client, might be {@literal null}
+	 * @return The fetch size to use
+	 */
+	int fetchSize(QueryFingerprint fingerprint, Integer requested) {
+
+		var estimate = settings.enabled() ? estimates.getIfPresent(fingerprint) : null;
+		long records;
+		if (requested != null) {
+			records = requested;
+		} else if (estimate == null) {
+			return defaultFetchSize;
+		} else {
+			// Leave some room, so that a slightly larger result still completes in one round trip
+			records = (long) Math.ceil(estimate.records() * 1.25) + 1;
+		}
+		if (estimate != null) {
+			var recordsFittingIntoBatch = settings.maxBatchSize().toBytes() / Math.max(1, (long) estimate.recordBytes());
+			records = Math.min(records, recordsFittingIntoBatch);
+		}
+		return (int) Math.max(settings.minimum(), Math.min(records, settings.maximum()));
+	}
+
+	/**
+	 * Starts observing one execution of a query. The estimate is only updated when the execution completes.
+	 *
+	 * @param fingerprint The fingerprint of the query
+	 * @return A new observation
+	 */
+	Observation observe(QueryFingerprint fingerprint) {
+		return new Observation(fingerprint);
+	}
+
+	/**
+	 * {@return the current estimate for the given fingerprint, might be {@literal null}}
+	 */
+	Estimate estimate(QueryFingerprint fingerprint) {
+		return estimates.getIfPresent(fingerprint);
+	}
+
+	/**
+	 * Counts and measures the records of one execution. Not thread safe, as the records of one execution arrive in order.
+	 */
+	final class Observation {
+
+		private final QueryFingerprint fingerprint;
+
+		private long records;
+
+		private long sampledBytes;
+
+		private long samples;
+
+		private Observation(QueryFingerprint fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		void record(Record record) {
+
+			if (records++ % SAMPLE_RATE == 0) {
+				sampledBytes += RecordCodec.estimateSize(record);
+				++samples;
+			}
+		}
+
+		void complete() {
+
+			if (!settings.enabled()) {
+				return;
+			}
+			var observed = new Estimate(records, samples == 0 ? 0 : (double) sampledBytes / samples);
+			estimates.asMap().merge(fingerprint, observed, Estimate::next);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps all persisted queries in memory and optionally appends them as JSON lines to a local file, from which they are
+ * restored during startup. Only the statement and its execution requirements are written, the fingerprint is recomputed
+ * while loading.
+ *
+ * @author Michael J. Simons
+ */
+@Service
+final class FilePersistedQueryRegistry implements PersistedQueryRegistry {
+
+	private static final Logger LOGGER = Logger.getLogger(FilePersistedQueryRegistry.class.getName());
+
+	/**
+	 * A line in the file.
+	 */
+	private record Entry(String id, String owner, String database, String statement, QueryEvaluator.Target target, QueryEvaluator.TransactionMode transactionMode) {
+
+		static Entry of(PersistedQuery query) {
+			return new Entry(query.id(), query.owner(), query.database(), query.statement(), query.requirements().target(), query.requirements().transactionMode());
+		}
+
+		PersistedQuery toPersistedQuery() {
+			return new PersistedQuery(id, owner, database, statement, QueryFingerprint.of(statement), new QueryEvaluator.ExecutionRequirements(target, transactionMode));
+		}
+	}
+
+	private final QueryEvaluator queryEvaluator;
+
+	private final Path file;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Map<String, PersistedQuery> queries = new ConcurrentHashMap<>();
+
+	FilePersistedQueryRegistry(QueryEvaluator queryEvaluator, ApplicationProperties applicationProperties) {
+		this.queryEvaluator = queryEvaluator;
+		this.file = applicationProperties.persistedQueries();
+		load();
+	}
+
+	private void load() {
+
+		if (file == null || !Files.isRegularFile(file)) {
+			return;
+		}
+		try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+			lines.filter(line -> !line.isBlank()).forEach(line -> {
+				try {
+					var query = objectMapper.readValue(line, Entry.class).toPersistedQuery();
+					queries.put(query.id(), query);
+				} catch (JsonProcessingException e) {
+					LOGGER.log(Level.WARNING, "Skipping unreadable persisted query: {0}", e.getOriginalMessage());
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read persisted queries from " + file, e);
+		}
+		LOGGER.log(Level.INFO, "Restored {0} persisted queries from {1}", new Object[] {queries.size(), file});
+	}
+
+	@Override
+	public Mono<PersistedQuery> register(Neo4jPrincipal principal, String database, String id, String statement) {
+
+		var normalizedStatement = Optional.ofNullable(statement).map(String::trim).filter(v -> !v.isEmpty()).orElse(null);
+		if (normalizedStatement == null) {
+			return Mono.error(new IllegalArgumentException("A statement is required"));
+		}
+		var owner = principal.username();
+		var normalizedId = Optional.ofNullable(id).map(String::trim).filter(v -> !v.isEmpty())
+			.orElseGet(() -> defaultId(owner, database, normalizedStatement));
+
+		var existing = queries.get(normalizedId);
+		if (existing != null) {
+			return sameQuery(existing, owner, database, normalizedStatement) ? Mono.just(existing) : Mono.error(new DuplicatePersistedQueryException(normalizedId));
+		}
+
+		var fingerprint = QueryFingerprint.of(normalizedStatement);
+		return queryEvaluator.getExecutionRequirements(principal, database, normalizedStatement, fingerprint)
+			.map(requirements -> new PersistedQuery(normalizedId, owner, database, normalizedStatement, fingerprint, requirements))
+			.publishOn(Schedulers.boundedElastic())
+			.map(this::store);
+	}
+
+	@Override
+	public Optional<PersistedQuery> find(String id) {
+		return Optional.ofNullable(id).map(queries::get);
+	}
+
+	private synchronized PersistedQuery store(PersistedQuery query) {
+
+		var existing = queries.get(query.id());
+		if (existing != null) {
+			if (sameQuery(existing, query.owner(), query.database(), query.statement())) {
+				return existing;
+			}
+			throw new DuplicatePersistedQueryException(query.id());
+		}
+
+		if (file != null) {
+			try {
+				Files.writeString(file, objectMapper.writeValueAsString(Entry.of(query)) + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not persist query " + query.id(), e);
+			}
+		}
+		queries.put(query.id(), query);
+		return query;
+	}
+
+	private static boolean sameQuery(PersistedQuery existing, String owner, String database, String statement) {
+		return owner.equals(existing.owner()) && existing.database().equals(database) && existing.statement().equals(statement);
+	}
+
+	/**
+	 * The owner is part of the default id, so that principals registering the same statement don't get in each other's way.
+	 */
+	static String defaultId(String owner, String database, String statement) {
+
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(owner.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(database.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(statement.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+/**
+ * A set of primitive {@literal long} values with open addressing and linear probing, so that tracking the ids of
+ * entities does not require a boxed {@link Long} plus a map entry for each id. Only adding and checking is supported,
+ * which is all that is needed for de-duplicating entities. The set is not thread-safe.
+ *
+ * @author Michael J. Simons
+ */
+final class LongHashSet {
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * Zero is used to mark empty slots, whether zero itself is contained is tracked separately.
+	 */
+	private long[] slots;
+
+	private boolean containsZero;
+
+	private int size;
+
+	LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize The number of values expected to be added without resizing
+	 */
+	LongHashSet(int expectedSize) {
+		this.slots = new long[tableSizeFor(expectedSize)];
+	}
+
+	/**
+	 * Adds a value to this set.
+	 *
+	 * @param value The value to add
+	 * @return {@literal true} if the value has not been contained before
+	 */
+	boolean add(long value) {
+
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			++size;
+			return true;
+		}
+
+		var mask = slots.length - 1;
+		var index = hash(value) & mask;
+		while (slots[index] != 0) {
+			if (slots[index] == value) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		slots[index] = value;
+		if (++size > slots.length / 2) {
+			rehash(slots.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @param value The value to check
+	 * @return {@literal true} if the value has been added before
+	 */
+	boolean contains(long value) {
+
+		if (value == 0) {
+			return containsZero;
+		}
+
+		var mask = slots.length - 1;
+		var index = hash(value) & mask;
+		while (slots[index] != 0) {
+			if (slots[index] == value) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * {@return the number of values in this set}
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * {@return all values of this set in no particular order}
+	 */
+	long[] toArray() {
+
+		var result = new long[size];
+		var i = 0;
+		if (containsZero) {
+			result[i++] = 0;
+		}
+		for (long value : slots) {
+			if (value != 0) {
+				result[i++] = value;
+			}
+		}
+		return result;
+	}
+
+	private void rehash(int newCapacity) {
+
+		var oldSlots = slots;
+		var mask = newCapacity - 1;
+		slots = new long[newCapacity];
+		for (long value : oldSlots) {
+			if (value != 0) {
+				var index = hash(value) & mask;
+				while (slots[index] != 0) {
+					index = (index + 1) & mask;
+				}
+				slots[index] = value;
+			}
+		}
+	}
+
+	/**
+	 * Ids are mostly sequential, so the bits need to be spread before they are masked.
+	 */
+	private static int hash(long value) {
+		var h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		var capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+		return Math.max(capacity, 4);
+	}
+}
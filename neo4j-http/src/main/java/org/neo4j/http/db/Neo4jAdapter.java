@@ -15,6 +15,9 @@
  */
 package org.neo4j.http.db;
 
+import java.util.Set;
+
+import org.neo4j.driver.AccessMode;
 import org.neo4j.driver.Query;
 import org.neo4j.driver.Record;
 
@@ -36,17 +39,96 @@ public interface Neo4jAdapter {
 	 * @param principal The authenticated principal
 	 * @param database The database in which to execute the query
 	 * @param query The query to execute
+	 * @param fetchSize The fetch size requested by the client, might be {@literal null} to use a learned one
 	 * @return A stream of records
 	 */
-	Flux<Record> stream(Neo4jPrincipal principal, String database, Query query);
+	default Flux<Record> stream(Neo4jPrincipal principal, String database, Query query, Integer fetchSize) {
+		return stream(principal, database, new AnnotatedQuery(query, false, Set.of(AnnotatedQuery.ResultFormat.ROW), null, fetchSize));
+	}
 
 	/**
-	 * Executes one or more queries and eagerly collects toe results into a {@link ResultContainer}.
+	 * Streams the records of the given query. The requirements of a persisted query are used without evaluating it again.
+	 * @param principal The authenticated principal
+	 * @param database The database in which to execute the query
+	 * @param query The query to execute, including the fetch size requested by the client
+	 * @return A stream of records
+	 */
+	Flux<Record> stream(Neo4jPrincipal principal, String database, AnnotatedQuery query);
+
+	/**
+	 * Executes one or more queries and eagerly collects toe results into a {@link ResultContainer}. Records exceeding the
+	 * memory budget of the request are written to disk, the container must be rendered via {@link ResultContainer#toEvents()}
+	 * to release them.
 	 * @param principal The authenticated principal
-	 * @param query The query to execute
 	 * @param database The database in which to execute the query
+	 * @param singleTransaction Set to {@literal true} to run all queries in one session and transaction
+	 * @param query The query to execute
 	 * @param additionalQueries Additional queries to execute
 	 * @return An eagerly populated result container
 	 */
-	Mono<ResultContainer> run(Neo4jPrincipal principal, String database, AnnotatedQuery query, AnnotatedQuery... additionalQueries);
+	Mono<ResultContainer> run(Neo4jPrincipal principal, String database, boolean singleTransaction, AnnotatedQuery query, AnnotatedQuery... additionalQueries);
+
+	/**
+	 * Executes one or more queries one after another and streams their results as they arrive from the database. In
+	 * contrast to {@link #run(Neo4jPrincipal, String, boolean, AnnotatedQuery, AnnotatedQuery...)} no records are collected,
+	 * the amount of records held in memory is bounded by the fetch size. Transactions are not retried, as events of the
+	 * queries may already have been emitted.
+	 * <p>
+	 * When all queries run in a single transaction, the transaction is routed according to the strongest requirements
+	 * among the queries and the first failing query rolls back the transaction, the remaining queries won't be executed.
+	 * Queries that require an implicit transaction can't be run together with other queries, all of them will be run
+	 * in their own transaction in that case.
+	 *
+	 * @param principal         The authenticated principal
+	 * @param database          The database in which to execute the query
+	 * @param singleTransaction Set to {@literal true} to run all queries in one session and transaction
+	 * @param query             The query to execute
+	 * @param additionalQueries Additional queries to execute
+	 * @return A stream of result events
+	 */
+	Flux<ResultEvent> streamResults(Neo4jPrincipal principal, String database, boolean singleTransaction, AnnotatedQuery query, AnnotatedQuery... additionalQueries);
+
+	/**
+	 * Opens an explicit transaction that spans several requests.
+	 *
+	 * @param principal  The authenticated principal
+	 * @param database   The database in which to open the transaction
+	 * @param accessMode The access mode used for routing the transaction
+	 * @return The id of the new transaction
+	 */
+	Mono<Long> beginTransaction(Neo4jPrincipal principal, String database, AccessMode accessMode);
+
+	/**
+	 * Executes zero or more queries in an explicit transaction that stays open afterwards. The transaction is rolled
+	 * back and no further queries are executed if one of the queries fails.
+	 *
+	 * @param principal The authenticated principal
+	 * @param database  The database of the transaction
+	 * @param id        The id of the transaction
+	 * @param queries   The queries to execute
+	 * @return A stream of result events, ending with a {@link ResultEvent.Transaction} if the transaction is still open
+	 */
+	Flux<ResultEvent> extendTransaction(Neo4jPrincipal principal, String database, long id, AnnotatedQuery... queries);
+
+	/**
+	 * Executes zero or more queries in an explicit transaction and commits it afterwards. The transaction is rolled
+	 * back and no further queries are executed if one of the queries fails.
+	 *
+	 * @param principal The authenticated principal
+	 * @param database  The database of the transaction
+	 * @param id        The id of the transaction
+	 * @param queries   The queries to execute
+	 * @return A stream of result events
+	 */
+	Flux<ResultEvent> commitTransaction(Neo4jPrincipal principal, String database, long id, AnnotatedQuery... queries);
+
+	/**
+	 * Rolls back an explicit transaction.
+	 *
+	 * @param principal The authenticated principal
+	 * @param database  The database of the transaction
+	 * @param id        The id of the transaction
+	 * @return A publisher signaling completion
+	 */
+	Mono<Void> rollbackTransaction(Neo4jPrincipal principal, String database, long id);
 }
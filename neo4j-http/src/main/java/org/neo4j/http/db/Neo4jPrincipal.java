@@ -24,8 +24,20 @@ import org.springframework.security.core.AuthenticatedPrincipal;
  * @author Michael J. Simons
  * @param username The username
  * @param authToken The driver {@link org.neo4j.driver.AuthToken} to be used on the session.
+ * @param impersonable {@literal true} if Neo4j confirmed username and password of this principal, so that sessions
+ *                     may impersonate the user instead of authenticating with the token
  */
-public record Neo4jPrincipal(String username, AuthToken authToken) implements AuthenticatedPrincipal {
+public record Neo4jPrincipal(String username, AuthToken authToken, boolean impersonable) implements AuthenticatedPrincipal {
+
+	/**
+	 * Creates a principal that is never impersonated.
+	 *
+	 * @param username The username
+	 * @param authToken The driver {@link org.neo4j.driver.AuthToken} to be used on the session.
+	 */
+	public Neo4jPrincipal(String username, AuthToken authToken) {
+		this(username, authToken, false);
+	}
 
 	@Override
 	public String getName() {
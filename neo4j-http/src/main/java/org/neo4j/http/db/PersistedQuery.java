@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+/**
+ * A query that has been registered once and can be executed by its id afterwards. Everything that can be derived from
+ * the statement alone has been computed during registration. Only the owner can execute the query.
+ *
+ * @author Michael J. Simons
+ * @param id           The id under which the query has been registered
+ * @param owner        The name of the principal that registered the query
+ * @param database     The database for which the requirements have been evaluated
+ * @param statement    The statement
+ * @param fingerprint  The fingerprint of the statement
+ * @param requirements The execution requirements of the statement in the given database
+ */
+public record PersistedQuery(
+	String id,
+	String owner,
+	String database,
+	String statement,
+	QueryFingerprint fingerprint,
+	QueryEvaluator.ExecutionRequirements requirements
+) {
+}
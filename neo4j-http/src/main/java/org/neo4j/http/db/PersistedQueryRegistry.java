@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.util.Optional;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A registry of {@link PersistedQuery persisted queries}: Clients that send the same statement over and over again can
+ * register it once and refer to it by its id afterwards.
+ *
+ * @author Michael J. Simons
+ */
+public interface PersistedQueryRegistry {
+
+	/**
+	 * Registers a statement. Registering the same statement under the same id again is a no-op. Ids are unique across
+	 * all principals: An id that has been taken by another principal can neither be overwritten nor shadowed.
+	 *
+	 * @param principal The authenticated principal registering the query, used to evaluate the statement and the owner of the query
+	 * @param database  The database in which the statement is going to be executed
+	 * @param id        An optional id, if {@literal null} or blank, an id will be derived from owner, database and statement
+	 * @param statement The statement to register, must not be {@literal null} or blank
+	 * @return The persisted query or an error if there is already another query registered under the given id
+	 */
+	Mono<PersistedQuery> register(Neo4jPrincipal principal, String database, String id, String statement);
+
+	/**
+	 * Retrieves a persisted query. Callers must check the {@link PersistedQuery#owner() owner} before running it.
+	 *
+	 * @param id The id of the query
+	 * @return An optional persisted query
+	 */
+	Optional<PersistedQuery> find(String id);
+}
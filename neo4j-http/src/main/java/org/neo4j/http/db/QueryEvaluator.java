@@ -20,6 +20,7 @@ import java.util.logging.Logger;
 
 import org.neo4j.driver.Driver;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
 
 /**
@@ -34,20 +35,32 @@ public interface QueryEvaluator {
 	 */
 	Logger LOGGER = Logger.getLogger(QueryEvaluator.class.getName());
 
+	/**
+	 * Name of the cache holding the {@link ExecutionRequirements}.
+	 */
+	String EXECUTION_REQUIREMENTS_CACHE = "executionRequirements";
+
+	/**
+	 * Name of the key generator used for the {@link #EXECUTION_REQUIREMENTS_CACHE}.
+	 */
+	String EXECUTION_REQUIREMENTS_KEY_GENERATOR = "executionRequirementsKeyGenerator";
+
 	/**
 	 * Creates a new {@link QueryEvaluator} using the capabilities of the given connection.
 	 * @param driver connected to an instance that has a given set of {@link Capabilities}.
 	 * @param capabilities capabilities of the instance against the driver is connected to
+	 * @param meterRegistry the registry used for recording the time it takes to evaluate a query
+	 * @param shared {@literal true} if queries should be evaluated independent of the principal
 	 * @return a {@link QueryEvaluator}
 	 */
-	static QueryEvaluator create(Driver driver, Capabilities capabilities) {
+	static QueryEvaluator create(Driver driver, Capabilities capabilities, MeterRegistry meterRegistry, boolean shared) {
 
 		if (capabilities.ssrAvailable()) {
 			LOGGER.log(Level.INFO, "Using SSR");
-			return new SSREnabledQueryEvaluator(driver);
+			return new SSREnabledQueryEvaluator(driver, meterRegistry);
 		}
 		LOGGER.log(Level.WARNING, "Using client side query evaluation, some queries might get routed wrong");
-		return new DefaultQueryEvaluator(driver);
+		return new DefaultQueryEvaluator(driver, meterRegistry, shared);
 	}
 
 	/**
@@ -101,11 +114,15 @@ public interface QueryEvaluator {
 	Mono<Boolean> isEnterpriseEdition();
 
 	/**
-	 * Retrieves the execution requirements of a query. Most implementations will actually cache it.
+	 * Retrieves the execution requirements of a query. Most implementations will actually cache it in the cache named
+	 * {@link #EXECUTION_REQUIREMENTS_CACHE}. That cache is synchronized: Concurrent callers asking for the same query
+	 * will all share the same, single evaluation.
 	 *
-	 * @param principal The authenticated principal for whom the query is evaluated
-	 * @param query     The string value of a query to be executed, must not be {@literal null} or blank
+	 * @param principal   The authenticated principal for whom the query is evaluated
+	 * @param database    The database in which the query is going to be executed
+	 * @param query       The string value of a query to be executed, must not be {@literal null} or blank
+	 * @param fingerprint The fingerprint of the query, computed once by the caller and used as the key of the cache
 	 * @return The characteristics of the query
 	 */
-	Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String query);
+	Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String database, String query, QueryFingerprint fingerprint);
 }
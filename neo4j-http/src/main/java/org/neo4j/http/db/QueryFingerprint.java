@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.neo4j.cypher.internal.parser.javacc.CypherCharStream;
+import org.neo4j.cypher.internal.parser.javacc.CypherConstants;
+import org.neo4j.cypher.internal.parser.javacc.CypherTokenManager;
+import org.neo4j.cypher.internal.parser.javacc.Token;
+
+/**
+ * A fingerprint of a query: The query reduced to its tokens, with all literals replaced by a placeholder, so that
+ * structurally identical queries share the same fingerprint. This is used as a key for the execution requirements:
+ * Whether a query needs to go to a writer or needs an implicit transaction does not depend on the value of a literal.
+ * <p>
+ * There is one exception to that rule: Procedures may take Cypher as string arguments and execute them (for example
+ * {@code apoc.cypher.doIt}). Therefore, string literals are kept in queries that contain a {@code CALL} clause.
+ * Functions cannot write, so strings passed to them are safe to be replaced.
+ *
+ * @author Michael J. Simons
+ * @param value            The normalized query
+ * @param literalsReplaced {@literal true} if any literal has been replaced, indicating a query that should better use parameters
+ */
+public record QueryFingerprint(String value, boolean literalsReplaced) {
+
+	private static final String PLACEHOLDER = "?";
+
+	private static final Set<Integer> NUMBER_LITERALS = Set.of(
+		CypherConstants.DECIMAL_DOUBLE, CypherConstants.UNSIGNED_DECIMAL_INTEGER,
+		CypherConstants.UNSIGNED_HEX_INTEGER, CypherConstants.UNSIGNED_OCTAL_INTEGER
+	);
+
+	private static final Set<Integer> STRING_LITERALS = Set.of(
+		CypherConstants.STRING_LITERAL1, CypherConstants.STRING_LITERAL2
+	);
+
+	/**
+	 * Computes the fingerprint of a query. If the query can't be tokenized, the fingerprint is the query itself.
+	 *
+	 * @param query The query to fingerprint
+	 * @return The fingerprint
+	 */
+	public static QueryFingerprint of(String query) {
+
+		List<Token> tokens = new ArrayList<>();
+		var hasCall = false;
+		try {
+			var tokenManager = new CypherTokenManager(new CypherCharStream(query));
+			for (var token = tokenManager.getNextToken(); token.kind != CypherConstants.EOF; token = tokenManager.getNextToken()) {
+				hasCall |= token.kind == CypherConstants.CALL;
+				tokens.add(token);
+			}
+		} catch (Exception e) {
+			// Most likely a TokenMgrException, the query is invalid anyway and will be rejected later on
+			return new QueryFingerprint(query, false);
+		}
+
+		var value = new StringBuilder(query.length());
+		var literalsReplaced = false;
+		for (Token token : tokens) {
+			if (!value.isEmpty()) {
+				value.append(' ');
+			}
+			if (NUMBER_LITERALS.contains(token.kind) || (!hasCall && STRING_LITERALS.contains(token.kind))) {
+				value.append(PLACEHOLDER);
+				literalsReplaced = true;
+			} else {
+				value.append(token.image);
+			}
+		}
+		return new QueryFingerprint(value.toString(), literalsReplaced);
+	}
+
+	/**
+	 * {@return a short, non-unique but stable hash of this fingerprint, suitable for tagging metrics}
+	 */
+	public String hash() {
+		return "%08x".formatted(value.hashCode());
+	}
+}
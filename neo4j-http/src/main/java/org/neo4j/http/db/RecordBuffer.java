@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.driver.Record;
+
+/**
+ * Collects the records of one result. Records are kept in memory as long as the {@link ResultBuffers.Budget budget} of
+ * the request allows so, all records after that are appended to a {@link RecordSpillFile}. Iterating the buffer returns
+ * the records in the order they have been added, regardless where they have been stored.
+ *
+ * @author Michael J. Simons
+ */
+final class RecordBuffer implements Iterable<Record>, AutoCloseable {
+
+	private final ResultBuffers.Budget budget;
+
+	private final List<String> keys;
+
+	private final List<Record> records = new ArrayList<>();
+
+	private RecordSpillFile spillFile;
+
+	private long bytesInMemory;
+
+	private long bytesTotal;
+
+	private long numberOfRecords;
+
+	private boolean closed;
+
+	RecordBuffer(ResultBuffers.Budget budget, List<String> keys) {
+		this.budget = budget;
+		this.keys = keys;
+	}
+
+	/**
+	 * Adds a record to this buffer.
+	 *
+	 * @param record The record to add
+	 * @throws ResultTooLargeException if the record exceeds the maximum size of the results of the request
+	 */
+	synchronized void add(Record record) {
+
+		if (closed) {
+			throw new IllegalStateException("Buffer has already been closed");
+		}
+		if (spillFile == null) {
+			var size = RecordCodec.estimateSize(record);
+			budget.grow(size);
+			if (budget.reserveMemory(size)) {
+				records.add(record);
+				bytesInMemory += size;
+				bytesTotal += size;
+				++numberOfRecords;
+				return;
+			}
+			budget.shrink(size);
+		}
+		try {
+			if (spillFile == null) {
+				spillFile = budget.newSpillFile(keys);
+			}
+			var size = spillFile.append(record);
+			budget.grow(size);
+			bytesTotal += size;
+			++numberOfRecords;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * {@return the number of records in this buffer, zero after it has been closed}
+	 */
+	synchronized long size() {
+		return closed ? 0 : numberOfRecords;
+	}
+
+	/**
+	 * {@return true if some records have been written to disk}
+	 */
+	synchronized boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	@Override
+	public synchronized Iterator<Record> iterator() {
+
+		if (spillFile == null) {
+			return records.iterator();
+		}
+		var inMemory = records.iterator();
+		var spilled = spillFile.iterator();
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return inMemory.hasNext() || spilled.hasNext();
+			}
+
+			@Override
+			public Record next() {
+				return inMemory.hasNext() ? inMemory.next() : spilled.next();
+			}
+		};
+	}
+
+	/**
+	 * Releases the memory of this buffer and deletes the spill file. Can be called several times.
+	 */
+	@Override
+	public synchronized void close() {
+
+		if (closed) {
+			return;
+		}
+		closed = true;
+		records.clear();
+		budget.release(bytesInMemory, bytesTotal);
+		if (spillFile != null) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalPath;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.internal.value.MapValue;
+import org.neo4j.driver.types.Entity;
+import org.neo4j.driver.types.Node;
+import org.neo4j.driver.types.Relationship;
+import org.neo4j.driver.types.Type;
+import org.neo4j.driver.types.TypeSystem;
+
+/**
+ * A compact binary encoding of records, used for records that are spilled to disk. Nodes, relationships and paths are
+ * restored with the driver's own implementations, so that spilled records are rendered exactly like the ones kept in
+ * memory. The encoding is private to a single process and not meant to be stable.
+ * <p>
+ * Also estimates the heap occupied by a record, which is good enough for budgeting, but not exact.
+ *
+ * @author Michael J. Simons
+ */
+final class RecordCodec {
+
+	private enum Tag {
+		NULL, TRUE, FALSE, INTEGER, FLOAT, STRING, BYTES, LIST, MAP, NODE, RELATIONSHIP, PATH, POINT_2D, POINT_3D,
+		DATE, TIME, LOCAL_TIME, LOCAL_DATE_TIME, DATE_TIME, DURATION
+	}
+
+	private static final Tag[] TAGS = Tag.values();
+
+	/**
+	 * Maps the types of the driver to the first tag they can be written with. The types are singletons.
+	 */
+	private static final Map<Type, Tag> TYPES;
+
+	static {
+		var typeSystem = TypeSystem.getDefault();
+		TYPES = new IdentityHashMap<>();
+		TYPES.put(typeSystem.NULL(), Tag.NULL);
+		TYPES.put(typeSystem.BOOLEAN(), Tag.TRUE);
+		TYPES.put(typeSystem.INTEGER(), Tag.INTEGER);
+		TYPES.put(typeSystem.FLOAT(), Tag.FLOAT);
+		TYPES.put(typeSystem.STRING(), Tag.STRING);
+		TYPES.put(typeSystem.BYTES(), Tag.BYTES);
+		TYPES.put(typeSystem.LIST(), Tag.LIST);
+		TYPES.put(typeSystem.MAP(), Tag.MAP);
+		TYPES.put(typeSystem.NODE(), Tag.NODE);
+		TYPES.put(typeSystem.RELATIONSHIP(), Tag.RELATIONSHIP);
+		TYPES.put(typeSystem.PATH(), Tag.PATH);
+		TYPES.put(typeSystem.POINT(), Tag.POINT_2D);
+		TYPES.put(typeSystem.DATE(), Tag.DATE);
+		TYPES.put(typeSystem.TIME(), Tag.TIME);
+		TYPES.put(typeSystem.LOCAL_TIME(), Tag.LOCAL_TIME);
+		TYPES.put(typeSystem.LOCAL_DATE_TIME(), Tag.LOCAL_DATE_TIME);
+		TYPES.put(typeSystem.DATE_TIME(), Tag.DATE_TIME);
+		TYPES.put(typeSystem.DURATION(), Tag.DURATION);
+	}
+
+	private static Tag tagOf(Value value) {
+
+		var tag = TYPES.get(value.type());
+		if (tag == null) {
+			throw new IllegalArgumentException("Type " + value.type().name() + " cannot be buffered");
+		}
+		return tag;
+	}
+
+	/**
+	 * Writes the values of a record, but not its keys, which are the same for all records of a result.
+	 *
+	 * @param record The record to write
+	 * @param out    The destination
+	 * @throws IOException If writing fails
+	 */
+	static void write(Record record, DataOutput out) throws IOException {
+
+		out.writeInt(record.size());
+		for (int i = 0; i < record.size(); ++i) {
+			write(record.get(i), out);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void write(Value value, DataOutput out) throws IOException {
+
+		var tag = tagOf(value);
+		switch (tag) {
+			case NULL -> out.writeByte(Tag.NULL.ordinal());
+			case TRUE, FALSE -> out.writeByte((value.asBoolean() ? Tag.TRUE : Tag.FALSE).ordinal());
+			case INTEGER -> {
+				out.writeByte(tag.ordinal());
+				out.writeLong(value.asLong());
+			}
+			case FLOAT -> {
+				out.writeByte(tag.ordinal());
+				out.writeDouble(value.asDouble());
+			}
+			case STRING -> {
+				out.writeByte(tag.ordinal());
+				writeString(value.asString(), out);
+			}
+			case BYTES -> {
+				out.writeByte(tag.ordinal());
+				var bytes = value.asByteArray();
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			case LIST -> {
+				out.writeByte(tag.ordinal());
+				out.writeInt(value.size());
+				for (int i = 0; i < value.size(); ++i) {
+					write(value.get(i), out);
+				}
+			}
+			case MAP -> {
+				out.writeByte(tag.ordinal());
+				writeProperties(value.asMap(v -> v), out);
+			}
+			case NODE -> {
+				out.writeByte(tag.ordinal());
+				writeNode(value.asNode(), out);
+			}
+			case RELATIONSHIP -> {
+				out.writeByte(tag.ordinal());
+				writeRelationship(value.asRelationship(), out);
+			}
+			case PATH -> {
+				out.writeByte(tag.ordinal());
+				var path = value.asPath();
+				out.writeInt(path.length());
+				writeNode(path.start(), out);
+				for (var segment : path) {
+					writeRelationship(segment.relationship(), out);
+					writeNode(segment.end(), out);
+				}
+			}
+			case POINT_2D, POINT_3D -> {
+				var point = value.asPoint();
+				var is3d = !Double.isNaN(point.z());
+				out.writeByte((is3d ? Tag.POINT_3D : Tag.POINT_2D).ordinal());
+				out.writeInt(point.srid());
+				out.writeDouble(point.x());
+				out.writeDouble(point.y());
+				if (is3d) {
+					out.writeDouble(point.z());
+				}
+			}
+			case DATE -> {
+				out.writeByte(tag.ordinal());
+				out.writeLong(value.asLocalDate().toEpochDay());
+			}
+			case TIME -> {
+				out.writeByte(tag.ordinal());
+				var time = value.asOffsetTime();
+				out.writeLong(time.toLocalTime().toNanoOfDay());
+				out.writeInt(time.getOffset().getTotalSeconds());
+			}
+			case LOCAL_TIME -> {
+				out.writeByte(tag.ordinal());
+				out.writeLong(value.asLocalTime().toNanoOfDay());
+			}
+			case LOCAL_DATE_TIME -> {
+				out.writeByte(tag.ordinal());
+				var localDateTime = value.asLocalDateTime();
+				out.writeLong(localDateTime.toEpochSecond(ZoneOffset.UTC));
+				out.writeInt(localDateTime.getNano());
+			}
+			case DATE_TIME -> {
+				out.writeByte(tag.ordinal());
+				var dateTime = value.asZonedDateTime();
+				out.writeLong(dateTime.toEpochSecond());
+				out.writeInt(dateTime.getNano());
+				writeString(dateTime.getZone().getId(), out);
+			}
+			case DURATION -> {
+				out.writeByte(tag.ordinal());
+				var duration = value.asIsoDuration();
+				out.writeLong(duration.months());
+				out.writeLong(duration.days());
+				out.writeLong(duration.seconds());
+				out.writeInt(duration.nanoseconds());
+			}
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void writeNode(Node node, DataOutput out) throws IOException {
+
+		out.writeLong(node.id());
+		writeString(node.elementId(), out);
+		var labels = new ArrayList<String>();
+		node.labels().forEach(labels::add);
+		out.writeInt(labels.size());
+		for (String label : labels) {
+			writeString(label, out);
+		}
+		writeProperties(node.asMap(v -> v), out);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void writeRelationship(Relationship relationship, DataOutput out) throws IOException {
+
+		out.writeLong(relationship.id());
+		writeString(relationship.elementId(), out);
+		out.writeLong(relationship.startNodeId());
+		writeString(relationship.startNodeElementId(), out);
+		out.writeLong(relationship.endNodeId());
+		writeString(relationship.endNodeElementId(), out);
+		writeString(relationship.type(), out);
+		writeProperties(relationship.asMap(v -> v), out);
+	}
+
+	private static void writeProperties(Map<String, Value> properties, DataOutput out) throws IOException {
+
+		out.writeInt(properties.size());
+		for (var entry : properties.entrySet()) {
+			writeString(entry.getKey(), out);
+			write(entry.getValue(), out);
+		}
+	}
+
+	private static void writeString(String value, DataOutput out) throws IOException {
+
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads the values of a record.
+	 *
+	 * @param keys The keys of the record
+	 * @param in   A buffer positioned at the start of a record
+	 * @return The record
+	 */
+	static Record read(List<String> keys, ByteBuffer in) {
+
+		var values = new Value[in.getInt()];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = read(in);
+		}
+		return new InternalRecord(keys, values);
+	}
+
+	private static Value read(ByteBuffer in) {
+
+		var tag = TAGS[in.get()];
+		return switch (tag) {
+			case NULL -> Values.NULL;
+			case TRUE -> Values.value(true);
+			case FALSE -> Values.value(false);
+			case INTEGER -> Values.value(in.getLong());
+			case FLOAT -> Values.value(in.getDouble());
+			case STRING -> Values.value(readString(in));
+			case BYTES -> {
+				var bytes = new byte[in.getInt()];
+				in.get(bytes);
+				yield Values.value(bytes);
+			}
+			case LIST -> {
+				var elements = new Value[in.getInt()];
+				for (int i = 0; i < elements.length; ++i) {
+					elements[i] = read(in);
+				}
+				yield Values.value(elements);
+			}
+			case MAP -> new MapValue(readProperties(in));
+			case NODE -> readNode(in).asValue();
+			case RELATIONSHIP -> readRelationship(in).asValue();
+			case PATH -> {
+				var length = in.getInt();
+				var entities = new ArrayList<Entity>(2 * length + 1);
+				entities.add(readNode(in));
+				for (int i = 0; i < length; ++i) {
+					entities.add(readRelationship(in));
+					entities.add(readNode(in));
+				}
+				yield new InternalPath(entities).asValue();
+			}
+			case POINT_2D -> Values.point(in.getInt(), in.getDouble(), in.getDouble());
+			case POINT_3D -> Values.point(in.getInt(), in.getDouble(), in.getDouble(), in.getDouble());
+			case DATE -> Values.value(LocalDate.ofEpochDay(in.getLong()));
+			case TIME -> Values.value(OffsetTime.of(LocalTime.ofNanoOfDay(in.getLong()), ZoneOffset.ofTotalSeconds(in.getInt())));
+			case LOCAL_TIME -> Values.value(LocalTime.ofNanoOfDay(in.getLong()));
+			case LOCAL_DATE_TIME -> Values.value(LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC));
+			case DATE_TIME -> {
+				var instant = Instant.ofEpochSecond(in.getLong(), in.getInt());
+				yield Values.value(ZonedDateTime.ofInstant(instant, ZoneId.of(readString(in))));
+			}
+			case DURATION -> Values.isoDuration(in.getLong(), in.getLong(), in.getLong(), in.getInt());
+		};
+	}
+
+	private static InternalNode readNode(ByteBuffer in) {
+
+		var id = in.getLong();
+		var elementId = readString(in);
+		var labels = new ArrayList<String>();
+		for (int i = in.getInt(); i > 0; --i) {
+			labels.add(readString(in));
+		}
+		return new InternalNode(id, elementId, labels, readProperties(in));
+	}
+
+	private static InternalRelationship readRelationship(ByteBuffer in) {
+
+		var id = in.getLong();
+		var elementId = readString(in);
+		var start = in.getLong();
+		var startElementId = readString(in);
+		var end = in.getLong();
+		var endElementId = readString(in);
+		var type = readString(in);
+		return new InternalRelationship(id, elementId, start, startElementId, end, endElementId, type, readProperties(in));
+	}
+
+	private static Map<String, Value> readProperties(ByteBuffer in) {
+
+		var size = in.getInt();
+		var properties = new HashMap<String, Value>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; ++i) {
+			properties.put(readString(in), read(in));
+		}
+		return properties;
+	}
+
+	private static String readString(ByteBuffer in) {
+
+		var bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Estimates the heap occupied by the values of a record, based on the usual sizes of objects on a 64-bit JVM with
+	 * compressed references.
+	 *
+	 * @param record The record to estimate
+	 * @return Estimated size in bytes
+	 */
+	static long estimateSize(Record record) {
+
+		long size = 32L + 8L * record.size();
+		for (int i = 0; i < record.size(); ++i) {
+			size += estimateSize(record.get(i));
+		}
+		return size;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static long estimateSize(Value value) {
+
+		return switch (tagOf(value)) {
+			case NULL, TRUE, FALSE -> 16L;
+			case INTEGER, FLOAT -> 24L;
+			case STRING -> 56L + value.asString().length();
+			case BYTES -> 32L + value.asByteArray().length;
+			case LIST -> {
+				long size = 32L + 8L * value.size();
+				for (int i = 0; i < value.size(); ++i) {
+					size += estimateSize(value.get(i));
+				}
+				yield size;
+			}
+			case MAP -> estimateProperties(value.keys(), value::get);
+			case NODE -> estimateEntity(value.asNode());
+			case RELATIONSHIP -> estimateEntity(value.asRelationship());
+			case PATH -> {
+				var path = value.asPath();
+				long size = 64L + estimateEntity(path.start());
+				for (var segment : path) {
+					size += 48L + estimateEntity(segment.relationship()) + estimateEntity(segment.end());
+				}
+				yield size;
+			}
+			default -> 48L;
+		};
+	}
+
+	private static long estimateEntity(Entity entity) {
+
+		long size = 96L + estimateProperties(entity.keys(), entity::get);
+		if (entity instanceof Node node) {
+			for (String label : node.labels()) {
+				size += 56L + label.length();
+			}
+		} else if (entity instanceof Relationship relationship) {
+			size += 56L + relationship.type().length();
+		}
+		return size;
+	}
+
+	private static long estimateProperties(Iterable<String> keys, Function<String, Value> values) {
+
+		long size = 48L;
+		for (String key : keys) {
+			size += 32L + 56L + key.length() + estimateSize(values.apply(key));
+		}
+		return size;
+	}
+
+	private RecordCodec() {
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.driver.Record;
+
+/**
+ * A temporary file holding records of one result in the encoding of the {@link RecordCodec}, each prefixed with its
+ * length. Records are appended through a buffered stream and read back through windows of the file that are mapped into
+ * memory, so that reading does neither copy the file into the heap nor issue a system call per record.
+ * <p>
+ * Writing ends with the first iteration. A window is unmapped as soon as a reader moves past it, closing the file unmaps
+ * the windows of all readers before the file is deleted, so that neither address space nor disk space is held until the
+ * next garbage collection. Readers fail after the file has been closed.
+ *
+ * @author Michael J. Simons
+ */
+final class RecordSpillFile implements Iterable<Record>, AutoCloseable {
+
+	/**
+	 * The size of the windows in which the file is mapped. Records larger than that get a window of their own.
+	 */
+	static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static final Logger LOGGER = Logger.getLogger(RecordSpillFile.class.getName());
+
+	/**
+	 * {@code sun.misc.Unsafe#invokeCleaner}, the only way to unmap a buffer before it is garbage collected on Java 17.
+	 */
+	private static final MethodHandle INVOKE_CLEANER = lookupInvokeCleaner();
+
+	private final Path path;
+
+	private final List<String> keys;
+
+	private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(1024);
+
+	private final DataOutputStream recordOutput = new DataOutputStream(recordBuffer);
+
+	private DataOutputStream output;
+
+	private long size;
+
+	private final List<Reader> readers = new ArrayList<>();
+
+	private RecordSpillFile(Path path, List<String> keys) throws IOException {
+		this.path = path;
+		this.keys = keys;
+		this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+	}
+
+	/**
+	 * Creates a new, empty file.
+	 *
+	 * @param directory The directory in which to create the file
+	 * @param keys      The keys shared by all records of the result
+	 * @return A new spill file
+	 * @throws IOException If the file cannot be created
+	 */
+	static RecordSpillFile create(Path directory, List<String> keys) throws IOException {
+		return new RecordSpillFile(Files.createTempFile(directory, "neo4j-http-", ".records"), keys);
+	}
+
+	/**
+	 * Appends a record to the file.
+	 *
+	 * @param record The record to append
+	 * @return The number of bytes written
+	 * @throws IOException If writing fails
+	 */
+	long append(Record record) throws IOException {
+
+		if (output == null) {
+			throw new IllegalStateException("Records cannot be appended after reading has started");
+		}
+		recordBuffer.reset();
+		RecordCodec.write(record, recordOutput);
+		output.writeInt(recordBuffer.size());
+		recordBuffer.writeTo(output);
+
+		var written = 4L + recordBuffer.size();
+		size += written;
+		return written;
+	}
+
+	@Override
+	public synchronized Iterator<Record> iterator() {
+
+		try {
+			finishWriting();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		var reader = new Reader();
+		readers.add(reader);
+		return reader;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+
+		try {
+			readers.forEach(Reader::close);
+			readers.clear();
+			finishWriting();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private void finishWriting() throws IOException {
+
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+	}
+
+	private static MethodHandle lookupInvokeCleaner() {
+
+		try {
+			var unsafeClass = Class.forName("sun.misc.Unsafe");
+			var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup()
+				.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+				.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Cannot unmap spill files explicitly, they are unmapped when garbage collected", e);
+			return null;
+		}
+	}
+
+	private static void unmap(MappedByteBuffer buffer) {
+
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+		} catch (Throwable e) {
+			LOGGER.log(Level.WARNING, "Could not unmap spill file", e);
+		}
+	}
+
+	/**
+	 * Reading and unmapping are synchronized, as a buffer must never be accessed after it has been unmapped.
+	 */
+	private final class Reader implements Iterator<Record> {
+
+		private long windowStart;
+
+		private MappedByteBuffer window;
+
+		private boolean closed;
+
+		@Override
+		public synchronized boolean hasNext() {
+			return !closed && position() < size;
+		}
+
+		@Override
+		public synchronized Record next() {
+
+			if (closed) {
+				throw new IllegalStateException("Spill file has already been closed");
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ensureAvailable(4);
+			var length = window.getInt();
+			ensureAvailable(length);
+			var record = RecordCodec.read(keys, window);
+			if (!hasNext()) {
+				releaseWindow();
+			}
+			return record;
+		}
+
+		synchronized void close() {
+
+			closed = true;
+			releaseWindow();
+		}
+
+		private void releaseWindow() {
+
+			if (window != null) {
+				var previous = window;
+				windowStart = position();
+				window = null;
+				unmap(previous);
+			}
+		}
+
+		private long position() {
+			return window == null ? windowStart : windowStart + window.position();
+		}
+
+		private void ensureAvailable(int length) {
+
+			if (window != null && window.remaining() >= length) {
+				return;
+			}
+			var start = position();
+			releaseWindow();
+			try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, Math.max(WINDOW_SIZE, length)));
+				windowStart = start;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Accounts for the memory used by results that are collected completely before the response is written. Each request
+ * gets a {@link Budget}: Records are kept in memory as long as neither the limit per request nor the limit for all
+ * requests together is exceeded and are spilled to disk afterwards. A request whose results exceed the maximum size
+ * fails with a {@link ResultTooLargeException}.
+ * <p>
+ * The sizes of records kept in memory are estimated, the sizes of spilled records are exact.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class ResultBuffers {
+
+	static final String IN_MEMORY_METRIC = "neo4j.http.buffered.results.memory";
+
+	static final String SPILLED_METRIC = "neo4j.http.buffered.results.spilled";
+
+	private final ApplicationProperties.BufferSettings settings;
+
+	private final AtomicLong inMemory = new AtomicLong();
+
+	private final Counter spilled;
+
+	@Autowired
+	ResultBuffers(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		this(applicationProperties.bufferedResults(), meterRegistry);
+	}
+
+	ResultBuffers(ApplicationProperties.BufferSettings settings, MeterRegistry meterRegistry) {
+		this.settings = settings;
+
+		Gauge.builder(IN_MEMORY_METRIC, inMemory, AtomicLong::get)
+			.description("Estimated size of buffered records held in memory")
+			.baseUnit("bytes")
+			.register(meterRegistry);
+		this.spilled = Counter.builder(SPILLED_METRIC)
+			.description("Number of buffered results that have been written to disk")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * {@return a new budget for all results of one request}
+	 */
+	Budget newBudget() {
+		return new Budget();
+	}
+
+	/**
+	 * {@return the estimated size of records held in memory by all requests}
+	 */
+	long inMemory() {
+		return inMemory.get();
+	}
+
+	/**
+	 * The budget of one request. Statements of a request may run concurrently, so the budget is thread safe. Closing the
+	 * budget closes all buffers created by it.
+	 */
+	final class Budget implements AutoCloseable {
+
+		private final AtomicLong bytesInMemory = new AtomicLong();
+
+		private final AtomicLong bytesTotal = new AtomicLong();
+
+		private final Queue<RecordBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+		private Budget() {
+		}
+
+		/**
+		 * Creates a buffer for the records of one result. The buffer is closed together with this budget, but may be closed
+		 * earlier, for example when the statement is retried.
+		 *
+		 * @param keys The keys of the result
+		 * @return A new buffer
+		 */
+		RecordBuffer newBuffer(List<String> keys) {
+
+			var buffer = new RecordBuffer(this, keys);
+			buffers.add(buffer);
+			return buffer;
+		}
+
+		boolean reserveMemory(long bytes) {
+
+			if (bytesInMemory.addAndGet(bytes) > settings.maxInMemoryPerRequest().toBytes()) {
+				bytesInMemory.addAndGet(-bytes);
+				return false;
+			}
+			if (inMemory.addAndGet(bytes) > settings.maxInMemory().toBytes()) {
+				inMemory.addAndGet(-bytes);
+				bytesInMemory.addAndGet(-bytes);
+				return false;
+			}
+			return true;
+		}
+
+		void grow(long bytes) {
+
+			if (bytesTotal.addAndGet(bytes) > settings.maxSize().toBytes()) {
+				bytesTotal.addAndGet(-bytes);
+				throw ResultTooLargeException.of(settings.maxSize().toBytes());
+			}
+		}
+
+		void shrink(long bytes) {
+			bytesTotal.addAndGet(-bytes);
+		}
+
+		void release(long bytesHeldInMemory, long bytesHeld) {
+
+			bytesInMemory.addAndGet(-bytesHeldInMemory);
+			inMemory.addAndGet(-bytesHeldInMemory);
+			bytesTotal.addAndGet(-bytesHeld);
+		}
+
+		RecordSpillFile newSpillFile(List<String> keys) throws IOException {
+
+			spilled.increment();
+			return RecordSpillFile.create(settings.spillDirectory(), keys);
+		}
+
+		/**
+		 * Closes this budget because its results are not going to be sent.
+		 *
+		 * @return The number of records that have been buffered but not been sent
+		 */
+		long discard() {
+
+			long discarded = 0;
+			for (var buffer = buffers.poll(); buffer != null; buffer = buffers.poll()) {
+				discarded += buffer.size();
+				buffer.close();
+			}
+			return discarded;
+		}
+
+		@Override
+		public void close() {
+
+			for (var buffer = buffers.poll(); buffer != null; buffer = buffers.poll()) {
+				buffer.close();
+			}
+		}
+	}
+}
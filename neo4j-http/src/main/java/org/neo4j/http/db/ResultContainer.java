@@ -22,6 +22,9 @@ import java.util.List;
 import org.neo4j.driver.exceptions.Neo4jException;
 import org.neo4j.driver.summary.Notification;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 /**
  * Instances of this class are treated as mutable internal to this package.
  *
@@ -34,13 +37,26 @@ public final class ResultContainer {
 	final List<Notification> notifications;
 	final List<Neo4jException> errors;
 
+	private final AutoCloseable resources;
+
 	/**
 	 * An empty result container.
 	 */
 	public ResultContainer() {
+		this(() -> {
+		});
+	}
+
+	/**
+	 * A result container owning the resources of the buffered results.
+	 *
+	 * @param resources Released when the container has been rendered
+	 */
+	ResultContainer(AutoCloseable resources) {
 		this.results = new ArrayList<>();
 		this.notifications = new ArrayList<>();
 		this.errors = new ArrayList<>();
+		this.resources = resources;
 	}
 
 	/**
@@ -63,4 +79,34 @@ public final class ResultContainer {
 	public List<Neo4jException> getErrors() {
 		return Collections.unmodifiableList(errors);
 	}
+
+	/**
+	 * Turns this container into the same events that would have been emitted when streaming the results, so that it can
+	 * be rendered without materializing the shaped records. All notifications are part of the last summary. The resources
+	 * held by the buffered results are released when the events have been consumed or the subscription has been
+	 * cancelled, the container must not be used afterwards.
+	 *
+	 * @return The events of all results and errors contained
+	 */
+	public Flux<ResultEvent> toEvents() {
+
+		var lastResult = results.size() - 1;
+		return Flux.range(0, results.size())
+			.concatMap(i -> {
+				var result = results.get(i);
+				return Flux.<ResultEvent>concat(
+					Mono.just(new ResultEvent.Header(result.columns())),
+					Flux.fromIterable(result.data()).map(ResultEvent.Data::new),
+					Mono.fromSupplier(() -> new ResultEvent.Summary(result.stats(), i == lastResult ? getNotifications() : List.of()))
+				);
+			})
+			.concatWith(Flux.fromIterable(errors).map(ResultEvent.Failure::new))
+			.doFinally(signal -> {
+				try {
+					resources.close();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.summary.Notification;
+import org.neo4j.driver.summary.SummaryCounters;
+
+/**
+ * A single event in the stream of results produced by running one or more {@link AnnotatedQuery annotated queries}
+ * without buffering them. For each successful statement a {@link Header}, zero or more {@link Data} events and a
+ * {@link Summary} are emitted, in that order. A failing statement emits a {@link Failure} instead of the
+ * {@link Summary}, potentially after some {@link Data} events. Statements run in an explicit transaction that stays open
+ * are followed by a single {@link Transaction} event.
+ *
+ * @author Michael J. Simons
+ */
+public sealed interface ResultEvent {
+
+	/**
+	 * Starts the result of a statement.
+	 *
+	 * @param columns The columns of the result set
+	 */
+	record Header(List<String> columns) implements ResultEvent {
+	}
+
+	/**
+	 * A single record, already brought into the shape requested by the client.
+	 *
+	 * @param data The shaped record
+	 */
+	record Data(EagerResult.ResultData data) implements ResultEvent {
+	}
+
+	/**
+	 * Marks the successful end of the result of a statement.
+	 *
+	 * @param stats         Optional counters, only present when requested
+	 * @param notifications Notifications raised by the statement
+	 */
+	record Summary(SummaryCounters stats, List<Notification> notifications) implements ResultEvent {
+	}
+
+	/**
+	 * Marks the unsuccessful end of a statement.
+	 *
+	 * @param exception The exception that ended the statement
+	 */
+	record Failure(Neo4jException exception) implements ResultEvent {
+	}
+
+	/**
+	 * Describes the explicit transaction the statements have been run in, which is still open.
+	 *
+	 * @param id       The id of the transaction
+	 * @param database The database of the transaction
+	 * @param expires  The time at which the transaction is rolled back if it is not used again
+	 */
+	record Transaction(long id, String database, Instant expires) implements ResultEvent {
+	}
+}
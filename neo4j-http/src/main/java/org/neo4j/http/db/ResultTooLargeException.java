@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.Serial;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+
+/**
+ * Thrown when the results of a request that are collected before the response is written exceed the configured
+ * maximum size. The request should either be streamed or return fewer records.
+ *
+ * @author Michael J. Simons
+ */
+public final class ResultTooLargeException extends Neo4jException {
+
+	@Serial
+	private static final long serialVersionUID = 4061581069375427442L;
+
+	/**
+	 * The results of the request are too large to be buffered.
+	 */
+	public static final String CODE = "Neo.ClientError.Request.ResultTooLarge";
+
+	private ResultTooLargeException(String message) {
+		super(CODE, message);
+	}
+
+	static ResultTooLargeException of(long maxSize) {
+		return new ResultTooLargeException("The results of this request exceed the maximum size of %d bytes for buffered results, request them without buffering instead.".formatted(maxSize));
+	}
+}
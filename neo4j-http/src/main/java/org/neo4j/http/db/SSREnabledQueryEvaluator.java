@@ -18,6 +18,7 @@ package org.neo4j.http.db;
 import org.neo4j.driver.Driver;
 import org.springframework.cache.annotation.Cacheable;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
 
 /**
@@ -31,10 +32,14 @@ class SSREnabledQueryEvaluator extends AbstractQueryEvaluator implements QueryEv
 		super(driver);
 	}
 
-	@Cacheable("executionRequirements")
+	SSREnabledQueryEvaluator(Driver driver, MeterRegistry meterRegistry) {
+		super(driver, meterRegistry);
+	}
+
+	@Cacheable(cacheNames = EXECUTION_REQUIREMENTS_CACHE, keyGenerator = EXECUTION_REQUIREMENTS_KEY_GENERATOR, sync = true)
 	@Override
-	public Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String query) {
-		return Mono.just(Target.AUTO).zipWith(getTransactionMode(query), ExecutionRequirements::new)
+	public Mono<ExecutionRequirements> getExecutionRequirements(Neo4jPrincipal principal, String database, String query, QueryFingerprint fingerprint) {
+		return timed(Mono.just(Target.AUTO).zipWith(getTransactionMode(query), ExecutionRequirements::new))
 			.cache();
 	}
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.io.Serial;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+
+/**
+ * Thrown when an explicit transaction cannot be opened or used. The codes are the same the Neo4j server uses in its
+ * own HTTP API.
+ *
+ * @author Michael J. Simons
+ */
+public final class TransactionNotAvailableException extends Neo4jException {
+
+	@Serial
+	private static final long serialVersionUID = -1811716233437520313L;
+
+	/**
+	 * The transaction does not exist, is not owned by the principal or has already expired.
+	 */
+	public static final String NOT_FOUND = "Neo.ClientError.Transaction.TransactionNotFound";
+
+	/**
+	 * The transaction is currently used by another request.
+	 */
+	public static final String ACCESSED_CONCURRENTLY = "Neo.ClientError.Transaction.TransactionAccessedConcurrently";
+
+	/**
+	 * No more transactions can be opened.
+	 */
+	public static final String LIMIT_REACHED = "Neo.TransientError.Transaction.MaximumTransactionLimitReached";
+
+	private TransactionNotAvailableException(String code, String message) {
+		super(code, message);
+	}
+
+	static TransactionNotAvailableException notFound() {
+		return new TransactionNotAvailableException(NOT_FOUND, "Unrecognized transaction id. Transaction may have timed out and been rolled back.");
+	}
+
+	static TransactionNotAvailableException accessedConcurrently(long id) {
+		return new TransactionNotAvailableException(ACCESSED_CONCURRENTLY, "Transaction %d is being used concurrently by another request.".formatted(id));
+	}
+
+	static TransactionNotAvailableException limitReached(String message) {
+		return new TransactionNotAvailableException(LIMIT_REACHED, message);
+	}
+}
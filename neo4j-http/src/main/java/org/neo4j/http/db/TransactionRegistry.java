@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.neo4j.driver.TransactionConfig;
+import org.neo4j.driver.reactivestreams.ReactiveSession;
+import org.neo4j.driver.reactivestreams.ReactiveTransaction;
+import org.neo4j.http.config.ApplicationProperties;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps track of explicit transactions that span several requests. Each transaction owns its session and therefore a
+ * connection of the driver's pool until it is committed, rolled back or reaped: Transactions are rolled back after
+ * being idle for too long or when they exceeded their maximum duration. The latter is also passed on to the server as
+ * transaction timeout, so that locks are never held longer than that.
+ * <p>
+ * A transaction can only be used by the principal that opened it and only by one request at a time.
+ *
+ * @author Michael J. Simons
+ */
+@Component
+final class TransactionRegistry implements InitializingBean, DisposableBean {
+
+	private static final Logger LOGGER = Logger.getLogger(TransactionRegistry.class.getName());
+
+	static final String OPEN_TRANSACTIONS_METRIC = "neo4j.http.transactions.open";
+
+	static final String TRANSACTIONS_METRIC = "neo4j.http.transactions";
+
+	/**
+	 * A transaction that has been opened by a principal.
+	 */
+	static final class OpenTransaction {
+
+		private final long id;
+		private final Neo4jPrincipal owner;
+		private final String database;
+		private final ReactiveSession session;
+		private final ReactiveTransaction transaction;
+		private final Instant started;
+		private final AtomicBoolean inUse = new AtomicBoolean();
+		private volatile Instant lastAccess;
+
+		OpenTransaction(long id, Neo4jPrincipal owner, String database, ReactiveSession session, ReactiveTransaction transaction, Instant started) {
+			this.id = id;
+			this.owner = owner;
+			this.database = database;
+			this.session = session;
+			this.transaction = transaction;
+			this.started = started;
+			this.lastAccess = started;
+		}
+
+		long id() {
+			return id;
+		}
+
+		String database() {
+			return database;
+		}
+
+		ReactiveTransaction transaction() {
+			return transaction;
+		}
+	}
+
+	private final ApplicationProperties.TransactionSettings settings;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Clock clock;
+
+	private final AtomicLong ids = new AtomicLong();
+
+	private final Map<Long, OpenTransaction> transactions = new ConcurrentHashMap<>();
+
+	private final Map<String, Integer> transactionsPerPrincipal = new HashMap<>();
+
+	private int reserved;
+
+	private Disposable reaper;
+
+	@Autowired
+	TransactionRegistry(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		this(applicationProperties.transactions(), meterRegistry, Clock.systemUTC());
+	}
+
+	TransactionRegistry(ApplicationProperties.TransactionSettings settings, MeterRegistry meterRegistry, Clock clock) {
+		this.settings = settings;
+		this.meterRegistry = meterRegistry;
+		this.clock = clock;
+
+		Gauge.builder(OPEN_TRANSACTIONS_METRIC, transactions, Map::size)
+			.description("Number of explicit transactions currently open")
+			.register(meterRegistry);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		this.reaper = Schedulers.parallel().schedulePeriodically(this::reap, 1, 1, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void destroy() {
+
+		if (reaper != null) {
+			reaper.dispose();
+		}
+		transactions.values().forEach(this::discard);
+	}
+
+	/**
+	 * Opens a new transaction in a session retrieved from the given supplier, unless one of the limits is reached.
+	 *
+	 * @param principal       The principal opening the transaction
+	 * @param database        The database in which the transaction is opened
+	 * @param sessionSupplier A supplier of new sessions for the given principal and database
+	 * @return The open transaction
+	 */
+	Mono<OpenTransaction> begin(Neo4jPrincipal principal, String database, Mono<ReactiveSession> sessionSupplier) {
+
+		return Mono.defer(() -> {
+			reserve(principal);
+			var registered = new AtomicBoolean();
+			var transactionConfig = TransactionConfig.builder().withTimeout(settings.maxDuration()).build();
+			return sessionSupplier
+				.flatMap(session -> Mono.fromDirect(session.beginTransaction(transactionConfig))
+					.onErrorResume(e -> Mono.fromDirect(session.<Void>close()).then(Mono.error(e)))
+					.map(transaction -> {
+						var openTransaction = new OpenTransaction(ids.incrementAndGet(), principal, database, session, transaction, clock.instant());
+						transactions.put(openTransaction.id(), openTransaction);
+						registered.set(true);
+						return openTransaction;
+					}))
+				.doFinally(signal -> {
+					if (!registered.get()) {
+						unreserve(principal);
+					}
+				});
+		});
+	}
+
+	/**
+	 * Marks a transaction as in use. It must be given back via {@link #release(OpenTransaction)} or finished via
+	 * {@link #commit(OpenTransaction)} or {@link #rollback(OpenTransaction)}.
+	 *
+	 * @param principal The principal that wants to use the transaction, the owner is identified by the name only, as the
+	 *                  token and flags of a principal may differ between requests of the same user
+	 * @param database  The database the principal expects the transaction to be in
+	 * @param id        The id of the transaction
+	 * @return The transaction or an error if it does not exist or is in use
+	 */
+	Mono<OpenTransaction> acquire(Neo4jPrincipal principal, String database, long id) {
+
+		return Mono.fromCallable(() -> {
+			var transaction = transactions.get(id);
+			if (transaction == null || !transaction.owner.username().equals(principal.username()) || !transaction.database.equals(database)) {
+				throw TransactionNotAvailableException.notFound();
+			}
+			if (!transaction.inUse.compareAndSet(false, true)) {
+				throw TransactionNotAvailableException.accessedConcurrently(id);
+			}
+			// The reaper might have won the race
+			if (!transactions.containsKey(id)) {
+				throw TransactionNotAvailableException.notFound();
+			}
+			return transaction;
+		});
+	}
+
+	/**
+	 * Gives a transaction back, so that it can be used by the next request.
+	 *
+	 * @param transaction The transaction to release
+	 * @return The time at which the transaction expires if it is not used again
+	 */
+	Instant release(OpenTransaction transaction) {
+
+		transaction.lastAccess = clock.instant();
+		transaction.inUse.set(false);
+		return expires(transaction);
+	}
+
+	Mono<Void> commit(OpenTransaction transaction) {
+		return finish(transaction, ReactiveTransaction::commit, "committed");
+	}
+
+	Mono<Void> rollback(OpenTransaction transaction) {
+		return finish(transaction, ReactiveTransaction::rollback, "rolled_back");
+	}
+
+	/**
+	 * Rolls back a transaction in the background, used when the outcome is of no interest to anyone.
+	 *
+	 * @param transaction The transaction to roll back
+	 */
+	void discard(OpenTransaction transaction) {
+		finish(transaction, ReactiveTransaction::rollback, "rolled_back")
+			.subscribe(null, e -> LOGGER.log(Level.WARNING, e, () -> "Could not roll back transaction " + transaction.id()));
+	}
+
+	/**
+	 * Rolls back all transactions that are not in use and either have been idle for too long or exceeded their maximum
+	 * duration.
+	 */
+	void reap() {
+
+		var now = clock.instant();
+		transactions.values().stream()
+			.filter(transaction -> !now.isBefore(expires(transaction)))
+			.filter(transaction -> transaction.inUse.compareAndSet(false, true))
+			.forEach(transaction -> finish(transaction, ReactiveTransaction::rollback, "expired")
+				.subscribe(null, e -> LOGGER.log(Level.WARNING, e, () -> "Could not roll back expired transaction " + transaction.id())));
+	}
+
+	private Instant expires(OpenTransaction transaction) {
+
+		var idleExpiry = transaction.lastAccess.plus(settings.idleTimeout());
+		var maxExpiry = transaction.started.plus(settings.maxDuration());
+		return idleExpiry.isBefore(maxExpiry) ? idleExpiry : maxExpiry;
+	}
+
+	private Mono<Void> finish(OpenTransaction transaction, Function<ReactiveTransaction, Publisher<Void>> action, String outcome) {
+
+		return Mono.defer(() -> {
+			if (transactions.remove(transaction.id(), transaction)) {
+				unreserve(transaction.owner);
+				var duration = Duration.between(transaction.started, clock.instant());
+				return Mono.fromDirect(action.apply(transaction.transaction))
+					.onErrorResume(e -> Mono.fromDirect(transaction.session.<Void>close()).then(Mono.error(e)))
+					.then(Mono.fromDirect(transaction.session.<Void>close()))
+					.doOnSuccess(v -> record(duration, outcome))
+					.doOnError(e -> record(duration, "failed"));
+			}
+			return Mono.empty();
+		});
+	}
+
+	private void record(Duration duration, String outcome) {
+
+		Timer.builder(TRANSACTIONS_METRIC)
+			.description("Duration of explicit transactions")
+			.tag("outcome", outcome)
+			.register(meterRegistry)
+			.record(duration);
+	}
+
+	private synchronized void reserve(Neo4jPrincipal principal) {
+
+		if (reserved >= settings.maxOpen()) {
+			throw TransactionNotAvailableException.limitReached("Unable to start new transaction since the limit of %d open transactions is reached.".formatted(settings.maxOpen()));
+		}
+		var openByPrincipal = transactionsPerPrincipal.getOrDefault(principal.username(), 0);
+		if (openByPrincipal >= settings.maxPerPrincipal()) {
+			throw TransactionNotAvailableException.limitReached("Unable to start new transaction since the limit of %d open transactions per user is reached.".formatted(settings.maxPerPrincipal()));
+		}
+		transactionsPerPrincipal.put(principal.username(), openByPrincipal + 1);
+		++reserved;
+	}
+
+	private synchronized void unreserve(Neo4jPrincipal principal) {
+
+		transactionsPerPrincipal.computeIfPresent(principal.username(), (k, v) -> v == 1 ? null : v - 1);
+		--reserved;
+	}
+}
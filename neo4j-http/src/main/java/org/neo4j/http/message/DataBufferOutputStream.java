@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.OutputStream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * An output stream that writes directly into buffers allocated from a {@link DataBufferFactory}. Each call to
+ * {@link #take()} hands out everything written so far without copying it, the next write starts a new buffer. With the
+ * pooled Netty factory used by the server, those buffers come from the arena of the current event loop thread and are
+ * returned to it once they have been written to the network.
+ *
+ * @author Michael J. Simons
+ */
+final class DataBufferOutputStream extends OutputStream {
+
+	/**
+	 * Smallest buffer to be allocated. Jackson flushes in chunks of its internal buffer, so most of the time the first
+	 * write is bigger anyway.
+	 */
+	private static final int MIN_CAPACITY = 256;
+
+	private final DataBufferFactory bufferFactory;
+
+	private DataBuffer current;
+
+	DataBufferOutputStream(DataBufferFactory bufferFactory) {
+		this.bufferFactory = bufferFactory;
+	}
+
+	@Override
+	public void write(int b) {
+		currentBuffer(1).write((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if (len > 0) {
+			currentBuffer(len).write(b, off, len);
+		}
+	}
+
+	/**
+	 * {@return all bytes written since the last call, the caller owns the returned buffer}
+	 */
+	DataBuffer take() {
+
+		var result = current == null ? bufferFactory.allocateBuffer(0) : current;
+		current = null;
+		return result;
+	}
+
+	/**
+	 * Releases the bytes that haven't been taken yet.
+	 */
+	@Override
+	public void close() {
+		if (current != null) {
+			DataBufferUtils.release(current);
+			current = null;
+		}
+	}
+
+	private DataBuffer currentBuffer(int requiredCapacity) {
+		if (current == null) {
+			current = bufferFactory.allocateBuffer(Math.max(MIN_CAPACITY, requiredCapacity));
+		}
+		return current;
+	}
+}
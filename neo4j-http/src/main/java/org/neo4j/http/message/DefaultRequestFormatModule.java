@@ -17,12 +17,13 @@ package org.neo4j.http.message;
 
 import java.io.IOException;
 import java.io.Serial;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -30,24 +31,25 @@ import org.neo4j.driver.Query;
 import org.neo4j.driver.Value;
 import org.neo4j.driver.Values;
 import org.neo4j.http.db.AnnotatedQuery;
-import org.springframework.boot.jackson.JsonObjectDeserializer;
+import org.neo4j.http.db.PersistedQuery;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.ObjectCodec;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
-import com.fasterxml.jackson.databind.node.TextNode;
-import com.fasterxml.jackson.databind.node.ValueNode;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
 /**
  * A module that understands both <a href="https://neo4j.com/docs/http-api/current/actions/query-format/">HTTP Query format</a> and
  * <a href="https://neo4j.com/docs/java-manual/current/cypher-workflow/#java-driver-type-mapping">supported value types</a> for
  * deserializing requests.
+ * <p>
+ * All deserializers work directly on the tokens of the parser and create driver {@link Value values} without creating
+ * an intermediate tree first, so that large parameters, for example lists of rows to be unwound, are only materialized
+ * once.
  *
  * @author Gerrit Meier
  * @author Michael J. Simons
@@ -58,116 +60,360 @@ public final class DefaultRequestFormatModule extends SimpleModule {
 	private static final long serialVersionUID = 6857894267001773659L;
 
 	/**
-	 * Default instance
+	 * Default instance, not able to resolve persisted queries.
 	 */
 	public DefaultRequestFormatModule() {
+		this(id -> Optional.empty());
+	}
+
+	/**
+	 * Creates a module that resolves statements referring to a persisted query by their id.
+	 *
+	 * @param persistedQueries used to look up persisted queries by id
+	 */
+	public DefaultRequestFormatModule(Function<String, Optional<PersistedQuery>> persistedQueries) {
 		this.addDeserializer(Value.class, new ParameterDeserializer());
 		this.addDeserializer(Query.class, new QueryDeserializer());
 
-		this.setMixInAnnotation(AnnotatedQuery.Container.class, AnnotatedQueryContainerMixIn.class);
-		this.addDeserializer(AnnotatedQuery.class, new AnnotatedQueryDeserializer());
+		var annotatedQueryDeserializer = new AnnotatedQueryDeserializer(persistedQueries);
+		this.addDeserializer(AnnotatedQuery.class, annotatedQueryDeserializer);
+		this.addDeserializer(AnnotatedQuery.Container.class, new ContainerDeserializer(annotatedQueryDeserializer));
 	}
 
 	/**
-	 * Not to be extended. It is public only to be registered with GraalVM AoT via RegisterReflectionForBinding.
+	 * All fields of a statement that we understand.
 	 */
-	public static abstract class AnnotatedQueryContainerMixIn {
+	private record Statement(String text, String id, Value parameters, boolean includeStats, AnnotatedQuery.ResultFormat[] resultDataContents, Integer fetchSize) {
+
+		static Statement read(JsonParser parser, DeserializationContext context) throws IOException {
 
-		@JsonCreator
-		AnnotatedQueryContainerMixIn(@JsonProperty("statements") List<AnnotatedQuery> value) {
+			var fields = new StatementFields();
+			for (var token = startObject(parser, context); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+				var fieldName = parser.currentName();
+				parser.nextToken();
+				fields.read(fieldName, parser, context);
+			}
+			return fields.toStatement();
+		}
+
+		Query toQuery() {
+			return new Query(normalizeQuery(text), parameters);
+		}
+
+		static String normalizeQuery(String query) {
+			return Optional.ofNullable(query).map(String::trim).filter(Predicate.not(String::isBlank)).orElseThrow();
+		}
+	}
+
+	/**
+	 * Collects the fields of a statement in whatever order they arrive.
+	 */
+	private static final class StatementFields {
+
+		private String text;
+		private String id;
+		private Value parameters = Values.EmptyMap;
+		private boolean includeStats;
+		private AnnotatedQuery.ResultFormat[] resultDataContents;
+		private Integer fetchSize;
+
+		/**
+		 * Reads the value of the given field, the parser must point to the value.
+		 */
+		void read(String fieldName, JsonParser parser, DeserializationContext context) throws IOException {
+
+			switch (fieldName) {
+				case "statement" -> {
+					text = scalar(parser, context, fieldName).getValueAsString();
+				}
+				case "id" -> {
+					id = scalar(parser, context, fieldName).getValueAsString();
+				}
+				case "parameters" -> {
+					parameters = parser.currentToken() == JsonToken.VALUE_NULL ? Values.EmptyMap : readValue(parser, context);
+				}
+				case "includeStats" -> {
+					includeStats = scalar(parser, context, fieldName).getValueAsBoolean();
+				}
+				case "resultDataContents" -> {
+					resultDataContents = context.readValue(parser, AnnotatedQuery.ResultFormat[].class);
+				}
+				case "fetchSize" -> {
+					fetchSize = readFetchSize(parser, context);
+				}
+				default -> parser.skipChildren();
+			}
+		}
+
+		boolean isEmpty() {
+			return text == null && id == null;
+		}
+
+		Statement toStatement() {
+			return new Statement(text, id, parameters, includeStats, resultDataContents, fetchSize);
 		}
 	}
 
 	/**
 	 * Not done via MixIn so that the query text can be normalized.
 	 */
-	private static final class QueryDeserializer extends JsonObjectDeserializer<Query> {
+	private static final class QueryDeserializer extends StdDeserializer<Query> {
 
-		String normalizeQuery(String query) {
-			return Optional.ofNullable(query).map(String::trim).filter(Predicate.not(String::isBlank)).orElseThrow();
+		@Serial
+		private static final long serialVersionUID = -3227016346338183440L;
+
+		QueryDeserializer() {
+			super(Query.class);
 		}
 
 		@Override
-		protected Query deserializeObject(JsonParser jsonParser, DeserializationContext context, ObjectCodec codec, JsonNode tree) throws IOException {
-
-			var text = normalizeQuery(tree.get("statement").asText());
-			var parameters = tree.has("parameters") ? codec.readValue(codec.treeAsTokens(tree.get("parameters")), Value.class) : Values.EmptyMap;
-			return new Query(text, parameters);
+		public Query deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			return Statement.read(parser, context).toQuery();
 		}
 	}
 
 	/**
 	 * Not possible via a mixin, as statement are on the same level of the parameter map and not individually addressable.
+	 * Statements without a {@literal statement} but with an {@literal id} refer to a persisted query.
 	 */
-	private static class AnnotatedQueryDeserializer extends JsonObjectDeserializer<AnnotatedQuery> {
+	private static class AnnotatedQueryDeserializer extends StdDeserializer<AnnotatedQuery> {
+
+		@Serial
+		private static final long serialVersionUID = 2386393541187402914L;
+
+		private final transient Function<String, Optional<PersistedQuery>> persistedQueries;
+
+		AnnotatedQueryDeserializer(Function<String, Optional<PersistedQuery>> persistedQueries) {
+			super(AnnotatedQuery.class);
+			this.persistedQueries = persistedQueries;
+		}
 
 		@Override
-		protected AnnotatedQuery deserializeObject(JsonParser jsonParser, DeserializationContext context, ObjectCodec codec, JsonNode tree) throws IOException {
+		public AnnotatedQuery deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			return toAnnotatedQuery(Statement.read(parser, context));
+		}
+
+		AnnotatedQuery toAnnotatedQuery(Statement statement) {
 
-			var query = codec.treeToValue(tree, Query.class);
-			var resultDataContents = codec.treeToValue(tree.get("resultDataContents"), AnnotatedQuery.ResultFormat[].class);
-			var includeStats = tree.has("includeStats") && tree.get("includeStats").asBoolean();
-			return new AnnotatedQuery(query, includeStats,
-				resultDataContents == null ? Set.of(AnnotatedQuery.ResultFormat.ROW) : Arrays.stream(resultDataContents).collect(Collectors.collectingAndThen(Collectors.toSet(), Set::copyOf))
+			Query query;
+			PersistedQuery persistedQuery = null;
+			if (statement.text() == null && statement.id() != null) {
+				var id = statement.id();
+				persistedQuery = persistedQueries.apply(id).orElseThrow(() -> new IllegalArgumentException("Unknown persisted query %s".formatted(id)));
+				query = new Query(persistedQuery.statement(), statement.parameters());
+			} else {
+				query = statement.toQuery();
+			}
+			var resultDataContents = statement.resultDataContents();
+			return new AnnotatedQuery(query, statement.includeStats(),
+				resultDataContents == null ? Set.of(AnnotatedQuery.ResultFormat.ROW) : Arrays.stream(resultDataContents).collect(Collectors.collectingAndThen(Collectors.toSet(), Set::copyOf)),
+				persistedQuery,
+				statement.fetchSize()
 			);
 		}
 	}
 
 	/**
-	 * Generic {@link Value} deserializer
+	 * Reads either a list of {@literal statements} or the fields of a single statement on the top level of the object,
+	 * in one pass and in any order. A list of statements takes precedence over the fields of a single statement.
 	 */
-	private static class ParameterDeserializer extends JsonObjectDeserializer<Value> {
+	private static final class ContainerDeserializer extends StdDeserializer<AnnotatedQuery.Container> {
+
+		@Serial
+		private static final long serialVersionUID = -1416424582036520497L;
+
+		private final AnnotatedQueryDeserializer annotatedQueryDeserializer;
+
+		ContainerDeserializer(AnnotatedQueryDeserializer annotatedQueryDeserializer) {
+			super(AnnotatedQuery.Container.class);
+			this.annotatedQueryDeserializer = annotatedQueryDeserializer;
+		}
 
 		@Override
-		protected Value deserializeObject(JsonParser jsonParser, DeserializationContext context, ObjectCodec codec, JsonNode tree) throws IOException {
+		public AnnotatedQuery.Container deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			try {
+				return read(parser, context);
+			} catch (IllegalArgumentException e) {
+				throw JsonMappingException.from(parser, e.getMessage(), e);
+			}
+		}
 
-			if (tree.isValueNode()) {
-				if (tree.isTextual()) {
-					return Values.value(tree.asText());
-				}
-				if (tree.isFloatingPointNumber()) {
-					return Values.value(tree.asDouble());
-				}
-				if (tree.isBoolean()) {
-					return Values.value(tree.asBoolean());
-				}
-				if (tree.isInt()) {
-					return Values.value(tree.asInt());
-				}
-				if (tree.isNumber()) {
-					return Values.value(tree.asLong());
+		private AnnotatedQuery.Container read(JsonParser parser, DeserializationContext context) throws IOException {
+
+			List<AnnotatedQuery> statements = null;
+			var fields = new StatementFields();
+			for (var token = startObject(parser, context); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+				var fieldName = parser.currentName();
+				var valueToken = parser.nextToken();
+				if (!"statements".equals(fieldName)) {
+					fields.read(fieldName, parser, context);
+				} else if (valueToken == JsonToken.START_ARRAY) {
+					statements = new ArrayList<>();
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						statements.add(annotatedQueryDeserializer.deserialize(parser, context));
+					}
+				} else if (valueToken != JsonToken.VALUE_NULL) {
+					context.handleUnexpectedToken(List.class, parser);
 				}
 			}
-			if (tree.isContainerNode()) {
-				if (tree.getNodeType().equals(JsonNodeType.ARRAY)) {
-					return Values.value(codec.readValue(codec.treeAsTokens(tree), new TypeReference<List<Value>>() {
-					}));
+
+			if (statements != null || fields.isEmpty()) {
+				return new AnnotatedQuery.Container(statements);
+			}
+			return new AnnotatedQuery.Container(List.of(annotatedQueryDeserializer.toAnnotatedQuery(fields.toStatement())), true);
+		}
+	}
+
+	/**
+	 * Generic {@link Value} deserializer
+	 */
+	private static class ParameterDeserializer extends StdDeserializer<Value> {
+
+		@Serial
+		private static final long serialVersionUID = 5442101735853525347L;
+
+		ParameterDeserializer() {
+			super(Value.class);
+		}
+
+		@Override
+		public Value deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			return readValue(parser, context);
+		}
+
+		@Override
+		public Value getNullValue(DeserializationContext context) {
+			return Values.NULL;
+		}
+	}
+
+	/**
+	 * Reads the value the parser currently points to, including all nested values.
+	 */
+	private static Value readValue(JsonParser parser, DeserializationContext context) throws IOException {
+
+		return switch (parser.currentToken()) {
+			case VALUE_STRING -> Values.value(parser.getText());
+			case VALUE_NUMBER_FLOAT -> Values.value(parser.getDoubleValue());
+			case VALUE_NUMBER_INT -> switch (parser.getNumberType()) {
+				case INT -> Values.value(parser.getIntValue());
+				case LONG -> Values.value(parser.getLongValue());
+				default -> context.reportInputMismatch(Value.class, "Integer %s does not fit into 64 bits", parser.getText());
+			};
+			case VALUE_TRUE -> Values.value(true);
+			case VALUE_FALSE -> Values.value(false);
+			case VALUE_NULL -> Values.NULL;
+			// Binary formats might provide byte arrays natively
+			case VALUE_EMBEDDED_OBJECT -> Values.value(parser.getBinaryValue());
+			case START_ARRAY -> {
+				var values = new ArrayList<Value>();
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					values.add(readValue(parser, context));
 				}
-				if (tree.getNodeType().equals(JsonNodeType.OBJECT)) {
-					JsonNode customType = tree.get(Fieldnames.CYPHER_TYPE);
-					if (customType != null) {
-						String customTypeName = customType.asText();
-						if (!canConvert(customTypeName)) {
-							var convertibleTypes = Arrays.stream(CypherTypes.values()).filter(ct -> ct.getReader() != null).collect(Collectors.toSet());
-							throw new IllegalArgumentException("Cannot convert %s into a known type. Convertible types are %s".formatted(customTypeName, convertibleTypes));
-						}
-						ValueNode typeValue = tree.get(Fieldnames.CYPHER_VALUE).require();
-						return CONVERTER.apply(customTypeName, typeValue);
-					}
-					return Values.value(codec.readValue(codec.treeAsTokens(tree), new TypeReference<Map<String, Value>>() {
-					}));
+				yield Values.value(values);
+			}
+			case START_OBJECT, FIELD_NAME, END_OBJECT -> readObject(parser, context);
+			default -> throw new IllegalArgumentException("Cannot parse %s as a valid parameter type".formatted(parser.currentToken()));
+		};
+	}
+
+	/**
+	 * Reads an object either into a map or into a value of one of the {@link CypherTypes} if the object has a
+	 * {@link Fieldnames#CYPHER_TYPE} field.
+	 */
+	private static Value readObject(JsonParser parser, DeserializationContext context) throws IOException {
+
+		var values = new LinkedHashMap<String, Value>();
+		String customTypeName = null;
+		String customTypeValue = null;
+		Value binaryCustomTypeValue = null;
+		JsonNode invalidCustomTypeValue = null;
+		for (var token = startObject(parser, context); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+			var fieldName = parser.currentName();
+			var valueToken = parser.nextToken();
+			if (Fieldnames.CYPHER_TYPE.equals(fieldName)) {
+				customTypeName = valueToken.isScalarValue() ? parser.getText() : context.readTree(parser).toString();
+			} else if (Fieldnames.CYPHER_VALUE.equals(fieldName) && valueToken == JsonToken.VALUE_EMBEDDED_OBJECT) {
+				binaryCustomTypeValue = readValue(parser, context);
+				values.put(fieldName, binaryCustomTypeValue);
+			} else if (Fieldnames.CYPHER_VALUE.equals(fieldName) && valueToken != JsonToken.VALUE_STRING) {
+				// Only needed in case this turns out to be a custom type, then it is an error
+				invalidCustomTypeValue = context.readTree(parser);
+				var nodeParser = invalidCustomTypeValue.traverse(parser.getCodec());
+				nodeParser.nextToken();
+				values.put(fieldName, readValue(nodeParser, context));
+			} else {
+				if (Fieldnames.CYPHER_VALUE.equals(fieldName)) {
+					customTypeValue = parser.getText();
 				}
+				values.put(fieldName, readValue(parser, context));
+			}
+		}
+
+		if (customTypeName == null) {
+			return Values.value(values);
+		}
+		if (!canConvert(customTypeName)) {
+			var convertibleTypes = Arrays.stream(CypherTypes.values()).filter(ct -> ct.getReader() != null).collect(Collectors.toSet());
+			throw new IllegalArgumentException("Cannot convert %s into a known type. Convertible types are %s".formatted(customTypeName, convertibleTypes));
+		}
+		if (binaryCustomTypeValue != null) {
+			if (CypherTypes.byNameOrValue(customTypeName) == CypherTypes.ByteArray) {
+				return binaryCustomTypeValue;
 			}
-			throw new IllegalArgumentException("Cannot parse %s as a valid parameter type".formatted(tree));
+			throw new IllegalArgumentException("Value %s (type %s) for type %s has to be String-based.".formatted(binaryCustomTypeValue, JsonNodeType.BINARY, customTypeName));
 		}
+		if (invalidCustomTypeValue != null) {
+			throw new IllegalArgumentException("Value %s (type %s) for type %s has to be String-based.".formatted(invalidCustomTypeValue, invalidCustomTypeValue.getNodeType(), customTypeName));
+		}
+		if (customTypeValue == null) {
+			throw new IllegalArgumentException("Missing %s for type %s".formatted(Fieldnames.CYPHER_VALUE, customTypeName));
+		}
+		return CypherTypes.byNameOrValue(customTypeName).getReader().apply(customTypeValue);
 	}
 
-	private final static BiFunction<String, ValueNode, Value> CONVERTER = (typeName, value) -> {
-		if (value instanceof TextNode textNode) {
-			return CypherTypes.byNameOrValue(typeName).getReader().apply(textNode.asText());
+	/**
+	 * {@return the requested fetch size, rejecting values that are not an {@code int}}
+	 */
+	private static Integer readFetchSize(JsonParser parser, DeserializationContext context) throws IOException {
+
+		if (parser.currentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT) {
+			return context.reportInputMismatch(Integer.class, "Field fetchSize requires an integer, not %s", parser.getText());
 		}
-		throw new IllegalArgumentException("Value %s (type %s) for type %s has to be String-based.".formatted(value, value.getNodeType(), typeName));
-	};
+		return parser.getIntValue();
+	}
+
+	/**
+	 * Makes sure the parser points to a scalar value: Getters such as {@link JsonParser#getValueAsString()} would return
+	 * a default for an object or an array and leave the parser inside of it.
+	 */
+	private static JsonParser scalar(JsonParser parser, DeserializationContext context, String fieldName) throws IOException {
+
+		if (parser.currentToken().isStructStart()) {
+			context.reportInputMismatch(AnnotatedQuery.class, "Field %s requires a scalar value, not %s", fieldName, parser.currentToken());
+		}
+		return parser;
+	}
+
+	/**
+	 * Moves the parser into an object, deserializers might be called on the start of an object or on its first field.
+	 *
+	 * @return The current token after moving the parser into the object
+	 */
+	private static JsonToken startObject(JsonParser parser, DeserializationContext context) throws IOException {
+
+		var token = parser.currentToken();
+		if (token == JsonToken.START_OBJECT) {
+			return parser.nextToken();
+		}
+		if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+			return (JsonToken) context.handleUnexpectedToken(Object.class, parser);
+		}
+		return token;
+	}
 
 	private static boolean canConvert(String type) {
 		try {
@@ -23,17 +23,15 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAmount;
 import java.time.temporal.TemporalUnit;
+import java.util.IdentityHashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Value;
-import org.neo4j.driver.Values;
 import org.neo4j.driver.exceptions.Neo4jException;
-import org.neo4j.driver.exceptions.value.LossyCoercion;
 import org.neo4j.driver.summary.InputPosition;
 import org.neo4j.driver.summary.Notification;
 import org.neo4j.driver.summary.SummaryCounters;
@@ -43,13 +41,14 @@ import org.neo4j.driver.types.Path;
 import org.neo4j.driver.types.Relationship;
 import org.neo4j.driver.types.Type;
 import org.neo4j.driver.types.TypeSystem;
-import org.neo4j.driver.util.Pair;
 import org.neo4j.http.app.Views;
 import org.neo4j.http.db.EagerResult;
 
 import com.fasterxml.jackson.annotation.JsonIncludeProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
@@ -65,15 +64,44 @@ public final class DefaultResponseModule extends SimpleModule {
 	@Serial
 	private static final long serialVersionUID = -6600328341718439212L;
 
-	/**
-	 * Needed for mostly all value serializers.
-	 */
-	private final TypeSystem typeSystem;
+	// Keys and constant values written for many values, quoted and encoded only once
+	private static final SerializableString ROW = new SerializedString("row");
+	private static final SerializableString META = new SerializedString("meta");
+	private static final SerializableString GRAPH = new SerializedString("graph");
+	private static final SerializableString REST = new SerializedString("rest");
+	private static final SerializableString ID = new SerializedString("id");
+	private static final SerializableString TYPE = new SerializedString("type");
+	private static final SerializableString COORDINATES = new SerializedString("coordinates");
+	private static final SerializableString CRS = new SerializedString("crs");
+	private static final SerializableString SRID = new SerializedString("srid");
+	private static final SerializableString NAME = new SerializedString("name");
+	private static final SerializableString PROPERTIES = new SerializedString("properties");
+	private static final SerializableString HREF = new SerializedString("href");
+	private static final SerializableString NODES = new SerializedString("nodes");
+	private static final SerializableString RELATIONSHIPS = new SerializedString("relationships");
+	private static final SerializableString LABELS = new SerializedString("labels");
+	private static final SerializableString START_NODE = new SerializedString("startNode");
+	private static final SerializableString END_NODE = new SerializedString("endNode");
+	private static final SerializableString NODE_IDS = new SerializedString("nodeIds");
+	private static final SerializableString RELATIONSHIP_IDS = new SerializedString("relationshipIds");
+	private static final SerializableString METADATA = new SerializedString("metadata");
+	private static final SerializableString DATA = new SerializedString("data");
+	private static final SerializableString CYPHER_TYPE = new SerializedString(Fieldnames.CYPHER_TYPE);
+	private static final SerializableString CYPHER_VALUE = new SerializedString(Fieldnames.CYPHER_VALUE);
+	private static final SerializableString CYPHER_LABELS = new SerializedString(Fieldnames.LABELS);
+	private static final SerializableString CYPHER_PROPERTIES = new SerializedString(Fieldnames.PROPERTIES);
+	private static final SerializableString NODE_TYPE = new SerializedString("node");
+	private static final SerializableString RELATIONSHIP_TYPE = new SerializedString("relationship");
+	private static final SerializableString CYPHER_TYPE_NODE = new SerializedString(CypherTypes.Node.getValue());
+	private static final SerializableString POINT = new SerializedString("Point");
+	private static final SerializableString LINK = new SerializedString("link");
+	private static final SerializableString OGCWKT = new SerializedString("ogcwkt");
 
 	/**
-	 * A set of type that will be serialized as plain JSON values.
+	 * Dispatch table for all value serializers. The types of the driver are singletons, so they are looked up by
+	 * identity, which does neither allocate nor compute hash codes.
 	 */
-	private final Set<Type> simpleTypes;
+	private final Map<Type, Kind> kinds;
 
 	/**
 	 * New type system delegating to the drivers {@link TypeSystem}.
@@ -82,8 +110,25 @@ public final class DefaultResponseModule extends SimpleModule {
 	 */
 	public DefaultResponseModule(TypeSystem typeSystem) {
 
-		this.typeSystem = typeSystem;
-		this.simpleTypes = Set.of(typeSystem.NULL(), typeSystem.BOOLEAN(), typeSystem.STRING(), typeSystem.INTEGER(), typeSystem.FLOAT());
+		this.kinds = new IdentityHashMap<>();
+		this.kinds.put(typeSystem.NULL(), Kind.NULL);
+		this.kinds.put(typeSystem.BOOLEAN(), Kind.BOOLEAN);
+		this.kinds.put(typeSystem.STRING(), Kind.STRING);
+		this.kinds.put(typeSystem.INTEGER(), Kind.INTEGER);
+		this.kinds.put(typeSystem.FLOAT(), Kind.FLOAT);
+		this.kinds.put(typeSystem.LIST(), Kind.LIST);
+		this.kinds.put(typeSystem.MAP(), Kind.MAP);
+		this.kinds.put(typeSystem.BYTES(), Kind.BYTES);
+		this.kinds.put(typeSystem.DATE(), Kind.DATE);
+		this.kinds.put(typeSystem.TIME(), Kind.TIME);
+		this.kinds.put(typeSystem.LOCAL_TIME(), Kind.LOCAL_TIME);
+		this.kinds.put(typeSystem.DATE_TIME(), Kind.DATE_TIME);
+		this.kinds.put(typeSystem.LOCAL_DATE_TIME(), Kind.LOCAL_DATE_TIME);
+		this.kinds.put(typeSystem.DURATION(), Kind.DURATION);
+		this.kinds.put(typeSystem.POINT(), Kind.POINT);
+		this.kinds.put(typeSystem.NODE(), Kind.NODE);
+		this.kinds.put(typeSystem.RELATIONSHIP(), Kind.RELATIONSHIP);
+		this.kinds.put(typeSystem.PATH(), Kind.PATH);
 
 		this.addSerializer(Record.class, new RecordSerializer());
 		this.addSerializer(Value.class, new ValueSerializer());
@@ -95,8 +140,59 @@ public final class DefaultResponseModule extends SimpleModule {
 		this.setMixInAnnotation(Neo4jException.class, Neo4jExceptionMixIn.class);
 	}
 
-	private boolean hasSimpleType(Value value) {
-		return value == null || simpleTypes.stream().anyMatch(value::hasType);
+	private Kind kindOf(Value value) {
+		return value == null ? Kind.NULL : kinds.getOrDefault(value.type(), Kind.OTHER);
+	}
+
+	/**
+	 * All kinds of values that are rendered differently.
+	 */
+	private enum Kind {
+
+		NULL,
+		BOOLEAN,
+		STRING,
+		INTEGER,
+		FLOAT,
+		LIST,
+		MAP,
+		BYTES(CypherTypes.ByteArray),
+		DATE(CypherTypes.Date),
+		TIME(CypherTypes.Time),
+		LOCAL_TIME(CypherTypes.LocalTime),
+		DATE_TIME(CypherTypes.DateTime),
+		LOCAL_DATE_TIME(CypherTypes.LocalDateTime),
+		DURATION,
+		POINT,
+		NODE,
+		RELATIONSHIP,
+		PATH,
+		OTHER;
+
+		/**
+		 * The type used when rendering this kind as {@code $type} / {@code _value} pair.
+		 */
+		private final CypherTypes typedAs;
+
+		/**
+		 * The encoded name of {@link #typedAs}.
+		 */
+		private final SerializableString typedAsName;
+
+		/**
+		 * The type as rendered in the {@literal meta} array of the legacy format, computed once.
+		 */
+		private final SerializableString metaType;
+
+		Kind() {
+			this(null);
+		}
+
+		Kind(CypherTypes typedAs) {
+			this.typedAs = typedAs;
+			this.typedAsName = typedAs == null ? null : new SerializedString(typedAs.getValue());
+			this.metaType = new SerializedString(name().toLowerCase(Locale.ROOT).replace("_", ""));
+		}
 	}
 
 	/**
@@ -178,7 +274,7 @@ public final class DefaultResponseModule extends SimpleModule {
 		}
 	}
 
-	private static class ResultDataSerializer extends StdSerializer<EagerResult.ResultData> {
+	private final class ResultDataSerializer extends StdSerializer<EagerResult.ResultData> {
 
 		@Serial
 		private static final long serialVersionUID = 8801941034117580880L;
@@ -190,25 +286,124 @@ public final class DefaultResponseModule extends SimpleModule {
 		@Override
 		public void serialize(EagerResult.ResultData value, JsonGenerator gen, SerializerProvider provider) throws IOException {
 
-			if (value.records() == null && value.graph() == null && (value.rest() == null || value.rest().isEmpty())) {
+			var record = value.records();
+			var includeRow = record != null && value.includeRow();
+			var includeRest = record != null && value.includeRest() && record.size() > 0;
+			if (!includeRow && value.graph() == null && !includeRest) {
 				return;
 			}
 
 			gen.writeStartObject();
-			if (value.records() != null) {
+			if (includeRow) {
 				var recordSerializer = provider.findValueSerializer(Record.class);
-				recordSerializer.serialize(value.records(), gen, provider);
+				recordSerializer.serialize(record, gen, provider);
 			}
 			if (value.graph() != null) {
-				var recordSerializer = provider.findValueSerializer(Value.class);
-				gen.writeFieldName("graph");
-				recordSerializer.serialize(Values.value(value.graph()), gen, provider);
+				gen.writeFieldName(GRAPH);
+				writeGraph(value.graph(), gen, provider);
+			}
+			if (includeRest) {
+				gen.writeFieldName(REST);
+				writeRest(record, gen, provider);
+			}
+			gen.writeEndObject();
+		}
+
+		@SuppressWarnings("deprecation")
+		private void writeGraph(EagerResult.Graph graph, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+			gen.writeStartObject();
+			gen.writeFieldName(NODES);
+			gen.writeStartArray();
+			for (Node node : graph.nodes()) {
+				gen.writeStartObject();
+				gen.writeFieldName(ID);
+				gen.writeNumber(node.id());
+				gen.writeFieldName(LABELS);
+				writeLabels(node, gen);
+				gen.writeFieldName(PROPERTIES);
+				writeProperties(node, gen, provider);
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+
+			gen.writeFieldName(RELATIONSHIPS);
+			gen.writeStartArray();
+			for (Relationship relationship : graph.relationships()) {
+				gen.writeStartObject();
+				gen.writeFieldName(ID);
+				gen.writeNumber(relationship.id());
+				gen.writeFieldName(TYPE);
+				gen.writeString(relationship.type());
+				gen.writeFieldName(START_NODE);
+				gen.writeNumber(relationship.startNodeId());
+				gen.writeFieldName(END_NODE);
+				gen.writeNumber(relationship.endNodeId());
+				gen.writeFieldName(PROPERTIES);
+				writeProperties(relationship, gen, provider);
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+
+			if (graph.deduplicated()) {
+				gen.writeFieldName(NODE_IDS);
+				gen.writeArray(graph.nodeIds(), 0, graph.nodeIds().length);
+				gen.writeFieldName(RELATIONSHIP_IDS);
+				gen.writeArray(graph.relationshipIds(), 0, graph.relationshipIds().length);
 			}
+			gen.writeEndObject();
+		}
 
-			if (value.rest() != null && !value.rest().isEmpty()) {
-				gen.writeObjectField("rest", value.rest());
+		@SuppressWarnings("deprecation")
+		private void writeRest(Record record, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+			var valueSerializer = provider.findValueSerializer(Value.class);
+			gen.writeStartArray();
+			for (int i = 0; i < record.size(); ++i) {
+				var column = record.get(i);
+				var kind = kindOf(column);
+				if (kind == Kind.NODE || kind == Kind.RELATIONSHIP) {
+					var entity = column.asEntity();
+					gen.writeStartObject();
+					gen.writeFieldName(METADATA);
+					gen.writeStartObject();
+					gen.writeFieldName(ID);
+					gen.writeNumber(entity.id());
+					if (entity instanceof Node node) {
+						gen.writeFieldName(LABELS);
+						writeLabels(node, gen);
+					} else if (entity instanceof Relationship relationship) {
+						gen.writeFieldName(TYPE);
+						gen.writeString(relationship.type());
+					}
+					gen.writeEndObject();
+					gen.writeFieldName(DATA);
+					writeProperties(entity, gen, provider);
+					gen.writeEndObject();
+				} else {
+					valueSerializer.serialize(column, gen, provider);
+				}
 			}
+			gen.writeEndArray();
+		}
+
+		private static void writeLabels(Node node, JsonGenerator gen) throws IOException {
 
+			gen.writeStartArray();
+			for (String label : node.labels()) {
+				gen.writeString(label);
+			}
+			gen.writeEndArray();
+		}
+
+		private static void writeProperties(Entity entity, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+			var valueSerializer = provider.findValueSerializer(Value.class);
+			gen.writeStartObject();
+			for (String key : entity.keys()) {
+				gen.writeFieldName(key);
+				valueSerializer.serialize(entity.get(key), gen, provider);
+			}
 			gen.writeEndObject();
 		}
 	}
@@ -232,31 +427,43 @@ public final class DefaultResponseModule extends SimpleModule {
 				if (needsObject) {
 					json.writeStartObject();
 				}
-				json.writeArrayFieldStart("row");
-				for (Value column : value.values()) {
-					valueSerializer.serialize(column, json, serializerProvider);
+				json.writeFieldName(ROW);
+				json.writeStartArray();
+				for (int i = 0; i < value.size(); ++i) {
+					valueSerializer.serialize(value.get(i), json, serializerProvider);
 				}
 				json.writeEndArray();
 
-				json.writeArrayFieldStart("meta");
-				for (Value column : value.values()) {
-					if (column.hasType(typeSystem.NODE()) || column.hasType(typeSystem.RELATIONSHIP())) {
-						writeMetaEntity(column.asEntity(), json);
-					} else if (column.hasType(typeSystem.PATH())) {
-						json.writeStartArray();
-						var path = column.asPath();
-						for (Path.Segment element : path) {
-							writeMetaEntity(element.start(), json);
-							writeMetaEntity(element.relationship(), json);
+				json.writeFieldName(META);
+				json.writeStartArray();
+				for (int i = 0; i < value.size(); ++i) {
+					var column = value.get(i);
+					var kind = kindOf(column);
+					switch (kind) {
+						case NODE, RELATIONSHIP -> writeMetaEntity(column.asEntity(), json);
+						case PATH -> {
+							json.writeStartArray();
+							var path = column.asPath();
+							for (Path.Segment element : path) {
+								writeMetaEntity(element.start(), json);
+								writeMetaEntity(element.relationship(), json);
+							}
+							writeMetaEntity(path.end(), json);
+							json.writeEndArray();
+						}
+						case NULL, BOOLEAN, STRING, INTEGER, FLOAT, LIST, MAP -> json.writeNull();
+						case OTHER -> {
+							json.writeStartObject();
+							json.writeFieldName(TYPE);
+							json.writeString(column.type().name().toLowerCase(Locale.ROOT).replace("_", ""));
+							json.writeEndObject();
+						}
+						default -> {
+							json.writeStartObject();
+							json.writeFieldName(TYPE);
+							json.writeString(kind.metaType);
+							json.writeEndObject();
 						}
-						writeMetaEntity(path.end(), json);
-						json.writeEndArray();
-					} else if (hasSimpleType(column) || column.hasType(typeSystem.LIST()) || column.hasType(typeSystem.MAP())) {
-						json.writeNull();
-					} else {
-						json.writeStartObject();
-						json.writeStringField("type", column.type().name().toLowerCase(Locale.ROOT).replace("_", ""));
-						json.writeEndObject();
 					}
 				}
 				json.writeEndArray();
@@ -265,9 +472,15 @@ public final class DefaultResponseModule extends SimpleModule {
 				}
 			} else {
 				json.writeStartObject();
-				for (Pair<String, Value> pair : value.fields()) {
-					json.writeFieldName(pair.key());
-					valueSerializer.serialize(pair.value(), json, serializerProvider);
+				var keys = value.keys();
+				var columns = serializerProvider.getAttribute(EncodedColumns.class) instanceof EncodedColumns encodedColumns && encodedColumns.matches(keys) ? encodedColumns : null;
+				for (int i = 0; i < keys.size(); ++i) {
+					if (columns == null) {
+						json.writeFieldName(keys.get(i));
+					} else {
+						json.writeFieldName(columns.get(i));
+					}
+					valueSerializer.serialize(value.get(i), json, serializerProvider);
 				}
 				json.writeEndObject();
 			}
@@ -276,17 +489,19 @@ public final class DefaultResponseModule extends SimpleModule {
 		@SuppressWarnings("deprecation")
 		private static void writeMetaEntity(Entity column, JsonGenerator json) throws IOException {
 			json.writeStartObject();
-			json.writeNumberField("id", column.id());
+			json.writeFieldName(ID);
+			json.writeNumber(column.id());
 
-			String type;
+			SerializableString type;
 			if (column instanceof Node) {
-				type = "node";
+				type = NODE_TYPE;
 			} else if (column instanceof Relationship) {
-				type = "relationship";
+				type = RELATIONSHIP_TYPE;
 			} else {
 				throw new IllegalArgumentException("Unsupported entity " + column.getClass());
 			}
-			json.writeStringField("type", type);
+			json.writeFieldName(TYPE);
+			json.writeString(type);
 			json.writeEndObject();
 		}
 	}
@@ -311,102 +526,131 @@ public final class DefaultResponseModule extends SimpleModule {
 
 		private final TemporalAmountAdapter temporalAmountAdapter = new TemporalAmountAdapter();
 
-		private final Map<Type, CypherTypes> typeToNames;
-
 		ValueSerializer() {
 			super(Value.class);
-			this.typeToNames = Map.of(
-				typeSystem.BYTES(), CypherTypes.ByteArray,
-				typeSystem.DATE(), CypherTypes.Date,
-				typeSystem.TIME(), CypherTypes.Time,
-				typeSystem.LOCAL_TIME(), CypherTypes.LocalTime,
-				typeSystem.DATE_TIME(), CypherTypes.DateTime,
-				typeSystem.LOCAL_DATE_TIME(), CypherTypes.LocalDateTime
-			);
 		}
 
 		@Override
 		public void serialize(Value value, JsonGenerator json, SerializerProvider serializers) throws IOException {
 
-			if (value.hasType(typeSystem.LIST())) {
-				json.writeStartArray();
-				for (Value element : value.values()) {
-					serialize(element, json, serializers);
+			var kind = kindOf(value);
+			switch (kind) {
+				case NULL -> json.writeNull();
+				case BOOLEAN -> json.writeBoolean(value.asBoolean());
+				case STRING -> json.writeString(value.asString());
+				case INTEGER -> json.writeNumber(value.asLong());
+				case FLOAT -> renderFloatingPointValue(value.asDouble(), json);
+				case LIST -> {
+					json.writeStartArray();
+					for (int i = 0; i < value.size(); ++i) {
+						serialize(value.get(i), json, serializers);
+					}
+					json.writeEndArray();
 				}
-				json.writeEndArray();
-			} else if (value.hasType(typeSystem.MAP()) && !(value.hasType(typeSystem.NODE()) || value.hasType(typeSystem.RELATIONSHIP()))) {
-				json.writeStartObject();
-				for (String key : value.keys()) {
-					json.writeFieldName(key);
-					serialize(value.get(key), json, serializers);
+				case MAP -> {
+					json.writeStartObject();
+					for (String key : value.keys()) {
+						json.writeFieldName(key);
+						serialize(value.get(key), json, serializers);
+					}
+					json.writeEndObject();
 				}
-				json.writeEndObject();
-			} else if (hasSimpleType(value)) {
-				renderSimpleValue(value, json);
-			} else if (serializers.getActiveView() == Views.NEO4J_44_DEFAULT.class) {
-				renderOldFormat(value, json, serializers);
+				default -> {
+					var oldFormat = serializers.getActiveView() == Views.NEO4J_44_DEFAULT.class;
+					if (kind == Kind.BYTES && json.canWriteBinaryNatively()) {
+						renderBinaryValue(value, json, oldFormat);
+					} else if (oldFormat) {
+						renderOldFormat(kind, value, json, serializers);
+					} else {
+						renderNewFormat(kind, value, json, serializers);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the value as float if that is possible without loss, which is checked without going through
+		 * {@link Value#asFloat()} and its exception.
+		 */
+		private static void renderFloatingPointValue(double value, JsonGenerator json) throws IOException {
+
+			var floatValue = (float) value;
+			if (floatValue == value) {
+				json.writeNumber(floatValue);
 			} else {
-				renderNewFormat(value, json, serializers);
+				json.writeNumber(value);
 			}
 		}
 
-		private void renderOldFormat(Value value, JsonGenerator json, SerializerProvider serializers) throws IOException {
-
-			if (value.hasType(typeSystem.DATE())) {
-				json.writeObject(value.asLocalDate());
-			} else if (value.hasType(typeSystem.DATE_TIME())) {
-				json.writeString(value.asZonedDateTime().format(DateTimeFormatter.ISO_ZONED_DATE_TIME));
-			} else if (value.hasType(typeSystem.DURATION())) {
-				json.writeObject(temporalAmountAdapter.apply(value.asIsoDuration()));
-			} else if (value.hasType(typeSystem.LOCAL_DATE_TIME())) {
-				json.writeObject(value.asLocalDateTime());
-			} else if (value.hasType(typeSystem.LOCAL_TIME())) {
-				json.writeObject(value.asLocalTime());
-			} else if (value.hasType(typeSystem.NODE()) || value.hasType(typeSystem.RELATIONSHIP())) {
-				var node = value.asEntity();
-				writeEntityProperties(node, json, serializers);
-			} else if (value.hasType(typeSystem.PATH())) {
-				json.writeStartArray();
-				var path = value.asPath();
-				for (Path.Segment element : path) {
-					writeEntityProperties(element.start(), json, serializers);
-					writeEntityProperties(element.relationship(), json, serializers);
-				}
-				writeEntityProperties(path.end(), json, serializers);
-				json.writeEndArray();
-			} else if (value.hasType(typeSystem.POINT())) {
-				renderPoint(value, json, false);
-			} else if (value.hasType(typeSystem.TIME())) {
-				json.writeObject(value.asOffsetTime());
+		/**
+		 * Binary formats don't need the hex encoding for byte arrays.
+		 */
+		private void renderBinaryValue(Value value, JsonGenerator json, boolean oldFormat) throws IOException {
+
+			if (oldFormat) {
+				json.writeBinary(value.asByteArray());
 			} else {
-				throw new UnsupportedOperationException("Type " + value.type().name() + " is not supported as a column value");
+				json.writeStartObject();
+				json.writeFieldName(CYPHER_TYPE);
+				json.writeString(Kind.BYTES.typedAsName);
+				json.writeFieldName(CYPHER_VALUE);
+				json.writeBinary(value.asByteArray());
+				json.writeEndObject();
 			}
 		}
 
-		private void renderNewFormat(Value value, JsonGenerator json, SerializerProvider serializers) throws IOException {
+		private void renderOldFormat(Kind kind, Value value, JsonGenerator json, SerializerProvider serializers) throws IOException {
+
+			switch (kind) {
+				case DATE -> json.writeObject(value.asLocalDate());
+				case DATE_TIME -> json.writeString(value.asZonedDateTime().format(DateTimeFormatter.ISO_ZONED_DATE_TIME));
+				case DURATION -> json.writeObject(temporalAmountAdapter.apply(value.asIsoDuration()));
+				case LOCAL_DATE_TIME -> json.writeObject(value.asLocalDateTime());
+				case LOCAL_TIME -> json.writeObject(value.asLocalTime());
+				case NODE, RELATIONSHIP -> writeEntityProperties(value.asEntity(), json, serializers);
+				case PATH -> {
+					json.writeStartArray();
+					var path = value.asPath();
+					for (Path.Segment element : path) {
+						writeEntityProperties(element.start(), json, serializers);
+						writeEntityProperties(element.relationship(), json, serializers);
+					}
+					writeEntityProperties(path.end(), json, serializers);
+					json.writeEndArray();
+				}
+				case POINT -> renderPoint(value, json, false);
+				case TIME -> json.writeObject(value.asOffsetTime());
+				default -> throw new UnsupportedOperationException("Type " + value.type().name() + " is not supported as a column value");
+			}
+		}
+
+		private void renderNewFormat(Kind kind, Value value, JsonGenerator json, SerializerProvider serializers) throws IOException {
 
-			if (typeToNames.containsKey(value.type())) {
-				var cypherType = typeToNames.get(value.type());
+			if (kind.typedAs != null) {
 				json.writeStartObject();
-				json.writeStringField(Fieldnames.CYPHER_TYPE, cypherType.getValue());
-				json.writeStringField(Fieldnames.CYPHER_VALUE, cypherType.getWriter().apply(value));
+				json.writeFieldName(CYPHER_TYPE);
+				json.writeString(kind.typedAsName);
+				json.writeFieldName(CYPHER_VALUE);
+				json.writeString(kind.typedAs.getWriter().apply(value));
 				json.writeEndObject();
-			} else if (value.hasType(typeSystem.POINT())) {
+			} else if (kind == Kind.POINT) {
 				renderPoint(value, json, true);
-			} else if (value.hasType(typeSystem.NODE())) {
+			} else if (kind == Kind.NODE) {
 				var node = value.asNode();
 				json.writeStartObject();
-				json.writeStringField(Fieldnames.CYPHER_TYPE, CypherTypes.Node.getValue());
-				json.writeFieldName(Fieldnames.CYPHER_VALUE);
+				json.writeFieldName(CYPHER_TYPE);
+				json.writeString(CYPHER_TYPE_NODE);
+				json.writeFieldName(CYPHER_VALUE);
 				json.writeStartObject();
 
-				json.writeArrayFieldStart(Fieldnames.LABELS);
+				json.writeFieldName(CYPHER_LABELS);
+				json.writeStartArray();
 				for (String label : node.labels()) {
 					json.writeString(label);
 				}
 				json.writeEndArray();
 
-				json.writeFieldName(Fieldnames.PROPERTIES);
+				json.writeFieldName(CYPHER_PROPERTIES);
 				writeEntityProperties(node, json, serializers);
 				json.writeEndObject();
 				json.writeEndObject();
@@ -419,27 +663,36 @@ public final class DefaultResponseModule extends SimpleModule {
 
 			var point = value.asPoint();
 			json.writeStartObject();
-			json.writeStringField(newFormat ? Fieldnames.CYPHER_TYPE : "type", "Point");
+			json.writeFieldName(newFormat ? CYPHER_TYPE : TYPE);
+			json.writeString(POINT);
 			if (newFormat) {
-				json.writeFieldName(Fieldnames.CYPHER_VALUE);
+				json.writeFieldName(CYPHER_VALUE);
 				json.writeStartObject();
 			}
 
-			json.writeArrayFieldStart("coordinates");
+			json.writeFieldName(COORDINATES);
+			json.writeStartArray();
 			json.writeNumber(point.x());
 			json.writeNumber(point.y());
 			if (!Double.isNaN(point.z())) {
 				json.writeNumber(point.z());
 			}
 			json.writeEndArray();
-			json.writeObjectFieldStart("crs");
-			json.writeNumberField("srid", point.srid());
-			json.writeStringField("name", SRID_MAPPING.getOrDefault(point.srid(), "n/a"));
-			json.writeStringField("type", "link");
+			json.writeFieldName(CRS);
+			json.writeStartObject();
+			json.writeFieldName(SRID);
+			json.writeNumber(point.srid());
+			json.writeFieldName(NAME);
+			json.writeString(SRID_MAPPING.getOrDefault(point.srid(), "n/a"));
+			json.writeFieldName(TYPE);
+			json.writeString(LINK);
 			if (FORMAT_MAPPING.containsKey(point.srid())) {
-				json.writeObjectFieldStart("properties");
-				json.writeStringField("href", FORMAT_MAPPING.get(point.srid()).formatted(point.srid()));
-				json.writeStringField("type", "ogcwkt");
+				json.writeFieldName(PROPERTIES);
+				json.writeStartObject();
+				json.writeFieldName(HREF);
+				json.writeString(FORMAT_MAPPING.get(point.srid()).formatted(point.srid()));
+				json.writeFieldName(TYPE);
+				json.writeString(OGCWKT);
 				json.writeEndObject();
 			}
 			json.writeEndObject();
@@ -450,25 +703,6 @@ public final class DefaultResponseModule extends SimpleModule {
 			json.writeEndObject();
 		}
 
-		private void renderSimpleValue(Value value, JsonGenerator json) throws IOException {
-
-			if (value == null || value.isNull()) {
-				json.writeNull();
-			} else if (value.hasType(typeSystem.BOOLEAN())) {
-				json.writeBoolean(value.asBoolean());
-			} else if (value.hasType(typeSystem.STRING())) {
-				json.writeString(value.asString());
-			} else if (value.hasType(typeSystem.INTEGER())) {
-				json.writeNumber(value.asLong());
-			} else if (value.hasType(typeSystem.FLOAT())) {
-				try {
-					json.writeNumber(value.asFloat());
-				} catch (LossyCoercion e) {
-					json.writeNumber(value.asDouble());
-				}
-			}
-		}
-
 		private void writeEntityProperties(Entity node, JsonGenerator json, SerializerProvider serializers) throws IOException {
 
 			json.writeStartObject();
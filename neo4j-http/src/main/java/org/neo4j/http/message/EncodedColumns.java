@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * The column names of one result, encoded once so that they can be written as field names of every record without
+ * being quoted and encoded again. An instance is passed to the {@link DefaultResponseModule} as attribute of the
+ * writer, with this class as key. Records with different columns are written with their plain names.
+ *
+ * @author Michael J. Simons
+ */
+final class EncodedColumns {
+
+	private final List<String> keys;
+
+	private final SerializableString[] names;
+
+	/**
+	 * Encodes the given keys.
+	 *
+	 * @param keys The keys of a record
+	 * @return encoded column names
+	 */
+	static EncodedColumns of(List<String> keys) {
+
+		var names = new SerializableString[keys.size()];
+		for (int i = 0; i < names.length; ++i) {
+			names[i] = new SerializedString(keys.get(i));
+		}
+		return new EncodedColumns(keys, names);
+	}
+
+	private EncodedColumns(List<String> keys, SerializableString[] names) {
+		this.keys = keys;
+		this.names = names;
+	}
+
+	/**
+	 * All records of a result share the same list of keys, so the identity check is usually enough.
+	 *
+	 * @param otherKeys The keys of a record
+	 * @return {@literal true} if these are the encoded names of the given keys
+	 */
+	boolean matches(List<String> otherKeys) {
+		return keys == otherKeys || keys.equals(otherKeys);
+	}
+
+	SerializableString get(int index) {
+		return names[index];
+	}
+}
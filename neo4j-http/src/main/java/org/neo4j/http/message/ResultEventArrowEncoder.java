@@ -0,0 +1,441 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.types.Type;
+import org.neo4j.driver.types.TypeSystem;
+import org.neo4j.http.db.ResultEvent;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Renders the result of a single statement as an <a href="https://arrow.apache.org/docs/format/Columnar.html#ipc-streaming-format">Arrow IPC stream</a>.
+ * Records are collected into record batches of a fixed size, each batch is flushed into its own buffer.
+ * <p>
+ * The schema is derived from the types of the values in the first batch: Values of types that Arrow supports natively
+ * are written into vectors of that type, the Cypher type is added as {@literal neo4j:type} to the metadata of the field.
+ * Columns of other types, columns with mixed types and columns that only contain {@literal null} in the first batch are
+ * written as UTF-8 encoded JSON and marked with {@literal neo4j:encoding=json}. Temporal values outside the range of
+ * their Arrow type are treated like values of other types. A later value that does not fit into the type of its column
+ * fails the response.
+ * <p>
+ * Notifications and statistics are not part of the stream. Errors that happen before the first batch has been written
+ * are surfaced as regular error responses, errors later on abort the stream.
+ *
+ * @author Michael J. Simons
+ */
+public final class ResultEventArrowEncoder implements Encoder<ResultEvent> {
+
+	/**
+	 * Media type of the Arrow IPC streaming format.
+	 */
+	public static final String APPLICATION_ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+
+	/**
+	 * Media type of the Arrow IPC streaming format.
+	 */
+	public static final MediaType APPLICATION_ARROW_STREAM = MediaType.valueOf(APPLICATION_ARROW_STREAM_VALUE);
+
+	private static final List<MimeType> MIME_TYPES = List.of(APPLICATION_ARROW_STREAM);
+
+	private static final String TYPE_METADATA = "neo4j:type";
+
+	private static final String ENCODING_METADATA = "neo4j:encoding";
+
+	private static final TypeSystem TYPE_SYSTEM = TypeSystem.getDefault();
+
+	private static final Map<Type, Column> COLUMNS = Map.of(
+		TYPE_SYSTEM.INTEGER(), Column.INTEGER,
+		TYPE_SYSTEM.FLOAT(), Column.FLOAT,
+		TYPE_SYSTEM.BOOLEAN(), Column.BOOLEAN,
+		TYPE_SYSTEM.STRING(), Column.STRING,
+		TYPE_SYSTEM.BYTES(), Column.BYTE_ARRAY,
+		TYPE_SYSTEM.DATE(), Column.DATE,
+		TYPE_SYSTEM.LOCAL_TIME(), Column.LOCAL_TIME,
+		TYPE_SYSTEM.LOCAL_DATE_TIME(), Column.LOCAL_DATE_TIME,
+		TYPE_SYSTEM.DATE_TIME(), Column.DATE_TIME
+	);
+
+	private final ObjectWriter objectWriter;
+
+	private final int batchSize;
+
+	/**
+	 * @param objectMapper The object mapper that has been configured with all modules for the Neo4j types, used for
+	 *                     columns that are written as JSON
+	 * @param batchSize    The number of records in one record batch
+	 */
+	public ResultEventArrowEncoder(ObjectMapper objectMapper, int batchSize) {
+		this.objectWriter = objectMapper.writer();
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+		return ResultEvent.class.isAssignableFrom(elementType.toClass()) && mimeType != null && MIME_TYPES.stream().anyMatch(m -> m.isCompatibleWith(mimeType));
+	}
+
+	@Override
+	public Flux<DataBuffer> encode(Publisher<? extends ResultEvent> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+		return Flux.using(
+			() -> new BatchWriter(newAllocator(), objectWriter, batchSize, bufferFactory),
+			writer -> Flux.from(inputStream).<DataBuffer>handle((event, sink) -> {
+				var buffer = writer.write(event);
+				if (buffer != null) {
+					sink.next(buffer);
+				}
+			}).concatWith(Mono.fromCallable(writer::finish)),
+			BatchWriter::close
+		).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+	}
+
+	@Override
+	public List<MimeType> getEncodableMimeTypes() {
+		return MIME_TYPES;
+	}
+
+	private static BufferAllocator newAllocator() {
+		try {
+			return RootAllocatorHolder.INSTANCE.newChildAllocator("result", 0, Long.MAX_VALUE);
+		} catch (LinkageError e) {
+			throw new IllegalStateException("Arrow is not available, the JVM must be started with --add-opens=java.base/java.nio=ALL-UNNAMED", e);
+		}
+	}
+
+	/**
+	 * Arrow requires access to {@code java.nio} internals. The root allocator is created on first use, so that the
+	 * application can be started without that access, just without Arrow support.
+	 */
+	private static final class RootAllocatorHolder {
+
+		static final BufferAllocator INSTANCE = new RootAllocator();
+
+		private RootAllocatorHolder() {
+		}
+	}
+
+	/**
+	 * The Arrow representation of a column.
+	 */
+	private enum Column {
+
+		INTEGER(CypherTypes.Integer, new ArrowType.Int(64, true)) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((BigIntVector) vector).setSafe(index, value.asLong());
+			}
+		},
+
+		FLOAT(CypherTypes.Float, new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((Float8Vector) vector).setSafe(index, value.asDouble());
+			}
+		},
+
+		BOOLEAN(CypherTypes.Boolean, ArrowType.Bool.INSTANCE) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((BitVector) vector).setSafe(index, value.asBoolean() ? 1 : 0);
+			}
+		},
+
+		STRING(CypherTypes.String, ArrowType.Utf8.INSTANCE) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((VarCharVector) vector).setSafe(index, value.asString().getBytes(StandardCharsets.UTF_8));
+			}
+		},
+
+		BYTE_ARRAY(CypherTypes.ByteArray, ArrowType.Binary.INSTANCE) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((VarBinaryVector) vector).setSafe(index, value.asByteArray());
+			}
+		},
+
+		DATE(CypherTypes.Date, new ArrowType.Date(DateUnit.DAY)) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((DateDayVector) vector).setSafe(index, (int) value.asLocalDate().toEpochDay());
+			}
+
+			@Override
+			boolean fits(Value value) {
+				var epochDay = value.asLocalDate().toEpochDay();
+				return epochDay >= Integer.MIN_VALUE && epochDay <= Integer.MAX_VALUE;
+			}
+		},
+
+		LOCAL_TIME(CypherTypes.LocalTime, new ArrowType.Time(TimeUnit.NANOSECOND, 64)) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((TimeNanoVector) vector).setSafe(index, value.asLocalTime().toNanoOfDay());
+			}
+		},
+
+		/**
+		 * Timestamps are written in microseconds, which covers about 290000 years around the epoch. Nanoseconds would only
+		 * cover the years 1677 to 2262.
+		 */
+		LOCAL_DATE_TIME(CypherTypes.LocalDateTime, new ArrowType.Timestamp(TimeUnit.MICROSECOND, null)) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((TimeStampMicroVector) vector).setSafe(index, toEpochMicros(value.asLocalDateTime().toInstant(ZoneOffset.UTC)));
+			}
+
+			@Override
+			boolean fits(Value value) {
+				return fitsIntoEpochMicros(value.asLocalDateTime().toInstant(ZoneOffset.UTC));
+			}
+		},
+
+		/**
+		 * Arrow timestamps have one time zone per column, so all values are converted to UTC.
+		 */
+		DATE_TIME(CypherTypes.DateTime, new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC")) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) {
+				((TimeStampMicroTZVector) vector).setSafe(index, toEpochMicros(value.asZonedDateTime().toInstant()));
+			}
+
+			@Override
+			boolean fits(Value value) {
+				return fitsIntoEpochMicros(value.asZonedDateTime().toInstant());
+			}
+		},
+
+		JSON(null, ArrowType.Utf8.INSTANCE) {
+			@Override
+			void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) throws JsonProcessingException {
+				((VarCharVector) vector).setSafe(index, jsonWriter.writeValueAsBytes(value));
+			}
+		};
+
+		private final CypherTypes cypherType;
+
+		private final ArrowType arrowType;
+
+		Column(CypherTypes cypherType, ArrowType arrowType) {
+			this.cypherType = cypherType;
+			this.arrowType = arrowType;
+		}
+
+		abstract void set(FieldVector vector, int index, Value value, ObjectWriter jsonWriter) throws IOException;
+
+		/**
+		 * {@return true if the value can be represented by the Arrow type of this column}
+		 */
+		boolean fits(Value value) {
+			return true;
+		}
+
+		Field toField(String name) {
+			var metadata = cypherType == null ? Map.of(ENCODING_METADATA, "json") : Map.of(TYPE_METADATA, cypherType.getValue());
+			return new Field(name, new FieldType(true, arrowType, null, metadata), null);
+		}
+
+		static Column of(Value value) {
+			var column = COLUMNS.getOrDefault(value.type(), JSON);
+			return column.fits(value) ? column : JSON;
+		}
+
+		private static boolean fitsIntoEpochMicros(Instant instant) {
+			// One second less than possible, so that the fraction of the last second always fits, too
+			return Math.abs(instant.getEpochSecond()) < Long.MAX_VALUE / 1_000_000L;
+		}
+
+		private static long toEpochMicros(Instant instant) {
+			return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000L;
+		}
+	}
+
+	/**
+	 * Stateful writer for exactly one response. Nothing is written before the first batch is complete, so that errors
+	 * happening before can still be turned into a proper response.
+	 */
+	private static final class BatchWriter {
+
+		private final BufferAllocator allocator;
+		private final ObjectWriter objectWriter;
+		private final int batchSize;
+		private final DataBufferOutputStream buffer;
+		private final List<Record> records;
+
+		private List<String> keys;
+		private Column[] columns;
+		private VectorSchemaRoot root;
+		private ArrowStreamWriter streamWriter;
+
+		BatchWriter(BufferAllocator allocator, ObjectWriter objectWriter, int batchSize, DataBufferFactory bufferFactory) {
+			this.allocator = allocator;
+			this.objectWriter = objectWriter;
+			this.batchSize = batchSize;
+			this.buffer = new DataBufferOutputStream(bufferFactory);
+			this.records = new ArrayList<>(batchSize);
+		}
+
+		DataBuffer write(ResultEvent event) {
+
+			if (event instanceof ResultEvent.Header header) {
+				if (keys != null) {
+					throw new IllegalStateException("Only the result of a single statement can be written as Arrow stream");
+				}
+				keys = header.columns();
+			} else if (event instanceof ResultEvent.Data data) {
+				records.add(data.data().records());
+				if (records.size() >= batchSize) {
+					writeBatch();
+					return drain();
+				}
+			} else if (event instanceof ResultEvent.Failure failure) {
+				throw failure.exception();
+			}
+			return null;
+		}
+
+		DataBuffer finish() throws IOException {
+
+			if (root == null) {
+				start();
+			}
+			if (!records.isEmpty()) {
+				writeBatch();
+			}
+			streamWriter.end();
+			return drain();
+		}
+
+		void close() {
+			if (root != null) {
+				root.close();
+			}
+			allocator.close();
+			buffer.close();
+		}
+
+		private void writeBatch() {
+
+			try {
+				if (root == null) {
+					start();
+				}
+				root.allocateNew();
+				var vectors = root.getFieldVectors();
+				for (int row = 0; row < records.size(); row++) {
+					var record = records.get(row);
+					for (int i = 0; i < columns.length; ++i) {
+						var value = record.get(i);
+						var vector = vectors.get(i);
+						if (value.isNull()) {
+							vector.setNull(row);
+						} else if (columns[i] == Column.JSON || Column.of(value) == columns[i]) {
+							columns[i].set(vector, row, value, objectWriter);
+						} else {
+							throw new IllegalStateException("Column %s has been written as %s and cannot contain a value of type %s".formatted(keys.get(i), columns[i], value.type().name()));
+						}
+					}
+				}
+				root.setRowCount(records.size());
+				records.clear();
+				streamWriter.writeBatch();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Derives the schema from the first batch and starts the stream.
+		 */
+		private void start() throws IOException {
+
+			if (keys == null) {
+				keys = records.isEmpty() ? List.of() : records.get(0).keys();
+			}
+			columns = new Column[keys.size()];
+			for (var record : records) {
+				for (int i = 0; i < columns.length; ++i) {
+					var value = record.get(i);
+					if (value.isNull()) {
+						continue;
+					}
+					var column = Column.of(value);
+					columns[i] = columns[i] == null || columns[i] == column ? column : Column.JSON;
+				}
+			}
+			var fields = new ArrayList<Field>(columns.length);
+			for (int i = 0; i < columns.length; ++i) {
+				if (columns[i] == null) {
+					columns[i] = Column.JSON;
+				}
+				fields.add(columns[i].toField(keys.get(i)));
+			}
+			root = VectorSchemaRoot.create(new Schema(fields), allocator);
+			streamWriter = new ArrowStreamWriter(root, new DictionaryProvider.MapDictionaryProvider(), buffer);
+			streamWriter.start();
+		}
+
+		private DataBuffer drain() {
+			return buffer.take();
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.summary.Notification;
+import org.neo4j.http.app.Views;
+import org.neo4j.http.db.ResultEvent;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Renders a stream of {@link ResultEvent result events} into the same JSON document as an eagerly populated
+ * {@link org.neo4j.http.db.ResultContainer} would be rendered into, but without ever holding more than a single record.
+ * Each event is written through the serializers of the given {@link ObjectMapper} (and therefore through the
+ * {@link DefaultResponseModule}) and flushed into its own buffer right away.
+ * <p>
+ * Notifications and errors are collected and written at the end of the document, as they are required to come after
+ * all results. They are usually small. The same applies to the commit URI and the expiry of an explicit transaction.
+ * <p>
+ * The encoder is not tied to JSON: Given an {@link ObjectMapper} that uses a binary format such as Smile, it writes the
+ * same document in that format.
+ *
+ * @author Michael J. Simons
+ */
+public final class ResultEventEncoder implements Encoder<ResultEvent> {
+
+	/**
+	 * Media type of the binary <a href="https://github.com/FasterXML/smile-format-specification">Smile</a> format.
+	 */
+	public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+	/**
+	 * Media type of the binary <a href="https://github.com/FasterXML/smile-format-specification">Smile</a> format.
+	 */
+	public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+	private final ObjectWriter objectWriter;
+
+	private final List<MimeType> mimeTypes;
+
+	/**
+	 * Creates a new encoder for JSON.
+	 *
+	 * @param objectMapper The object mapper that has been configured with all modules for the Neo4j types
+	 */
+	public ResultEventEncoder(ObjectMapper objectMapper) {
+		this(objectMapper, MediaType.APPLICATION_JSON);
+	}
+
+	/**
+	 * Creates a new encoder for the format of the given object mapper.
+	 *
+	 * @param objectMapper The object mapper that has been configured with all modules for the Neo4j types
+	 * @param mimeTypes    The mime types matching the format of the object mapper
+	 */
+	public ResultEventEncoder(ObjectMapper objectMapper, MimeType... mimeTypes) {
+		this.objectWriter = objectMapper.writerWithView(Views.NEO4J_44_DEFAULT.class);
+		this.mimeTypes = List.of(mimeTypes);
+	}
+
+	@Override
+	public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+		return ResultEvent.class.isAssignableFrom(elementType.toClass()) && (mimeType == null || mimeTypes.stream().anyMatch(m -> m.isCompatibleWith(mimeType)));
+	}
+
+	@Override
+	public Flux<DataBuffer> encode(Publisher<? extends ResultEvent> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+		return Flux.using(
+			() -> new ResultWriter(objectWriter, bufferFactory),
+			writer -> Flux.from(inputStream).map(writer::write).concatWith(Mono.fromCallable(writer::finish)),
+			ResultWriter::close
+		).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+	}
+
+	@Override
+	public List<MimeType> getEncodableMimeTypes() {
+		return mimeTypes;
+	}
+
+	/**
+	 * Stateful writer for exactly one response. The opening of the document is deferred until the first event arrives,
+	 * so that errors happening before (for example failed authentication) can still be turned into a proper response.
+	 */
+	private static final class ResultWriter {
+
+		private final ObjectWriter objectWriter;
+		private final DataBufferOutputStream buffer;
+		private final JsonGenerator generator;
+
+		private final List<Notification> notifications = new ArrayList<>();
+		private final List<Neo4jException> errors = new ArrayList<>();
+
+		private ResultEvent.Transaction transaction;
+
+		private boolean started;
+		private boolean inResult;
+
+		ResultWriter(ObjectWriter objectWriter, DataBufferFactory bufferFactory) throws IOException {
+			this.objectWriter = objectWriter;
+			this.buffer = new DataBufferOutputStream(bufferFactory);
+			this.generator = objectWriter.createGenerator(buffer);
+		}
+
+		DataBuffer write(ResultEvent event) {
+
+			try {
+				startIfNecessary();
+				if (event instanceof ResultEvent.Header header) {
+					generator.writeStartObject();
+					generator.writeFieldName("columns");
+					objectWriter.writeValue(generator, header.columns());
+					generator.writeArrayFieldStart("data");
+					inResult = true;
+				} else if (event instanceof ResultEvent.Data data) {
+					objectWriter.writeValue(generator, data.data());
+				} else if (event instanceof ResultEvent.Summary summary) {
+					generator.writeEndArray();
+					if (summary.stats() != null) {
+						generator.writeFieldName("stats");
+						objectWriter.writeValue(generator, summary.stats());
+					}
+					generator.writeEndObject();
+					inResult = false;
+					notifications.addAll(summary.notifications());
+				} else if (event instanceof ResultEvent.Failure failure) {
+					endResultIfNecessary();
+					errors.add(failure.exception());
+				} else if (event instanceof ResultEvent.Transaction openTransaction) {
+					endResultIfNecessary();
+					transaction = openTransaction;
+				}
+				return drain();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		DataBuffer finish() throws IOException {
+
+			startIfNecessary();
+			endResultIfNecessary();
+			generator.writeEndArray();
+			generator.writeFieldName("notifications");
+			objectWriter.writeValue(generator, notifications);
+			generator.writeFieldName("errors");
+			objectWriter.writeValue(generator, errors);
+			if (transaction != null) {
+				generator.writeStringField("commit", "/db/%s/tx/%d/commit".formatted(transaction.database(), transaction.id()));
+				generator.writeObjectFieldStart("transaction");
+				generator.writeStringField("expires", DateTimeFormatter.RFC_1123_DATE_TIME.format(transaction.expires().atOffset(ZoneOffset.UTC)));
+				generator.writeEndObject();
+			}
+			generator.writeEndObject();
+			return drain();
+		}
+
+		void close() {
+			try {
+				generator.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void startIfNecessary() throws IOException {
+			if (!started) {
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("results");
+				started = true;
+			}
+		}
+
+		private void endResultIfNecessary() throws IOException {
+			if (inResult) {
+				generator.writeEndArray();
+				generator.writeEndObject();
+				inResult = false;
+			}
+		}
+
+		private DataBuffer drain() throws IOException {
+			generator.flush();
+			return buffer.take();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.http.app.Views;
+import org.neo4j.http.db.ResultEvent;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import reactor.core.publisher.Flux;
+
+/**
+ * Renders a stream of {@link ResultEvent result events} as newline delimited JSON, one frame per event. Each frame
+ * carries the index of the statement it belongs to and exactly one of {@literal header}, {@literal data},
+ * {@literal summary} or {@literal error}:
+ * <pre>
+ * {"statement":0,"header":{"columns":["n"]}}
+ * {"statement":0,"data":{"row":[1],"meta":[null]}}
+ * {"statement":0,"summary":{"notifications":[]}}
+ * {"statement":1,"error":{"code":"Neo.ClientError.Statement.SyntaxError","message":"…"}}
+ * </pre>
+ * Data that is not preceded by any header, which is the case when a single query is streamed, is written as plain
+ * records without a frame, the same way as it has always been written.
+ *
+ * @author Michael J. Simons
+ */
+public final class ResultEventNdjsonEncoder implements Encoder<ResultEvent> {
+
+	private static final List<MimeType> MIME_TYPES = List.of(MediaType.APPLICATION_NDJSON);
+
+	private static final SerializableString STATEMENT = new SerializedString("statement");
+	private static final SerializableString HEADER = new SerializedString("header");
+	private static final SerializableString COLUMNS = new SerializedString("columns");
+	private static final SerializableString DATA = new SerializedString("data");
+	private static final SerializableString SUMMARY = new SerializedString("summary");
+	private static final SerializableString STATS = new SerializedString("stats");
+	private static final SerializableString NOTIFICATIONS = new SerializedString("notifications");
+	private static final SerializableString ERROR = new SerializedString("error");
+
+	private final ObjectWriter frameWriter;
+
+	private final ObjectWriter recordWriter;
+
+	/**
+	 * @param objectMapper The object mapper that has been configured with all modules for the Neo4j types
+	 */
+	public ResultEventNdjsonEncoder(ObjectMapper objectMapper) {
+		// Frames are separated by new lines only, not by Jackson's default separator for root values
+		this.frameWriter = objectMapper.writerWithView(Views.NEO4J_44_DEFAULT.class).withRootValueSeparator("");
+		this.recordWriter = objectMapper.writer().withRootValueSeparator("");
+	}
+
+	@Override
+	public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+		return ResultEvent.class.isAssignableFrom(elementType.toClass()) && mimeType != null && MIME_TYPES.stream().anyMatch(m -> m.isCompatibleWith(mimeType));
+	}
+
+	@Override
+	public Flux<DataBuffer> encode(Publisher<? extends ResultEvent> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+		return Flux.using(
+			() -> new FrameWriter(frameWriter, recordWriter, bufferFactory),
+			writer -> Flux.from(inputStream).filter(event -> !(event instanceof ResultEvent.Transaction)).map(writer::write),
+			FrameWriter::close
+		).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+	}
+
+	@Override
+	public List<MimeType> getEncodableMimeTypes() {
+		return MIME_TYPES;
+	}
+
+	/**
+	 * Stateful writer for exactly one response, keeping track of the current statement.
+	 */
+	private static final class FrameWriter {
+
+		private final ObjectWriter frameWriter;
+		private final ObjectWriter recordWriter;
+		private final DataBufferOutputStream buffer;
+		private final JsonGenerator generator;
+
+		private int statement;
+		private boolean framed;
+
+		/**
+		 * Column names of the current result, together with a writer passing them on to the record serializer.
+		 */
+		private EncodedColumns columns;
+		private ObjectWriter columnsWriter;
+
+		FrameWriter(ObjectWriter frameWriter, ObjectWriter recordWriter, DataBufferFactory bufferFactory) throws IOException {
+			this.frameWriter = frameWriter;
+			this.recordWriter = recordWriter;
+			this.buffer = new DataBufferOutputStream(bufferFactory);
+			this.generator = frameWriter.createGenerator(buffer);
+		}
+
+		DataBuffer write(ResultEvent event) {
+
+			try {
+				if (event instanceof ResultEvent.Data data && !framed) {
+					var record = data.data().records();
+					if (columns == null || !columns.matches(record.keys())) {
+						columns = EncodedColumns.of(record.keys());
+						columnsWriter = recordWriter.withAttribute(EncodedColumns.class, columns);
+					}
+					columnsWriter.writeValue(generator, record);
+					return drain();
+				}
+
+				framed = true;
+				generator.writeStartObject();
+				generator.writeFieldName(STATEMENT);
+				generator.writeNumber(statement);
+				if (event instanceof ResultEvent.Header header) {
+					generator.writeFieldName(HEADER);
+					generator.writeStartObject();
+					generator.writeFieldName(COLUMNS);
+					frameWriter.writeValue(generator, header.columns());
+					generator.writeEndObject();
+				} else if (event instanceof ResultEvent.Data data) {
+					generator.writeFieldName(DATA);
+					frameWriter.writeValue(generator, data.data());
+				} else if (event instanceof ResultEvent.Summary summary) {
+					generator.writeFieldName(SUMMARY);
+					generator.writeStartObject();
+					if (summary.stats() != null) {
+						generator.writeFieldName(STATS);
+						frameWriter.writeValue(generator, summary.stats());
+					}
+					generator.writeFieldName(NOTIFICATIONS);
+					frameWriter.writeValue(generator, summary.notifications());
+					generator.writeEndObject();
+					++statement;
+				} else if (event instanceof ResultEvent.Failure failure) {
+					generator.writeFieldName(ERROR);
+					frameWriter.writeValue(generator, failure.exception());
+					++statement;
+				}
+				generator.writeEndObject();
+				return drain();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void close() {
+			try {
+				generator.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private DataBuffer drain() throws IOException {
+			generator.writeRaw('\n');
+			generator.flush();
+			return buffer.take();
+		}
+	}
+}
@@ -17,17 +17,30 @@ package org.neo4j.http.app;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.Field;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.neo4j.driver.AuthTokens;
 import org.neo4j.driver.Config;
 import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Logging;
+import org.neo4j.http.message.ResultEventArrowEncoder;
+import org.neo4j.http.message.ResultEventEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -36,9 +49,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.testcontainers.containers.Neo4jContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Testcontainers(disabledWithoutDocker = true)
 class EndpointIT {
@@ -69,6 +87,12 @@ class EndpointIT {
 	@Autowired
 	private TestRestTemplate restTemplate;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@LocalServerPort
+	private int port;
+
 	@Test
 	void shouldFailProper() {
 
@@ -109,4 +133,159 @@ class EndpointIT {
 			});
 		assertThat(exchange.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
+
+	@Test
+	void explicitTransactionsShouldWork() {
+
+		var headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+		var template = this.restTemplate.withBasicAuth("neo4j", neo4j.getAdminPassword());
+		var type = new ParameterizedTypeReference<Map<String, Object>>() {
+		};
+
+		var begin = template.exchange("/db/neo4j/tx", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [{"statement": "CREATE (n:ExplicitTx {name: 'a'}) RETURN n.name"}]}""", headers), type);
+		assertThat(begin.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		var location = begin.getHeaders().getLocation();
+		assertThat(location).isNotNull();
+		assertThat(begin.getBody()).containsEntry("commit", location + "/commit").containsKey("transaction");
+
+		var other = this.restTemplate.withBasicAuth("jake", "verysecret")
+			.exchange(location.toString(), HttpMethod.POST, new HttpEntity<>("{\"statements\": []}", headers), type);
+		assertThat(other.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		var commit = template.exchange(location + "/commit", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [{"statement": "MATCH (n:ExplicitTx) RETURN count(n) AS cnt"}]}""", headers), type);
+		assertThat(commit.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(commit.getBody()).doesNotContainKey("commit").containsEntry("errors", List.of());
+
+		var afterCommit = template.exchange(location + "/commit", HttpMethod.POST, new HttpEntity<>("{\"statements\": []}", headers), type);
+		assertThat(afterCommit.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void singleTransactionShouldRollbackAllStatements() {
+
+		var headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+		var template = this.restTemplate.withBasicAuth("neo4j", neo4j.getAdminPassword());
+		var type = new ParameterizedTypeReference<Map<String, Object>>() {
+		};
+
+		var exchange = template.exchange("/db/neo4j/tx/commit?singleTransaction=true", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [
+				{"statement": "CREATE (n:SingleTx) RETURN n"},
+				{"statement": "UNWIND [1, 0] AS i RETURN 1 / i"}
+			]}""", headers), type);
+		assertThat(exchange.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(exchange.getBody()).extractingByKey("errors").asList().hasSize(1);
+
+		var count = template.exchange("/db/neo4j/tx/commit", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [{"statement": "MATCH (n:SingleTx) RETURN count(n)"}]}""", headers), type);
+		assertThat(count.getBody()).extractingByKey("results").asList().singleElement()
+			.extracting("data").asList().singleElement()
+			.extracting("row").asList().containsExactly(0);
+	}
+
+	@Test
+	void smileShouldWork() throws IOException {
+
+		var smileObjectMapper = new ObjectMapper(new SmileFactory());
+		var headers = new HttpHeaders();
+		headers.setContentType(ResultEventEncoder.APPLICATION_SMILE);
+		headers.setAccept(List.of(ResultEventEncoder.APPLICATION_SMILE));
+		var payload = smileObjectMapper.writeValueAsBytes(Map.of("statements", List.of(
+			Map.of("statement", "RETURN $bytes AS bytes, 1.5 AS n", "parameters", Map.of("bytes", new byte[] {1, 2, 3}))
+		)));
+
+		var exchange = this.restTemplate
+			.withBasicAuth("neo4j", neo4j.getAdminPassword())
+			.exchange("/db/neo4j/tx/commit", HttpMethod.POST, new HttpEntity<>(payload, headers), byte[].class);
+		assertThat(exchange.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(exchange.getHeaders().getContentType()).isEqualTo(ResultEventEncoder.APPLICATION_SMILE);
+
+		var result = smileObjectMapper.readTree(exchange.getBody());
+		assertThat(result.at("/results/0/data/0/row/0").binaryValue()).containsExactly(1, 2, 3);
+		assertThat(result.at("/results/0/data/0/row/1").doubleValue()).isEqualTo(1.5);
+		assertThat(result.at("/errors").isEmpty()).isTrue();
+	}
+
+	@Test
+	void arrowShouldWork() throws IOException {
+
+		var headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(List.of(ResultEventArrowEncoder.APPLICATION_ARROW_STREAM));
+		var template = this.restTemplate.withBasicAuth("neo4j", neo4j.getAdminPassword());
+
+		var exchange = template.exchange("/db/neo4j/tx/commit", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [{"statement": "UNWIND range(1, 5000) AS i RETURN i, 'n' + i AS s"}]}""", headers), byte[].class);
+		assertThat(exchange.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		var rows = 0;
+		try (
+			var allocator = new RootAllocator();
+			var reader = new ArrowStreamReader(new ByteArrayInputStream(exchange.getBody()), allocator)
+		) {
+			var root = reader.getVectorSchemaRoot();
+			assertThat(root.getSchema().getFields()).extracting(Field::getName).containsExactly("i", "s");
+			while (reader.loadNextBatch()) {
+				rows += root.getRowCount();
+			}
+		}
+		assertThat(rows).isEqualTo(5000);
+
+		var twoStatements = template.exchange("/db/neo4j/tx/commit", HttpMethod.POST, new HttpEntity<>(
+			"""
+			{"statements": [{"statement": "RETURN 1"}, {"statement": "RETURN 2"}]}""", headers), byte[].class);
+		assertThat(twoStatements.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		"/db/neo4j/tx/commit|application/x-ndjson|{\"statement\": \"%s\"}",
+		"/db/neo4j/tx/commit?buffered=true|application/json|{\"statements\": [{\"statement\": \"%s\"}]}"
+	})
+	void queriesOfDisconnectedClientsShouldBeCancelled(String uri, String accept, String payload) {
+
+		// Never produces a record, but keeps the database busy for a long time
+		var marker = UUID.randomUUID().toString();
+		var query = "UNWIND range(1, 10000000000) AS i WITH i WHERE i < 0 RETURN i, '%s' AS marker".formatted(marker);
+		var cancelledQueries = meterRegistry.counter("neo4j.http.queries.cancelled").count();
+
+		var received = WebClient.create("http://localhost:" + port)
+			.post()
+			.uri(uri)
+			.headers(headers -> headers.setBasicAuth("neo4j", neo4j.getAdminPassword()))
+			.contentType(MediaType.APPLICATION_JSON)
+			.accept(MediaType.parseMediaType(accept))
+			.bodyValue(payload.formatted(query))
+			.retrieve()
+			.bodyToFlux(String.class)
+			.take(Duration.ofSeconds(2))
+			.collectList()
+			.block();
+		assertThat(received).isEmpty();
+
+		try (
+			var driver = GraphDatabase.driver(neo4j.getBoltUrl(), AuthTokens.basic("neo4j", neo4j.getAdminPassword()), Config.builder().withLogging(Logging.none()).build());
+			var session = driver.session()
+		) {
+			var deadline = Instant.now().plusSeconds(10);
+			long running;
+			do {
+				running = session.run("SHOW TRANSACTIONS YIELD currentQuery WHERE currentQuery CONTAINS $marker RETURN count(*)", Map.of("marker", marker))
+					.single().get(0).asLong();
+			} while (running > 0 && Instant.now().isBefore(deadline));
+			assertThat(running).isZero();
+		}
+		assertThat(meterRegistry.counter("neo4j.http.queries.cancelled").count()).isGreaterThan(cancelledQueries);
+	}
 }
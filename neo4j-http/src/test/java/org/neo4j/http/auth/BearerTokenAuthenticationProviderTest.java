@@ -0,0 +1,220 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthToken;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.exceptions.UnsupportedFeatureException;
+import org.neo4j.http.config.ApplicationProperties;
+import org.neo4j.http.db.Neo4jPrincipal;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @author Michael J. Simons
+ */
+class BearerTokenAuthenticationProviderTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final MutableClock clock = new MutableClock();
+
+	private final Driver driver = mock(Driver.class);
+
+	private final BearerTokenAuthenticationProvider provider = new BearerTokenAuthenticationProvider(driver, new ObjectMapper(),
+		new ApplicationProperties.AuthenticationSettings(Duration.ofMinutes(5), 100L, null, null, null), meterRegistry, clock);
+
+	private final String validToken = jwt("jake", clock.instant().plus(Duration.ofMinutes(2)));
+
+	BearerTokenAuthenticationProviderTest() {
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenAnswer(invocation ->
+			invocation.getArgument(0).equals(AuthTokens.bearer(validToken)));
+	}
+
+	private static String jwt(String subject, Instant expiresAt) {
+
+		var encoder = Base64.getUrlEncoder().withoutPadding();
+		var header = encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8));
+		var payload = encoder.encodeToString("{\"sub\":\"%s\",\"exp\":%d}".formatted(subject, expiresAt.getEpochSecond()).getBytes(StandardCharsets.UTF_8));
+		return header + "." + payload + ".c2lnbmF0dXJl";
+	}
+
+	private Authentication authenticate(String token) {
+		return provider.authenticate(new BearerTokenAuthentication(token)).block();
+	}
+
+	private double count(String outcome) {
+		return meterRegistry.counter(Neo4jAuthenticationProvider.AUTHENTICATION_METRIC, "scheme", "bearer", "outcome", outcome).count();
+	}
+
+	@Test
+	void shouldConvertBearerHeaders() {
+
+		var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").header(HttpHeaders.AUTHORIZATION, "bearer " + validToken));
+		var authentication = provider.authenticationConverter().convert(exchange).block();
+		assertThat(authentication).isNotNull();
+		assertThat(authentication.getCredentials()).isEqualTo(validToken);
+		assertThat(authentication.isAuthenticated()).isFalse();
+
+		exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").header(HttpHeaders.AUTHORIZATION, "Basic amFrZTp4"));
+		assertThat(provider.authenticationConverter().convert(exchange).block()).isNull();
+	}
+
+	@Test
+	void shouldChallengeWithBearer() {
+
+		var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+		provider.authenticationEntryPoint().commence(exchange, new BadCredentialsException("Authentication failed.")).block();
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+		assertThat(exchange.getResponse().getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE)).startsWith("Bearer");
+	}
+
+	@Test
+	void shouldNotTrustTheClaimsOfUnverifiedTokens() {
+
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenThrow(new UnsupportedFeatureException("Not supported"));
+		var forged = jwt("jake", clock.instant().plus(Duration.ofDays(365)));
+
+		var first = authenticate(forged);
+		var second = authenticate(forged);
+
+		assertThat(first.isAuthenticated()).isTrue();
+		var principal = (Neo4jPrincipal) first.getPrincipal();
+		assertThat(principal.username()).isNotEqualTo("jake").startsWith("unverified-bearer:");
+		assertThat(principal.authToken()).isEqualTo(AuthTokens.bearer(forged));
+		assertThat(second.getPrincipal()).isEqualTo(principal);
+		assertThat(((Neo4jPrincipal) authenticate(validToken).getPrincipal()).username()).isNotEqualTo(principal.username());
+		// Not cached
+		verify(driver, times(3)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("unverified")).isEqualTo(3.0);
+	}
+
+	@Test
+	void shouldVerifyOnceAndThenUseTheCache() {
+
+		var first = authenticate(validToken);
+		var second = authenticate(validToken);
+
+		assertThat(first.isAuthenticated()).isTrue();
+		assertThat(first.getPrincipal()).isEqualTo(new Neo4jPrincipal("jake", AuthTokens.bearer(validToken)));
+		assertThat(second.getPrincipal()).isEqualTo(first.getPrincipal());
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("verified")).isEqualTo(1.0);
+		assertThat(count("cached")).isEqualTo(1.0);
+	}
+
+	@Test
+	void shouldForgetTokensWhenTheyExpire() {
+
+		authenticate(validToken);
+		clock.advance(Duration.ofMinutes(2));
+
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate(validToken))
+			.withMessage("Bearer token expired.");
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldVerifyAgainAfterTheTtl() {
+
+		var longLivedToken = jwt("jake", clock.instant().plus(Duration.ofHours(1)));
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenReturn(true);
+
+		authenticate(longLivedToken);
+		clock.advance(Duration.ofMinutes(4));
+		authenticate(longLivedToken);
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+
+		clock.advance(Duration.ofMinutes(1));
+		authenticate(longLivedToken);
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldCacheRejectedTokens() {
+
+		var otherToken = jwt("jake", clock.instant().plus(Duration.ofMinutes(2)));
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenReturn(false);
+
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate(otherToken));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate(otherToken));
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("rejected")).isEqualTo(1.0);
+		assertThat(count("blocked")).isEqualTo(1.0);
+	}
+
+	@Test
+	void shouldRejectMalformedTokensWithoutAskingTheServer() {
+
+		var encoder = Base64.getUrlEncoder().withoutPadding();
+		var withoutSubject = "e30." + encoder.encodeToString("{\"exp\":%d}".formatted(Long.MAX_VALUE / 1000).getBytes(StandardCharsets.UTF_8)) + ".x";
+
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("opaque"));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("a.!.c"));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate(withoutSubject));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate(jwt("jake", clock.instant())));
+		verify(driver, never()).verifyAuthentication(any(AuthToken.class));
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant now = Instant.parse("2022-10-26T07:20:21Z");
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(java.time.ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
@@ -87,6 +87,15 @@ class DefaultAuthenticationProviderIT {
 		assertThat(exchange.getBody()).isEqualTo("index-jake");
 	}
 
+	@Test
+	void shouldRejectWrongPassword() {
+
+		var exchange = this.restTemplate
+			.withBasicAuth("jake", "notsosecret")
+			.exchange("/tests/", HttpMethod.GET, null, String.class);
+		assertThat(exchange.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
 	@Test
 	void shouldFailIfNoAuthProvided() {
 		var exchange = this.restTemplate
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthToken;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.exceptions.AuthenticationException;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.exceptions.UnsupportedFeatureException;
+import org.neo4j.http.config.ApplicationProperties;
+import org.neo4j.http.db.Neo4jPrincipal;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @author Michael J. Simons
+ */
+class DefaultAuthenticationProviderTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final MutableClock clock = new MutableClock();
+
+	private final Driver driver = mock(Driver.class);
+
+	private final DefaultAuthenticationProvider provider = new DefaultAuthenticationProvider(driver,
+		new CredentialsCache(new ApplicationProperties.AuthenticationSettings(Duration.ofMinutes(5), 100L, Duration.ofSeconds(1), Duration.ofSeconds(10), null), clock),
+		meterRegistry);
+
+	DefaultAuthenticationProviderTest() {
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenAnswer(invocation ->
+			invocation.getArgument(0).equals(AuthTokens.basic("jake", "verysecret")));
+	}
+
+	private Authentication authenticate(String username, String password) {
+		return provider.authenticate(new UsernamePasswordAuthenticationToken(username, password)).block();
+	}
+
+	private double count(String outcome) {
+		return meterRegistry.counter(Neo4jAuthenticationProvider.AUTHENTICATION_METRIC, "scheme", "basic", "outcome", outcome).count();
+	}
+
+	@Test
+	void shouldVerifyOnceAndThenUseTheCache() {
+
+		var first = authenticate("jake", "verysecret");
+		var second = authenticate("jake", "verysecret");
+
+		assertThat(first.getPrincipal()).isEqualTo(new Neo4jPrincipal("jake", AuthTokens.basic("jake", "verysecret"), true));
+		assertThat(second.getPrincipal()).isEqualTo(first.getPrincipal());
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("verified")).isEqualTo(1.0);
+		assertThat(count("cached")).isEqualTo(1.0);
+	}
+
+	@Test
+	void shouldVerifyAgainAfterTheTtl() {
+
+		authenticate("jake", "verysecret");
+		clock.advance(Duration.ofMinutes(6));
+		authenticate("jake", "verysecret");
+
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldNotAcceptOtherPasswordsForCachedUsers() {
+
+		authenticate("jake", "verysecret");
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "notsosecret"));
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldNotLockOutVerifiedUsers() {
+
+		assertThat(authenticate("jake", "verysecret")).isNotNull();
+
+		// Someone guessing passwords is backed off
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThat(count("rejected")).isEqualTo(1.0);
+		assertThat(count("blocked")).isEqualTo(1.0);
+
+		// while the user keeps being admitted with the verified password
+		assertThat(authenticate("jake", "verysecret").getPrincipal()).isEqualTo(new Neo4jPrincipal("jake", AuthTokens.basic("jake", "verysecret"), true));
+		assertThat(count("cached")).isEqualTo(1.0);
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThat(count("blocked")).isEqualTo(2.0);
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldNotLockOutUnverifiedUsers() {
+
+		// Someone guessing passwords before the user authenticated the first time
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThat(count("blocked")).isEqualTo(1.0);
+
+		// does not keep the right password from being verified
+		assertThat(authenticate("jake", "verysecret").getPrincipal()).isEqualTo(new Neo4jPrincipal("jake", AuthTokens.basic("jake", "verysecret"), true));
+		assertThat(count("verified")).isEqualTo(1.0);
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldBackOffAfterFailuresOfTheSameCredentials() {
+
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		// Blocked without asking the server
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		verify(driver, times(1)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("rejected")).isEqualTo(1.0);
+		assertThat(count("blocked")).isEqualTo(1.0);
+
+		clock.advance(Duration.ofSeconds(1));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		// The second failure doubles the backoff
+		clock.advance(Duration.ofSeconds(1));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+
+		clock.advance(Duration.ofSeconds(1));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		verify(driver, times(3)).verifyAuthentication(any(AuthToken.class));
+
+		// The same password of another user is not affected
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("elwood", "wrong"));
+		verify(driver, times(4)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	@Test
+	void shouldCapTheBackoff() {
+
+		for (int i = 0; i < 10; ++i) {
+			assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+			clock.advance(Duration.ofSeconds(10));
+		}
+		verify(driver, times(10)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("blocked")).isZero();
+	}
+
+	@Test
+	void shouldTreatAuthenticationExceptionsAsFailures() {
+
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenThrow(new AuthenticationException("Neo.ClientError.Security.Unauthorized", "nope"));
+		assertThatExceptionOfType(BadCredentialsException.class).isThrownBy(() -> authenticate("jake", "wrong"));
+		assertThat(count("rejected")).isEqualTo(1.0);
+	}
+
+	@Test
+	void shouldAcceptUnverifiableCredentials() {
+
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenThrow(new UnsupportedFeatureException("nope"));
+		assertThat(authenticate("jake", "whatever")).isNotNull();
+		assertThat(authenticate("jake", "whatever").getPrincipal()).extracting("impersonable").isEqualTo(false);
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+		assertThat(count("unverified")).isEqualTo(2.0);
+	}
+
+	@Test
+	void shouldNotCacheOtherErrors() {
+
+		when(driver.verifyAuthentication(any(AuthToken.class))).thenThrow(new ServiceUnavailableException("down"));
+		assertThatExceptionOfType(AuthenticationServiceException.class).isThrownBy(() -> authenticate("jake", "verysecret"));
+		assertThatExceptionOfType(AuthenticationServiceException.class).isThrownBy(() -> authenticate("jake", "verysecret"));
+		verify(driver, times(2)).verifyAuthentication(any(AuthToken.class));
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant now = Instant.parse("2022-10-26T07:20:21Z");
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(java.time.ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.ConnectionPoolMetrics;
+import org.neo4j.http.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @author Michael J. Simons
+ */
+class AdmissionControllerTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final ConnectionPoolMetrics pool = mock(ConnectionPoolMetrics.class);
+
+	private AdmissionController admissionController;
+
+	@BeforeEach
+	void createAdmissionController() {
+
+		when(pool.id()).thenReturn("localhost:7687");
+		var settings = new ApplicationProperties.AdmissionSettings(true, 20, 10, 22, Duration.ofMillis(50), 0.5, null);
+		admissionController = new AdmissionController(settings, () -> List.of(pool), 100, meterRegistry);
+	}
+
+	@Test
+	void shouldAdmitUpToTheLimit() {
+
+		assertThat(admissionController.admits(19)).isTrue();
+		assertThat(admissionController.admits(20)).isFalse();
+		assertThat(meterRegistry.get(AdmissionController.LIMIT_METRIC).gauge().value()).isEqualTo(20.0);
+	}
+
+	@Test
+	void shouldIncreaseWhileThePoolIsHealthyAndTheLimitIsUsed() {
+
+		admissionController.admits(9);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(21);
+
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(21);
+
+		admissionController.admits(15);
+		admissionController.adjust();
+		admissionController.admits(15);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(22);
+	}
+
+	@Test
+	void shouldBackOffWhenAcquiringConnectionsTimesOut() {
+
+		when(pool.timedOutToAcquire()).thenReturn(1L);
+		admissionController.admits(19);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(10);
+	}
+
+	@Test
+	void shouldBackOffWhenAcquiringConnectionsTakesTooLong() {
+
+		when(pool.acquired()).thenReturn(10L);
+		when(pool.totalAcquisitionTime()).thenReturn(400L);
+		admissionController.admits(19);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(21);
+
+		// Only the last interval counts
+		when(pool.acquired()).thenReturn(20L);
+		when(pool.totalAcquisitionTime()).thenReturn(1400L);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(10);
+	}
+
+	@Test
+	void shouldBackOffWhenQueriesWaitForAnExhaustedPool() {
+
+		when(pool.inUse()).thenReturn(95);
+		admissionController.admits(19);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(21);
+
+		when(pool.acquiring()).thenReturn(3);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(10);
+		admissionController.adjust();
+		assertThat(admissionController.limit()).isEqualTo(10);
+	}
+
+	@Test
+	void shouldAdmitEverythingWhenDisabled() {
+
+		assertThat(new ApplicationProperties.AdmissionSettings(null, null, null, null, null, null, null).enabled()).isFalse();
+
+		var settings = new ApplicationProperties.AdmissionSettings(false, null, null, null, null, null, null);
+		var disabled = new AdmissionController(settings, () -> List.of(pool), 100, meterRegistry);
+		disabled.afterPropertiesSet();
+		assertThat(disabled.admits(100_000)).isTrue();
+	}
+
+	@Test
+	void shouldAdmitEverythingWithoutMetrics() {
+
+		var registry = new SimpleMeterRegistry();
+		var withoutMetrics = new AdmissionController(new ApplicationProperties.AdmissionSettings(true, null, null, null, null, null, null), null, 100, registry);
+		withoutMetrics.afterPropertiesSet();
+		assertThat(withoutMetrics.admits(100_000)).isTrue();
+		assertThat(registry.find(AdmissionController.LIMIT_METRIC).gauge()).isNull();
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.http.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * @author Michael J. Simons
+ */
+class BulkheadsTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final List<String> granted = new CopyOnWriteArrayList<>();
+
+	private Bulkheads bulkheads(Integer maxConcurrentPerPrincipal, Integer maxQueuedPerPrincipal, Integer maxConcurrentPerDatabase, Integer maxQueuedPerDatabase, Duration maxWait) {
+		return new Bulkheads(new ApplicationProperties.ConcurrencySettings(true, maxConcurrentPerPrincipal, maxQueuedPerPrincipal, maxConcurrentPerDatabase, maxQueuedPerDatabase, maxWait), 100, meterRegistry);
+	}
+
+	private AtomicReference<Bulkheads.Permit> acquire(Bulkheads bulkheads, String principal, String tag) {
+
+		var permit = new AtomicReference<Bulkheads.Permit>();
+		bulkheads.acquire(principal, "neo4j").subscribe(p -> {
+			granted.add(tag);
+			permit.set(p);
+		});
+		return permit;
+	}
+
+	private double gauge(String metric) {
+		return meterRegistry.get(metric).tag("database", "neo4j").gauge().value();
+	}
+
+	@Test
+	void shouldLimitQueriesPerPrincipal() {
+
+		var bulkheads = bulkheads(1, null, null, null, null);
+		var first = acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "alice", "alice2");
+		acquire(bulkheads, "bob", "bob1");
+
+		assertThat(granted).containsExactly("alice1", "bob1");
+		assertThat(gauge(Bulkheads.RUNNING_METRIC)).isEqualTo(2.0);
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isEqualTo(1.0);
+
+		first.get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "bob1", "alice2");
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isZero();
+		assertThat(meterRegistry.get(Bulkheads.WAIT_METRIC).timer().count()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldNotLimitQueriesUnlessEnabled() {
+
+		var bulkheads = new Bulkheads(new ApplicationProperties.ConcurrencySettings(null, 1, 0, 1, 0, null), 1, meterRegistry);
+		IntStream.range(0, 20).forEach(i -> acquire(bulkheads, "alice", "alice" + i));
+
+		assertThat(granted).hasSize(20);
+		assertThat(gauge(Bulkheads.RUNNING_METRIC)).isEqualTo(20.0);
+	}
+
+	@Test
+	void shouldLimitQueriesPerDatabaseToThePoolSizeByDefault() {
+
+		var bulkheads = new Bulkheads(new ApplicationProperties.ConcurrencySettings(true, 10, null, null, null, null), 2, meterRegistry);
+		acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "bob", "bob1");
+		acquire(bulkheads, "carol", "carol1");
+
+		assertThat(granted).containsExactly("alice1", "bob1");
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isEqualTo(1.0);
+	}
+
+	@Test
+	void principalsShouldTakeTurns() {
+
+		var bulkheads = bulkheads(null, null, 1, null, null);
+		var running = acquire(bulkheads, "alice", "alice1");
+		var queued = List.of(
+			acquire(bulkheads, "alice", "alice2"),
+			acquire(bulkheads, "alice", "alice3"),
+			acquire(bulkheads, "bob", "bob1")
+		);
+
+		running.get().releaseNow();
+		queued.get(0).get().releaseNow();
+		queued.get(2).get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "alice2", "bob1", "alice3");
+	}
+
+	@Test
+	void releasingTwiceShouldHaveNoEffect() {
+
+		var bulkheads = bulkheads(1, null, null, null, null);
+		var first = acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "alice", "alice2");
+		acquire(bulkheads, "alice", "alice3");
+
+		first.get().releaseNow();
+		first.get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "alice2");
+	}
+
+	@Test
+	void shouldRejectWhenThePrincipalsQueueIsFull() {
+
+		var bulkheads = bulkheads(1, 1, null, null, null);
+		acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "alice", "alice2");
+
+		StepVerifier.create(bulkheads.acquire("alice", "neo4j"))
+			.expectErrorSatisfies(e -> {
+				assertThat(e).isInstanceOf(ConcurrencyLimitReachedException.class);
+				var exception = (ConcurrencyLimitReachedException) e;
+				assertThat(exception.code()).isEqualTo(ConcurrencyLimitReachedException.PRINCIPAL_LIMIT_REACHED);
+				assertThat(exception.getRetryAfter()).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+			})
+			.verify();
+		assertThat(meterRegistry.get(Bulkheads.REJECTED_METRIC).tag("reason", ConcurrencyLimitReachedException.PRINCIPAL_LIMIT_REACHED).counter().count()).isEqualTo(1.0);
+	}
+
+	@Test
+	void shouldRejectWhenTheDatabasesQueueIsFull() {
+
+		var bulkheads = bulkheads(null, null, 1, 1, null);
+		acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "bob", "bob1");
+
+		StepVerifier.create(bulkheads.acquire("carol", "neo4j"))
+			.expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ConcurrencyLimitReachedException.class)
+				.extracting("code").isEqualTo(ConcurrencyLimitReachedException.DATABASE_LIMIT_REACHED))
+			.verify();
+		// Other databases are not affected
+		StepVerifier.create(bulkheads.acquire("carol", "movies")).expectNextCount(1).verifyComplete();
+	}
+
+	@Test
+	void shouldRejectWhenNotAdmitted() {
+
+		var bulkheads = new Bulkheads(new ApplicationProperties.ConcurrencySettings(true, null, null, 1, null, null), 100, running -> running < 2, meterRegistry);
+		acquire(bulkheads, "alice", "alice1");
+		acquire(bulkheads, "bob", "bob1");
+
+		// Waiting queries don't count
+		StepVerifier.create(bulkheads.acquire("carol", "movies")).expectNextCount(1).verifyComplete();
+		StepVerifier.create(bulkheads.acquire("dave", "movies"))
+			.expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ConcurrencyLimitReachedException.class)
+				.extracting("code").isEqualTo(ConcurrencyLimitReachedException.ADMISSION_LIMIT_REACHED))
+			.verify();
+		assertThat(granted).containsExactly("alice1");
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isEqualTo(1.0);
+	}
+
+	@Test
+	void waitingQueriesShouldOnlyStartWhileAdmitted() {
+
+		var limit = new AtomicInteger(3);
+		var bulkheads = new Bulkheads(new ApplicationProperties.ConcurrencySettings(true, null, null, 2, null, null), 100, running -> running < limit.get(), meterRegistry);
+		var first = acquire(bulkheads, "alice", "alice1");
+		var second = acquire(bulkheads, "alice", "alice2");
+		acquire(bulkheads, "bob", "bob1");
+		limit.set(1);
+
+		first.get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "alice2");
+		second.get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "alice2", "bob1");
+	}
+
+	@Test
+	void shouldRejectAfterWaitingTooLong() {
+
+		var bulkheads = bulkheads(null, null, 1, null, Duration.ofMillis(50));
+		acquire(bulkheads, "alice", "alice1");
+
+		StepVerifier.create(bulkheads.acquire("bob", "neo4j"))
+			.expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ConcurrencyLimitReachedException.class)
+				.extracting("code").isEqualTo(ConcurrencyLimitReachedException.DATABASE_LIMIT_REACHED))
+			.verify(Duration.ofSeconds(5));
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isZero();
+	}
+
+	@Test
+	void cancelledQueriesShouldLeaveTheQueue() {
+
+		var bulkheads = bulkheads(null, null, 1, null, null);
+		var running = acquire(bulkheads, "alice", "alice1");
+		Disposable waiting = bulkheads.acquire("bob", "neo4j").subscribe(p -> granted.add("bob1"));
+		acquire(bulkheads, "carol", "carol1");
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isEqualTo(2.0);
+
+		waiting.dispose();
+		assertThat(gauge(Bulkheads.QUEUED_METRIC)).isEqualTo(1.0);
+		running.get().releaseNow();
+		assertThat(granted).containsExactly("alice1", "carol1");
+	}
+
+	@Test
+	void limitShouldReleaseThePermitWhenTheWorkIsDone() {
+
+		var bulkheads = bulkheads(1, null, null, null, null);
+		var principal = new Neo4jPrincipal("alice", AuthTokens.none());
+
+		StepVerifier.create(bulkheads.limit(principal, "neo4j", Flux.just(1, 2, 3)))
+			.expectNext(1, 2, 3)
+			.verifyComplete();
+		StepVerifier.create(bulkheads.limit(principal, "neo4j", Flux.never()))
+			.thenAwait(Duration.ofMillis(10))
+			.thenCancel()
+			.verify();
+		StepVerifier.create(bulkheads.limit(principal, "neo4j", Flux.error(new IllegalStateException())))
+			.verifyError(IllegalStateException.class);
+		assertThat(meterRegistry.find(Bulkheads.RUNNING_METRIC).gauges()).isEmpty();
+	}
+
+	@Test
+	void shouldForgetIdleDatabases() {
+
+		var bulkheads = bulkheads(null, null, 1, null, null);
+		var running = acquire(bulkheads, "alice", "alice1");
+		var queued = acquire(bulkheads, "alice", "alice2");
+		assertThat(gauge(Bulkheads.RUNNING_METRIC)).isEqualTo(1.0);
+
+		running.get().releaseNow();
+		queued.get().releaseNow();
+		assertThat(meterRegistry.find(Bulkheads.RUNNING_METRIC).gauges()).isEmpty();
+		assertThat(meterRegistry.find(Bulkheads.QUEUED_METRIC).gauges()).isEmpty();
+		assertThat(meterRegistry.get(Bulkheads.WAIT_METRIC).timer().count()).isEqualTo(2);
+
+		// Busy again
+		acquire(bulkheads, "alice", "alice3");
+		assertThat(gauge(Bulkheads.RUNNING_METRIC)).isEqualTo(1.0);
+		assertThat(meterRegistry.get(Bulkheads.WAIT_METRIC).timer().count()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldCapTheNumberOfTaggedDatabases() {
+
+		var bulkheads = bulkheads(null, null, null, null, null);
+		for (int i = 0; i < Bulkheads.MAX_TAGGED_DATABASES + 10; ++i) {
+			StepVerifier.create(bulkheads.acquire("alice", "db" + i).flatMap(Bulkheads.Permit::release)).verifyComplete();
+		}
+		assertThat(meterRegistry.find(Bulkheads.WAIT_METRIC).timers()).hasSize(Bulkheads.MAX_TAGGED_DATABASES);
+	}
+}
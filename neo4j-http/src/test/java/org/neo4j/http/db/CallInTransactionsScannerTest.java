@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author Michael J. Simons
+ */
+class CallInTransactionsScannerTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"""
+		LOAD CSV FROM 'file:///friends.csv' AS line
+		CALL {
+		  WITH line
+		  CREATE (:PERSON {name: line[1], age: toInteger(line[2])})
+		} IN TRANSACTIONS
+		""",
+		"MATCH (n) CALL { WITH n DETACH DELETE n } IN TRANSACTIONS OF 10 ROWS",
+		"match (n) call{with n detach delete n}in transactions",
+		"MATCH (n) CALL /* a comment */ { WITH n SET n.x = '}' } // another one\n IN /* and another */ TRANSACTIONS",
+		"MATCH (n) CALL { WITH n CALL { WITH n RETURN n AS m } SET n.x = {a: 1}.a } IN TRANSACTIONS",
+		"UNWIND range(1, 10) AS i CALL { WITH i CALL { WITH i CREATE (:Foo {i: i}) } IN TRANSACTIONS } RETURN i"
+	})
+	void shouldDetectCallInTransactions(String query) {
+
+		assertThat(CallInTransactionsScanner.containsCallInTransactions(query)).isTrue();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"MATCH (n) RETURN n",
+		"""
+		UNWIND [0, 1, 2] AS x
+		CALL {
+		  WITH x
+		  RETURN x * 10 AS y
+		}
+		RETURN x, y
+		""",
+		"CREATE (a:`USING PERIODIC COMMIT `) RETURN a",
+		"CREATE (a:`CALL {WITH WHATEVER} IN TRANSACTIONS`) RETURN a",
+		"RETURN 'CALL { RETURN 1 } IN TRANSACTIONS'",
+		"RETURN \"CALL { RETURN 1 } IN \\\" TRANSACTIONS\"",
+		"// CALL { RETURN 1 } IN TRANSACTIONS\nRETURN 1",
+		"/* CALL { RETURN 1 } IN TRANSACTIONS */ RETURN 1",
+		"MATCH (n) WITH n.call {.x} IN TRANSACTIONS RETURN 1",
+		"MATCH (n) CALL { WITH n RETURN n AS m } WITH m MATCH (o) WHERE o.x IN transactions RETURN o",
+		"MATCH (n) CALL { WITH n RETURN n AS m } IN [1] RETURN 1",
+		"CALL db.labels() YIELD label RETURN {x: label} IN TRANSACTIONS",
+		"MATCH (n) CALL { WITH n RETURN n AS m } IN",
+		"MATCH (n) CALL { WITH n RETURN 'unterminated",
+		"}}} IN TRANSACTIONS"
+	})
+	void shouldNotDetectOtherQueries(String query) {
+
+		assertThat(CallInTransactionsScanner.containsCallInTransactions(query)).isFalse();
+	}
+}
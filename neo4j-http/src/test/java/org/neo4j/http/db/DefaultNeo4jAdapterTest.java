@@ -0,0 +1,412 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.BookmarkManager;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.TransientException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.reactivestreams.ReactiveResult;
+import org.neo4j.driver.reactivestreams.ReactiveSession;
+import org.neo4j.driver.reactivestreams.ReactiveTransaction;
+import org.neo4j.driver.reactivestreams.ReactiveTransactionCallback;
+import org.neo4j.driver.reactivestreams.ReactiveTransactionContext;
+import org.neo4j.driver.summary.ResultSummary;
+import org.neo4j.http.config.ApplicationProperties;
+import org.neo4j.http.config.JacksonConfig;
+import org.neo4j.http.message.ResultEventEncoder;
+import org.neo4j.http.message.ResultEventNdjsonEncoder;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * @author Michael J. Simons
+ */
+class DefaultNeo4jAdapterTest {
+
+	@ParameterizedTest
+	@CsvSource({
+		"READERS, MANAGED, READERS, MANAGED, READERS, MANAGED",
+		"READERS, MANAGED, WRITERS, MANAGED, WRITERS, MANAGED",
+		"WRITERS, MANAGED, AUTO, MANAGED, WRITERS, MANAGED",
+		"AUTO, MANAGED, READERS, MANAGED, AUTO, MANAGED",
+		"READERS, IMPLICIT, READERS, MANAGED, READERS, IMPLICIT",
+		"WRITERS, MANAGED, READERS, IMPLICIT, WRITERS, IMPLICIT"
+	})
+	void strongestRequirementsShouldWin(
+		QueryEvaluator.Target t1, QueryEvaluator.TransactionMode m1,
+		QueryEvaluator.Target t2, QueryEvaluator.TransactionMode m2,
+		QueryEvaluator.Target expectedTarget, QueryEvaluator.TransactionMode expectedMode
+	) {
+		var r1 = new QueryEvaluator.ExecutionRequirements(t1, m1);
+		var r2 = new QueryEvaluator.ExecutionRequirements(t2, m2);
+		var expected = new QueryEvaluator.ExecutionRequirements(expectedTarget, expectedMode);
+
+		assertThat(DefaultNeo4jAdapter.strongest(r1, r2)).isEqualTo(expected);
+		assertThat(DefaultNeo4jAdapter.strongest(r2, r1)).isEqualTo(expected);
+	}
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final AtomicBoolean sessionClosed = new AtomicBoolean();
+
+	private final AtomicBoolean recordsCancelled = new AtomicBoolean();
+
+	private static boolean awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			return latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Records are buffered on another thread than the one they have been emitted on.
+	 */
+	private boolean awaitBufferedRecords() {
+		var gauge = meterRegistry.get(ResultBuffers.IN_MEMORY_METRIC).gauge();
+		for (int i = 0; i < 1000 && gauge.value() <= 0; ++i) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return gauge.value() > 0;
+	}
+
+	private DefaultNeo4jAdapter adapterReturning(Flux<Record> records) {
+
+		var driver = mock(Driver.class);
+		var session = sessionReturning(records);
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+
+		return adapter(driver, false, TestApplicationProperties.withDefaults());
+	}
+
+	private ReactiveSession sessionReturning(Flux<Record> records) {
+
+		var result = mock(ReactiveResult.class);
+		when(result.keys()).thenReturn(List.of("i"));
+		when(result.records()).thenReturn(records.doOnCancel(() -> recordsCancelled.set(true)));
+		when(result.consume()).thenReturn(Mono.just(mock(ResultSummary.class)));
+
+		var session = mock(ReactiveSession.class);
+		when(session.run(any(Query.class))).thenReturn(Mono.just(result));
+		doReturn(Mono.empty().doOnSubscribe(s -> sessionClosed.set(true))).when(session).close();
+		return session;
+	}
+
+	/**
+	 * {@return a session whose queries fail with a transient error after the first record, transaction functions are
+	 * retried once, like the driver does}
+	 */
+	private static ReactiveSession sessionFailingAfterFirstRecord() {
+
+		var result = mock(ReactiveResult.class);
+		when(result.keys()).thenReturn(List.of("i"));
+		when(result.records()).thenReturn(Flux.just(record(1)).concatWith(Flux.error(new TransientException("Neo.TransientError.Transaction.DeadlockDetected", "Deadlock"))));
+		when(result.consume()).thenReturn(Mono.just(mock(ResultSummary.class)));
+
+		var transaction = mock(ReactiveTransaction.class);
+		when(transaction.run(any(Query.class))).thenReturn(Mono.just(result));
+		doReturn(Mono.empty()).when(transaction).commit();
+		doReturn(Mono.empty()).when(transaction).rollback();
+		var transactionContext = mock(ReactiveTransactionContext.class);
+		when(transactionContext.run(any(Query.class))).thenReturn(Mono.just(result));
+
+		var session = mock(ReactiveSession.class);
+		doReturn(Mono.just(transaction)).when(session).beginTransaction();
+		doReturn(Mono.empty()).when(session).close();
+		Answer<Publisher<Object>> retryingOnce = invocation -> {
+			ReactiveTransactionCallback<Publisher<Object>> callback = invocation.getArgument(0);
+			return Flux.defer(() -> callback.execute(transactionContext)).retry(1);
+		};
+		doAnswer(retryingOnce).when(session).executeRead(any());
+		doAnswer(retryingOnce).when(session).executeWrite(any());
+		return session;
+	}
+
+	private static ObjectMapper objectMapper() {
+
+		var jacksonObjectMapperBuilder = new Jackson2ObjectMapperBuilder();
+		new JacksonConfig().objectMapperBuilderCustomizer(mock(Driver.class)).customize(jacksonObjectMapperBuilder);
+		return jacksonObjectMapperBuilder.build();
+	}
+
+	private DefaultNeo4jAdapter adapter(Driver driver, boolean enterpriseEdition, ApplicationProperties applicationProperties) {
+		return adapter(driver, enterpriseEdition, applicationProperties, QueryEvaluator.TransactionMode.IMPLICIT);
+	}
+
+	private DefaultNeo4jAdapter adapter(Driver driver, boolean enterpriseEdition, ApplicationProperties applicationProperties, QueryEvaluator.TransactionMode transactionMode) {
+
+		var queryEvaluator = mock(QueryEvaluator.class);
+		when(queryEvaluator.isEnterpriseEdition()).thenReturn(Mono.just(enterpriseEdition));
+		when(queryEvaluator.getExecutionRequirements(any(), anyString(), anyString(), any()))
+			.thenReturn(Mono.just(new QueryEvaluator.ExecutionRequirements(QueryEvaluator.Target.READERS, transactionMode)));
+
+		return new DefaultNeo4jAdapter(applicationProperties, queryEvaluator, driver, mock(BookmarkManager.class),
+			new TransactionRegistry(applicationProperties, meterRegistry), new ResultBuffers(applicationProperties, meterRegistry), new FetchSizeAdvisor(applicationProperties), new Bulkheads(applicationProperties.concurrency(), 100, meterRegistry), meterRegistry);
+	}
+
+	private static Record record(long i) {
+		return new InternalRecord(List.of("i"), new Value[] {Values.value(i)});
+	}
+
+	private double counted(String metric) {
+		return meterRegistry.get(metric).counter().count();
+	}
+
+	@Test
+	void cancellingAStreamShouldStopTheQuery() {
+
+		// Hidden, so that the records are prefetched like the ones of the driver and not fused
+		var adapter = adapterReturning(Flux.range(0, Integer.MAX_VALUE).map(DefaultNeo4jAdapterTest::record).hide());
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+
+		StepVerifier.create(adapter.stream(principal, "neo4j", new Query("UNWIND range(1, 1000000000) AS i RETURN i"), null), 10)
+			.expectNextCount(10)
+			.thenCancel()
+			.verify();
+
+		assertThat(recordsCancelled).isTrue();
+		assertThat(sessionClosed).isTrue();
+		assertThat(counted(DefaultNeo4jAdapter.CANCELLED_QUERIES_METRIC)).isEqualTo(1.0);
+		assertThat(counted(DefaultNeo4jAdapter.DISCARDED_RECORDS_METRIC)).isPositive();
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"true, true, true, true",
+		"false, true, true, false",
+		"true, false, true, false",
+		"true, true, false, false"
+	})
+	void shouldImpersonateOnlyVerifiedUsersOnEnterpriseEdition(boolean enterpriseEdition, boolean impersonate, boolean impersonable, boolean expectImpersonation) {
+
+		var driver = mock(Driver.class);
+		var session = sessionReturning(Flux.just(record(1)));
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class))).thenReturn(session);
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+		var applicationProperties = TestApplicationProperties.withAuthentication(new ApplicationProperties.AuthenticationSettings(null, null, null, null, impersonate));
+		var adapter = adapter(driver, enterpriseEdition, applicationProperties);
+		var principal = new Neo4jPrincipal("jake", AuthTokens.basic("jake", "verysecret"), impersonable);
+
+		StepVerifier.create(adapter.stream(principal, "neo4j", new Query("RETURN 1"), null))
+			.expectNextCount(1)
+			.verifyComplete();
+
+		var sessionConfig = ArgumentCaptor.forClass(SessionConfig.class);
+		if (expectImpersonation) {
+			verify(driver).session(eq(ReactiveSession.class), sessionConfig.capture());
+			verify(driver, never()).session(eq(ReactiveSession.class), any(SessionConfig.class), any());
+			assertThat(sessionConfig.getValue().impersonatedUser()).hasValue("jake");
+		} else {
+			verify(driver).session(eq(ReactiveSession.class), sessionConfig.capture(), eq(principal.authToken()));
+			assertThat(sessionConfig.getValue().impersonatedUser()).isEmpty();
+		}
+	}
+
+	@Test
+	void cancellingABufferedRunShouldStopTheQueryAndDiscardTheBuffer() {
+
+		var buffered = new CountDownLatch(100);
+		var adapter = adapterReturning(Flux.range(0, 100).map(DefaultNeo4jAdapterTest::record).concatWith(Flux.never()).doOnNext(record -> buffered.countDown()));
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+		var query = new AnnotatedQuery(new Query("UNWIND range(1, 1000000000) AS i RETURN i"), false, Set.of(AnnotatedQuery.ResultFormat.ROW));
+
+		StepVerifier.create(adapter.run(principal, "neo4j", false, query))
+			.then(() -> assertThat(awaitUninterruptibly(buffered)).isTrue())
+			.then(() -> assertThat(awaitBufferedRecords()).isTrue())
+			.thenCancel()
+			.verify();
+
+		assertThat(recordsCancelled).isTrue();
+		assertThat(sessionClosed).isTrue();
+		assertThat(counted(DefaultNeo4jAdapter.CANCELLED_QUERIES_METRIC)).isEqualTo(1.0);
+		assertThat(counted(DefaultNeo4jAdapter.DISCARDED_RECORDS_METRIC)).isPositive();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void shouldStreamASingleTransactionWithoutRetries(boolean failing) {
+
+		var result = mock(ReactiveResult.class);
+		when(result.keys()).thenReturn(List.of("i"));
+		when(result.records()).thenReturn(Flux.just(record(1)));
+		when(result.consume()).thenReturn(Mono.just(mock(ResultSummary.class)));
+
+		var transaction = mock(ReactiveTransaction.class);
+		when(transaction.run(any(Query.class)))
+			.thenReturn(Mono.just(result))
+			.thenReturn(failing ? Mono.error(new TransientException("Neo.TransientError.Transaction.DeadlockDetected", "Deadlock")) : Mono.just(result));
+		doReturn(Mono.empty()).when(transaction).commit();
+		doReturn(Mono.empty()).when(transaction).rollback();
+
+		var session = mock(ReactiveSession.class);
+		doReturn(Mono.just(transaction)).when(session).beginTransaction();
+		doReturn(Mono.empty()).when(session).close();
+		var driver = mock(Driver.class);
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+
+		var adapter = adapter(driver, false, TestApplicationProperties.withDefaults(), QueryEvaluator.TransactionMode.MANAGED);
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+		var query = new AnnotatedQuery(new Query("MATCH (n) RETURN n"), false, Set.of(AnnotatedQuery.ResultFormat.ROW));
+
+		var events = adapter.streamResults(principal, "neo4j", true, query, query).collectList().block();
+
+		assertThat(events).filteredOn(ResultEvent.Data.class::isInstance).hasSize(failing ? 1 : 2);
+		assertThat(events).filteredOn(ResultEvent.Failure.class::isInstance).hasSize(failing ? 1 : 0);
+		verify(session, never()).executeRead(any());
+		verify(session, never()).executeWrite(any());
+		verify(transaction, failing ? never() : times(1)).commit();
+		verify(transaction, failing ? times(1) : never()).rollback();
+	}
+
+	@Test
+	void shouldNotRetryStatementsWhoseResultsHaveBeenStreamed() throws IOException {
+
+		var driver = mock(Driver.class);
+		var session = sessionFailingAfterFirstRecord();
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+		var adapter = adapter(driver, false, TestApplicationProperties.withDefaults(), QueryEvaluator.TransactionMode.MANAGED);
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+		var query = new AnnotatedQuery(new Query("MATCH (n) RETURN n"), false, Set.of(AnnotatedQuery.ResultFormat.ROW));
+
+		var objectMapper = objectMapper();
+		var json = DataBufferUtils.join(new ResultEventEncoder(objectMapper).encode(adapter.streamResults(principal, "neo4j", false, query),
+				DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_JSON, null))
+			.map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+			.block();
+
+		var response = objectMapper.readTree(json);
+		assertThat(response.get("results")).hasSize(1);
+		assertThat(response.at("/results/0/data")).hasSize(1);
+		assertThat(response.at("/errors/0/code").asText()).isEqualTo("Neo.TransientError.Transaction.DeadlockDetected");
+		verify(session, never()).executeRead(any());
+		verify(session, never()).executeWrite(any());
+	}
+
+	@Test
+	void shouldNotRetryStatementsWhoseFramesHaveBeenStreamed() {
+
+		var driver = mock(Driver.class);
+		var session = sessionFailingAfterFirstRecord();
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+		var adapter = adapter(driver, false, TestApplicationProperties.withDefaults(), QueryEvaluator.TransactionMode.MANAGED);
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+		var query = new AnnotatedQuery(new Query("MATCH (n) RETURN n"), false, Set.of(AnnotatedQuery.ResultFormat.ROW));
+
+		var lines = new ResultEventNdjsonEncoder(objectMapper()).encode(adapter.streamResults(principal, "neo4j", false, query, query),
+				DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_NDJSON, null)
+			.map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+			.collectList()
+			.block();
+
+		assertThat(lines).containsExactly(
+			"{\"statement\":0,\"header\":{\"columns\":[\"i\"]}}\n",
+			"{\"statement\":0,\"data\":{\"row\":[1],\"meta\":[null]}}\n",
+			"{\"statement\":0,\"error\":{\"code\":\"Neo.TransientError.Transaction.DeadlockDetected\",\"message\":\"Deadlock\"}}\n",
+			"{\"statement\":1,\"header\":{\"columns\":[\"i\"]}}\n",
+			"{\"statement\":1,\"data\":{\"row\":[1],\"meta\":[null]}}\n",
+			"{\"statement\":1,\"error\":{\"code\":\"Neo.TransientError.Transaction.DeadlockDetected\",\"message\":\"Deadlock\"}}\n"
+		);
+
+		StepVerifier.create(adapter.stream(principal, "neo4j", new Query("MATCH (n) RETURN n"), null))
+			.expectNextCount(1)
+			.verifyError(TransientException.class);
+		verify(session, never()).executeRead(any());
+		verify(session, never()).executeWrite(any());
+	}
+
+	@Test
+	void shouldStreamPersistedQueriesWithTheirRequirements() {
+
+		var result = mock(ReactiveResult.class);
+		when(result.keys()).thenReturn(List.of("i"));
+		when(result.records()).thenReturn(Flux.just(record(1)));
+		when(result.consume()).thenReturn(Mono.just(mock(ResultSummary.class)));
+
+		var transaction = mock(ReactiveTransaction.class);
+		when(transaction.run(any(Query.class))).thenReturn(Mono.just(result));
+		doReturn(Mono.empty()).when(transaction).commit();
+
+		var session = mock(ReactiveSession.class);
+		doReturn(Mono.just(transaction)).when(session).beginTransaction();
+		doReturn(Mono.empty()).when(session).close();
+		var driver = mock(Driver.class);
+		when(driver.session(eq(ReactiveSession.class), any(SessionConfig.class), any())).thenReturn(session);
+
+		// The query would be run in an implicit transaction if it was evaluated again
+		var adapter = adapter(driver, false, TestApplicationProperties.withDefaults(), QueryEvaluator.TransactionMode.IMPLICIT);
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.none());
+		var statement = "MATCH (n) RETURN n";
+		var persistedQuery = new PersistedQuery("findAll", "neo4j", "neo4j", statement, QueryFingerprint.of(statement),
+			new QueryEvaluator.ExecutionRequirements(QueryEvaluator.Target.WRITERS, QueryEvaluator.TransactionMode.MANAGED));
+		var query = new AnnotatedQuery(new Query(statement), false, Set.of(AnnotatedQuery.ResultFormat.ROW), persistedQuery, null);
+
+		StepVerifier.create(adapter.stream(principal, "neo4j", query))
+			.expectNextCount(1)
+			.verifyComplete();
+
+		verify(session, never()).run(any(Query.class));
+		verify(transaction).commit();
+	}
+}
@@ -30,6 +30,7 @@ import org.neo4j.http.db.QueryEvaluator.TransactionMode;
 import org.testcontainers.containers.Neo4jContainer;
 import org.testcontainers.containers.Neo4jLabsPlugin;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.test.StepVerifier;
 
 /**
@@ -73,7 +74,7 @@ class DefaultQueryEvaluatorIT {
 	void shouldDetectUpdatingOperators(String query) {
 
 		var evaluator = new DefaultQueryEvaluator(driver);
-		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j", AuthTokens.basic("neo4j", neo4j.getAdminPassword())), query)
+		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j", AuthTokens.basic("neo4j", neo4j.getAdminPassword())), "neo4j", query, QueryFingerprint.of(query))
 			.map(QueryEvaluator.ExecutionRequirements::target)
 			.as(StepVerifier::create)
 			.expectNext(Target.WRITERS)
@@ -88,7 +89,7 @@ class DefaultQueryEvaluatorIT {
 	void shouldDetectNonUpdatingOperators(String query) {
 
 		var evaluator = new DefaultQueryEvaluator(driver);
-		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), query)
+		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), "neo4j", query, QueryFingerprint.of(query))
 			.map(QueryEvaluator.ExecutionRequirements::target)
 			.as(StepVerifier::create)
 			.expectNext(Target.READERS)
@@ -100,12 +101,24 @@ class DefaultQueryEvaluatorIT {
 
 		var evaluator = new DefaultQueryEvaluator(driver);
 		var principal = new Neo4jPrincipal("foo",AuthTokens.basic("foo", "incorrectPassword"));
-		evaluator.getExecutionRequirements(principal, "MATCH (n) RETURN n")
+		evaluator.getExecutionRequirements(principal, "neo4j", "MATCH (n) RETURN n", QueryFingerprint.of("MATCH (n) RETURN n"))
 				.as(StepVerifier::create)
 					.expectErrorMessage("The client is unauthorized due to authentication failure.")
 						.verify();
 	}
 
+	@Test
+	void shouldIgnorePrincipalWhenShared() {
+
+		var evaluator = new DefaultQueryEvaluator(driver, new SimpleMeterRegistry(), true);
+		var principal = new Neo4jPrincipal("foo", AuthTokens.basic("foo", "incorrectPassword"));
+		evaluator.getExecutionRequirements(principal, "neo4j", "MATCH (n) RETURN n", QueryFingerprint.of("MATCH (n) RETURN n"))
+			.map(QueryEvaluator.ExecutionRequirements::target)
+			.as(StepVerifier::create)
+			.expectNext(Target.READERS)
+			.verifyComplete();
+	}
+
 	@ParameterizedTest
 	@ValueSource(strings = {
 		"""
@@ -119,7 +132,7 @@ class DefaultQueryEvaluatorIT {
 	void shouldDetectImplicitTransactionNeeds(String query) {
 
 		var evaluator = new DefaultQueryEvaluator(driver);
-		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), query)
+		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), "neo4j", query, QueryFingerprint.of(query))
 			.map(QueryEvaluator.ExecutionRequirements::transactionMode)
 			.as(StepVerifier::create)
 			.expectNext(TransactionMode.IMPLICIT)
@@ -142,7 +155,7 @@ class DefaultQueryEvaluatorIT {
 	void shouldDetectManagedTransactionNeeds(String query) {
 
 		var evaluator = new DefaultQueryEvaluator(driver);
-		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), query)
+		evaluator.getExecutionRequirements(new Neo4jPrincipal("neo4j",AuthTokens.basic("neo4j", neo4j.getAdminPassword())), "neo4j", query, QueryFingerprint.of(query))
 			.map(QueryEvaluator.ExecutionRequirements::transactionMode)
 			.as(StepVerifier::create)
 			.expectNext(TransactionMode.MANAGED)
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalPath;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.http.app.Views;
+import org.neo4j.http.config.JacksonConfig;
+import org.neo4j.http.db.AnnotatedQuery.ResultFormat;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author Michael J. Simons
+ */
+class EagerResultTest {
+
+	private final ObjectWriter objectWriter;
+
+	EagerResultTest() {
+
+		var jacksonObjectMapperBuilder = new Jackson2ObjectMapperBuilder();
+		new JacksonConfig().objectMapperBuilderCustomizer(mock(Driver.class)).customize(jacksonObjectMapperBuilder);
+		this.objectWriter = jacksonObjectMapperBuilder.build().writerWithView(Views.NEO4J_44_DEFAULT.class);
+	}
+
+	private static Record knows(long start, long end) {
+
+		var hub = new InternalNode(start, List.of("Hub"), Map.of());
+		var other = new InternalNode(end, List.of("Person"), Map.of("name", Values.value("P" + end)));
+		var relationship = new InternalRelationship(end, start, end, "KNOWS");
+		return new InternalRecord(List.of("p"), new Value[] {new InternalPath(hub, relationship, other).asValue()});
+	}
+
+	@Test
+	void shouldSendEachEntityOnlyOnce() throws JsonProcessingException {
+
+		var shaper = EagerResult.shaper(Set.of(ResultFormat.DEDUPLICATED_GRAPH, ResultFormat.GRAPH));
+		var first = objectWriter.writeValueAsString(shaper.apply(knows(0, 1)));
+		var second = objectWriter.writeValueAsString(shaper.apply(knows(0, 2)));
+		var third = objectWriter.writeValueAsString(shaper.apply(knows(0, 1)));
+
+		assertThat(first)
+			.contains("\"nodes\":[{")
+			.contains("\"id\":0")
+			.contains("\"name\":\"P1\"")
+			.contains("\"relationships\":[{")
+			.doesNotContain("\"row\"");
+		assertThat(second)
+			.doesNotContain("\"Hub\"")
+			.contains("\"name\":\"P2\"")
+			.contains("\"relationshipIds\":[2]");
+		assertThat(third)
+			.contains("\"nodes\":[]")
+			.contains("\"relationships\":[]")
+			.contains("\"relationshipIds\":[1]");
+		assertThat(third.replaceAll(".*\"nodeIds\":\\[([^]]*)].*", "$1").split(","))
+			.containsExactlyInAnyOrder("0", "1");
+	}
+
+	@Test
+	void regularGraphShouldContainAllEntitiesOfEachRow() throws JsonProcessingException {
+
+		var shaper = EagerResult.shaper(Set.of(ResultFormat.ROW, ResultFormat.GRAPH));
+		shaper.apply(knows(0, 1));
+		var second = objectWriter.writeValueAsString(shaper.apply(knows(0, 1)));
+
+		assertThat(second)
+			.contains("\"row\":[")
+			.contains("\"Hub\"")
+			.contains("\"name\":\"P1\"")
+			.doesNotContain("nodeIds");
+	}
+
+	@Test
+	void shouldRenderAllFormatsFromTheRecord() throws JsonProcessingException {
+
+		var node = new InternalNode(1, List.of("Person"), Map.of("name", Values.value("P1")));
+		var relationship = new InternalRelationship(2, 1, 1, "KNOWS");
+		var record = new InternalRecord(List.of("n", "r", "x"), new Value[] {node.asValue(), relationship.asValue(), Values.value(42)});
+
+		var resultData = EagerResult.shaper(Set.of(ResultFormat.ROW, ResultFormat.GRAPH, ResultFormat.REST)).apply(record);
+		assertThat(objectWriter.writeValueAsString(resultData)).isEqualTo("{" +
+			"\"row\":[{\"name\":\"P1\"},{},42]," +
+			"\"meta\":[{\"id\":1,\"type\":\"node\"},{\"id\":2,\"type\":\"relationship\"},null]," +
+			"\"graph\":{" +
+			"\"nodes\":[{\"id\":1,\"labels\":[\"Person\"],\"properties\":{\"name\":\"P1\"}}]," +
+			"\"relationships\":[{\"id\":2,\"type\":\"KNOWS\",\"startNode\":1,\"endNode\":1,\"properties\":{}}]}," +
+			"\"rest\":[" +
+			"{\"metadata\":{\"id\":1,\"labels\":[\"Person\"]},\"data\":{\"name\":\"P1\"}}," +
+			"{\"metadata\":{\"id\":2,\"type\":\"KNOWS\"},\"data\":{}}," +
+			"42]" +
+			"}");
+	}
+
+	@Test
+	void shouldRejectPathsInRestFormat() {
+
+		var shaper = EagerResult.shaper(Set.of(ResultFormat.REST));
+		var record = knows(0, 1);
+		assertThatExceptionOfType(UnsupportedOperationException.class)
+			.isThrownBy(() -> shaper.apply(record))
+			.withMessage("Paths are not supported with REST shape");
+	}
+}
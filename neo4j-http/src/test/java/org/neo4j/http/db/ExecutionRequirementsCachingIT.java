@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.neo4j.driver.AuthToken;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Logging;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.reactivestreams.ReactiveSession;
+import org.neo4j.http.config.ApplicationProperties;
+import org.neo4j.http.config.CachingConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.testcontainers.containers.Neo4jContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Makes sure the cache in front of the evaluator is actually used and that concurrent requests for the same query
+ * don't hammer the database.
+ *
+ * @author Michael J. Simons
+ */
+@SpringJUnitConfig
+@Testcontainers(disabledWithoutDocker = true)
+class ExecutionRequirementsCachingIT {
+
+	static final String DEFAULT_NEO4J_IMAGE = System.getProperty("neo4j-http.default-neo4j-image");
+
+	@SuppressWarnings("resource")
+	private static final Neo4jContainer<?> neo4j = new Neo4jContainer<>(DEFAULT_NEO4J_IMAGE)
+		.withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+		.withReuse(true);
+
+	private static Driver realDriver;
+
+	@AfterAll
+	static void closeDriver() {
+
+		realDriver.closeAsync();
+	}
+
+	@Test
+	void shouldRunOnlyOneExplainForConcurrentIdenticalQueries(@Autowired QueryEvaluator evaluator, @Autowired Driver driver) {
+
+		clearInvocations(driver);
+
+		var principal = new Neo4jPrincipal("neo4j", AuthTokens.basic("neo4j", neo4j.getAdminPassword()));
+		var query = "MATCH (n:ShouldRunOnlyOneExplain) RETURN n";
+		var requirements = Flux.range(0, 500)
+			.flatMap(i -> Mono.defer(() -> evaluator.getExecutionRequirements(principal, "neo4j", query, QueryFingerprint.of(query))).subscribeOn(Schedulers.boundedElastic()), 500)
+			.collectList()
+			.block();
+
+		assertThat(requirements)
+			.hasSize(500)
+			.containsOnly(new QueryEvaluator.ExecutionRequirements(QueryEvaluator.Target.READERS, QueryEvaluator.TransactionMode.MANAGED));
+		verify(driver, times(1)).session(eq(ReactiveSession.class), any(SessionConfig.class), any(AuthToken.class));
+	}
+
+	@Configuration
+	@EnableConfigurationProperties(ApplicationProperties.class)
+	@Import(CachingConfig.class)
+	static class Config {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+
+		@Bean
+		Driver driver() {
+
+			neo4j.start();
+			realDriver = GraphDatabase.driver(neo4j.getBoltUrl(), AuthTokens.basic("neo4j", neo4j.getAdminPassword()), org.neo4j.driver.Config.builder().withLogging(Logging.none()).build());
+			return Mockito.mock(Driver.class, AdditionalAnswers.delegatesTo(realDriver));
+		}
+
+		@Bean
+		QueryEvaluator queryEvaluator(Driver driver) {
+			return new DefaultQueryEvaluator(driver);
+		}
+	}
+}
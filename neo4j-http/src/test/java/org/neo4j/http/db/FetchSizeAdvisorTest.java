@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @author Michael J. Simons
+ */
+class FetchSizeAdvisorTest {
+
+	private static final QueryFingerprint FINGERPRINT = QueryFingerprint.of("MATCH (n) RETURN n.name");
+
+	private static FetchSizeAdvisor advisor(Boolean enabled, DataSize maxBatchSize) {
+		return new FetchSizeAdvisor(2000, new ApplicationProperties.AdaptiveFetchSizeSettings(enabled, null, null, maxBatchSize, null));
+	}
+
+	private static void execute(FetchSizeAdvisor advisor, int numberOfRecords, String value) {
+
+		var observation = advisor.observe(FINGERPRINT);
+		var record = (Record) new InternalRecord(List.of("n.name"), new Value[] {Values.value(value)});
+		IntStream.range(0, numberOfRecords).forEach(i -> observation.record(record));
+		observation.complete();
+	}
+
+	@Test
+	void shouldUseDefaultForUnknownQueries() {
+
+		var advisor = advisor(null, null);
+		assertThat(advisor.fetchSize(FINGERPRINT, null)).isEqualTo(2000);
+	}
+
+	@Test
+	void smallResultsShouldFitIntoOneBatch() {
+
+		var advisor = advisor(null, null);
+		execute(advisor, 1, "x");
+		assertThat(advisor.fetchSize(FINGERPRINT, null)).isEqualTo(10);
+
+		execute(advisor, 100, "x");
+		execute(advisor, 100, "x");
+		var fetchSize = advisor.fetchSize(FINGERPRINT, null);
+		assertThat(fetchSize).isGreaterThanOrEqualTo((int) advisor.estimate(FINGERPRINT).records()).isLessThan(100);
+	}
+
+	@Test
+	void largeResultsShouldBeBoundedBySizeOfABatch() {
+
+		var advisor = advisor(null, DataSize.ofKilobytes(64));
+		var value = "x".repeat(1000);
+		execute(advisor, 1_000_000, value);
+
+		var fetchSize = advisor.fetchSize(FINGERPRINT, null);
+		assertThat(advisor.estimate(FINGERPRINT).recordBytes()).isGreaterThan(1000);
+		assertThat(fetchSize).isLessThan(64).isGreaterThanOrEqualTo(10);
+
+		advisor = advisor(null, null);
+		execute(advisor, 1_000_000, "x");
+		assertThat(advisor.fetchSize(FINGERPRINT, null)).isEqualTo(100_000);
+	}
+
+	@Test
+	void requestedFetchSizeShouldBeBoundedLikeLearnedOnes() {
+
+		var advisor = advisor(null, null);
+		assertThat(advisor.fetchSize(FINGERPRINT, 5000)).isEqualTo(5000);
+		execute(advisor, 1, "x");
+		assertThat(advisor.fetchSize(FINGERPRINT, 5000)).isEqualTo(5000);
+		assertThat(advisor.fetchSize(FINGERPRINT, 1_000_000)).isEqualTo(100_000);
+		assertThat(advisor.fetchSize(FINGERPRINT, 0)).isEqualTo(10);
+		assertThat(advisor.fetchSize(FINGERPRINT, -1)).isEqualTo(10);
+
+		advisor = advisor(null, DataSize.ofKilobytes(64));
+		execute(advisor, 1_000, "x".repeat(1000));
+		assertThat(advisor.fetchSize(FINGERPRINT, 5000)).isLessThan(64).isGreaterThanOrEqualTo(10);
+	}
+
+	@Test
+	void shouldNotLearnWhenDisabled() {
+
+		var advisor = advisor(false, null);
+		execute(advisor, 1, "x");
+		assertThat(advisor.estimate(FINGERPRINT)).isNull();
+		assertThat(advisor.fetchSize(FINGERPRINT, null)).isEqualTo(2000);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.http.config.ApplicationProperties;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * @author Michael J. Simons
+ */
+class FilePersistedQueryRegistryTest {
+
+	private static final QueryEvaluator.ExecutionRequirements WRITE_REQUIREMENTS = new QueryEvaluator.ExecutionRequirements(QueryEvaluator.Target.WRITERS, QueryEvaluator.TransactionMode.MANAGED);
+
+	private final Neo4jPrincipal principal = new Neo4jPrincipal("neo4j", AuthTokens.basic("neo4j", "secret"));
+
+	private static QueryEvaluator queryEvaluator() {
+
+		var queryEvaluator = mock(QueryEvaluator.class);
+		when(queryEvaluator.getExecutionRequirements(any(), anyString(), anyString(), any())).thenReturn(Mono.just(WRITE_REQUIREMENTS));
+		return queryEvaluator;
+	}
+
+	private static ApplicationProperties properties(Path file) {
+		return TestApplicationProperties.withPersistedQueries(file);
+	}
+
+	@Test
+	void shouldRestoreQueriesFromFile(@TempDir Path dir) {
+
+		var file = dir.resolve("queries.jsonl");
+		var queryEvaluator = queryEvaluator();
+		var registry = new FilePersistedQueryRegistry(queryEvaluator, properties(file));
+
+		registry.register(principal, "movies", "createMovie", " CREATE (m:Movie {title: $title}) ")
+			.as(StepVerifier::create)
+			.assertNext(query -> {
+				assertThat(query.id()).isEqualTo("createMovie");
+				assertThat(query.statement()).isEqualTo("CREATE (m:Movie {title: $title})");
+				assertThat(query.requirements()).isEqualTo(WRITE_REQUIREMENTS);
+			})
+			.verifyComplete();
+
+		var restored = new FilePersistedQueryRegistry(queryEvaluator, properties(file)).find("createMovie");
+		assertThat(restored).hasValueSatisfying(query -> {
+			assertThat(query.owner()).isEqualTo("neo4j");
+			assertThat(query.database()).isEqualTo("movies");
+			assertThat(query.statement()).isEqualTo("CREATE (m:Movie {title: $title})");
+			assertThat(query.fingerprint()).isEqualTo(QueryFingerprint.of(query.statement()));
+			assertThat(query.requirements()).isEqualTo(WRITE_REQUIREMENTS);
+		});
+		verify(queryEvaluator, times(1)).getExecutionRequirements(eq(principal), eq("movies"), anyString(), any());
+	}
+
+	@Test
+	void shouldDeriveIdAndBeIdempotent() {
+
+		var queryEvaluator = queryEvaluator();
+		var registry = new FilePersistedQueryRegistry(queryEvaluator, properties(null));
+
+		var first = registry.register(principal, "neo4j", null, "MATCH (n) RETURN n").block();
+		var second = registry.register(principal, "neo4j", " ", "MATCH (n) RETURN n").block();
+		var otherDatabase = registry.register(principal, "movies", null, "MATCH (n) RETURN n").block();
+
+		assertThat(first).isNotNull().isSameAs(second);
+		assertThat(first.id()).hasSize(64);
+		assertThat(otherDatabase).isNotNull();
+		assertThat(otherDatabase.id()).isNotEqualTo(first.id());
+		verify(queryEvaluator, times(2)).getExecutionRequirements(any(), anyString(), anyString(), any());
+	}
+
+	@Test
+	void shouldNotOverwriteExistingQueries() {
+
+		var registry = new FilePersistedQueryRegistry(queryEvaluator(), properties(null));
+		registry.register(principal, "neo4j", "q", "MATCH (n) RETURN n").block();
+
+		registry.register(principal, "neo4j", "q", "MATCH (n) DETACH DELETE n")
+			.as(StepVerifier::create)
+			.verifyError(DuplicatePersistedQueryException.class);
+		assertThat(registry.find("q")).map(PersistedQuery::statement).hasValue("MATCH (n) RETURN n");
+	}
+
+	@Test
+	void shouldNotLetOtherPrincipalsTakeOverIds() {
+
+		var registry = new FilePersistedQueryRegistry(queryEvaluator(), properties(null));
+		var bob = new Neo4jPrincipal("bob", AuthTokens.basic("bob", "secret"));
+		var query = registry.register(principal, "neo4j", "q", "MATCH (n) RETURN n").block();
+		assertThat(query).isNotNull().extracting(PersistedQuery::owner).isEqualTo("neo4j");
+
+		registry.register(bob, "neo4j", "q", "MATCH (n) RETURN n")
+			.as(StepVerifier::create)
+			.verifyError(DuplicatePersistedQueryException.class);
+		assertThat(registry.find("q")).map(PersistedQuery::owner).hasValue("neo4j");
+
+		var derived = registry.register(principal, "neo4j", null, "MATCH (n) RETURN n").block();
+		var derivedByBob = registry.register(bob, "neo4j", null, "MATCH (n) RETURN n").block();
+		assertThat(derivedByBob).isNotNull().extracting(PersistedQuery::owner).isEqualTo("bob");
+		assertThat(derived).isNotNull().extracting(PersistedQuery::id).isNotEqualTo(derivedByBob.id());
+	}
+
+	@Test
+	void shouldRequireStatement() {
+
+		var registry = new FilePersistedQueryRegistry(queryEvaluator(), properties(null));
+		registry.register(principal, "neo4j", "q", "  ")
+			.as(StepVerifier::create)
+			.verifyError(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Michael J. Simons
+ */
+class LongHashSetTest {
+
+	@Test
+	void shouldAddValuesOnlyOnce() {
+
+		var set = new LongHashSet(2);
+		assertThat(set.add(0)).isTrue();
+		assertThat(set.add(0)).isFalse();
+		assertThat(set.add(-1)).isTrue();
+		assertThat(set.add(Long.MIN_VALUE)).isTrue();
+		assertThat(set.add(Long.MAX_VALUE)).isTrue();
+		assertThat(set.add(-1)).isFalse();
+
+		assertThat(set.size()).isEqualTo(4);
+		assertThat(set.contains(0)).isTrue();
+		assertThat(set.contains(1)).isFalse();
+		assertThat(set.toArray()).containsExactlyInAnyOrder(0, -1, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	@Test
+	void shouldGrow() {
+
+		var random = new Random(4711);
+		var expected = new HashSet<Long>();
+		var set = new LongHashSet();
+		for (int i = 0; i < 100_000; ++i) {
+			long value = i % 3 == 0 ? i : random.nextLong(1_000);
+			assertThat(set.add(value)).isEqualTo(expected.add(value));
+		}
+
+		assertThat(set.size()).isEqualTo(expected.size());
+		assertThat(set.toArray()).hasSize(expected.size());
+		expected.forEach(value -> assertThat(set.contains(value)).isTrue());
+		assertThat(set.contains(-1)).isFalse();
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * @author Michael J. Simons
+ */
+class QueryFingerprintTest {
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', textBlock = """
+		MATCH (n:Person {id: 42}) RETURN n                 | MATCH (n:Person {id: 23})   RETURN n
+		MATCH (n:Person {name: 'Alice'}) RETURN n          | MATCH (n:Person {name: "Bob"}) RETURN n
+		MATCH (n) WHERE n.score > 1.5 RETURN n LIMIT 10    | MATCH (n) WHERE n.score > 0x1 RETURN n LIMIT 5
+		MATCH (n) // a comment\\n RETURN n                 | MATCH (n) RETURN n
+		""")
+	void shouldShareFingerprint(String query1, String query2) {
+
+		assertThat(QueryFingerprint.of(query1.replace("\\n", "\n"))).isEqualTo(QueryFingerprint.of(query2));
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', textBlock = """
+		MATCH (n:Person) RETURN n                          | MATCH (n:Company) RETURN n
+		MATCH (n:`Person 42`) RETURN n                     | MATCH (n:`Person 23`) RETURN n
+		CALL apoc.cypher.doIt('CREATE (n) RETURN n', {})   | CALL apoc.cypher.doIt('MATCH (n) RETURN n', {})
+		""")
+	void shouldNotShareFingerprint(String query1, String query2) {
+
+		assertThat(QueryFingerprint.of(query1)).isNotEqualTo(QueryFingerprint.of(query2));
+	}
+
+	@Test
+	void shouldIndicateReplacedLiterals() {
+
+		assertThat(QueryFingerprint.of("MATCH (n {id: 1}) RETURN n").literalsReplaced()).isTrue();
+		assertThat(QueryFingerprint.of("MATCH (n {id: $id}) RETURN n").literalsReplaced()).isFalse();
+	}
+
+	@Test
+	void shouldFallbackToQueryOnLexicalErrors() {
+
+		var query = "MATCH (n {name: 'unterminated}) RETURN n";
+		assertThat(QueryFingerprint.of(query)).isEqualTo(new QueryFingerprint(query, false));
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalPath;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.http.config.ApplicationProperties;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @author Michael J. Simons
+ */
+class RecordBufferTest {
+
+	private static final List<String> KEYS = List.of("i", "s");
+
+	@TempDir
+	Path spillDirectory;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private ResultBuffers resultBuffers(long maxInMemoryPerRequest, long maxInMemory, long maxSize) {
+		return new ResultBuffers(new ApplicationProperties.BufferSettings(
+			DataSize.ofBytes(maxInMemoryPerRequest), DataSize.ofBytes(maxInMemory), DataSize.ofBytes(maxSize), spillDirectory), meterRegistry);
+	}
+
+	private static Record record(int i) {
+		return new InternalRecord(KEYS, new Value[] {Values.value(i), Values.value("Record " + i)});
+	}
+
+	private static List<Record> toList(Iterable<Record> records) {
+
+		var result = new ArrayList<Record>();
+		records.forEach(result::add);
+		return result;
+	}
+
+	private long spillFiles() throws IOException {
+		try (Stream<Path> files = Files.list(spillDirectory)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void shouldKeepRecordsInMemoryWithinBudget() throws IOException {
+
+		var resultBuffers = resultBuffers(1024 * 1024, 1024 * 1024, 1024 * 1024);
+		var budget = resultBuffers.newBudget();
+		var buffer = budget.newBuffer(KEYS);
+		var records = IntStream.range(0, 10).mapToObj(RecordBufferTest::record).toList();
+		records.forEach(buffer::add);
+
+		assertThat(buffer.isSpilled()).isFalse();
+		assertThat(spillFiles()).isZero();
+		assertThat(toList(buffer)).containsExactlyElementsOf(records);
+		assertThat(resultBuffers.inMemory()).isPositive();
+
+		budget.close();
+		assertThat(resultBuffers.inMemory()).isZero();
+	}
+
+	@Test
+	void shouldSpillRecordsExceedingTheBudgetOfTheRequest() throws IOException {
+
+		var resultBuffers = resultBuffers(1024, 1024 * 1024, 1024 * 1024);
+		var budget = resultBuffers.newBudget();
+		var buffer = budget.newBuffer(KEYS);
+		var records = IntStream.range(0, 100).mapToObj(RecordBufferTest::record).toList();
+		records.forEach(buffer::add);
+
+		assertThat(buffer.isSpilled()).isTrue();
+		assertThat(spillFiles()).isOne();
+		assertThat(resultBuffers.inMemory()).isPositive().isLessThanOrEqualTo(1024);
+		// Iterating twice must yield the same records in the same order
+		assertThat(toList(buffer)).containsExactlyElementsOf(records);
+		assertThat(toList(buffer)).containsExactlyElementsOf(records);
+		assertThat(meterRegistry.get(ResultBuffers.SPILLED_METRIC).counter().count()).isEqualTo(1.0);
+
+		budget.close();
+		assertThat(spillFiles()).isZero();
+		assertThat(resultBuffers.inMemory()).isZero();
+	}
+
+	@Test
+	void shouldStopReadingSpilledRecordsWhenClosed() throws IOException {
+
+		var resultBuffers = resultBuffers(0, 0, 1024 * 1024);
+		var budget = resultBuffers.newBudget();
+		var buffer = budget.newBuffer(KEYS);
+		IntStream.range(0, 10).mapToObj(RecordBufferTest::record).forEach(buffer::add);
+
+		var records = buffer.iterator();
+		assertThat(records.next()).isEqualTo(record(0));
+
+		budget.close();
+		assertThat(spillFiles()).isZero();
+		assertThat(records.hasNext()).isFalse();
+		assertThatExceptionOfType(IllegalStateException.class).isThrownBy(records::next);
+	}
+
+	@Test
+	void shouldSpillRecordsExceedingTheGlobalBudget() {
+
+		// Each request may keep 12 records in memory, but only 12 in total
+		var limit = 12 * RecordCodec.estimateSize(record(10));
+		var resultBuffers = resultBuffers(limit, limit, 1024 * 1024);
+		var budget1 = resultBuffers.newBudget();
+		var budget2 = resultBuffers.newBudget();
+		var buffer1 = budget1.newBuffer(KEYS);
+		var buffer2 = budget2.newBuffer(KEYS);
+		for (int i = 0; i < 8; ++i) {
+			buffer1.add(record(i));
+		}
+		assertThat(buffer1.isSpilled()).isFalse();
+
+		for (int i = 0; i < 8; ++i) {
+			buffer2.add(record(i));
+		}
+		assertThat(buffer2.isSpilled()).isTrue();
+
+		budget1.close();
+		budget2.close();
+		assertThat(resultBuffers.inMemory()).isZero();
+	}
+
+	@Test
+	void shouldRejectResultsExceedingTheMaximumSize() {
+
+		var resultBuffers = resultBuffers(1024, 1024, 4096);
+		var budget = resultBuffers.newBudget();
+		var buffer = budget.newBuffer(KEYS);
+
+		assertThatExceptionOfType(ResultTooLargeException.class)
+			.isThrownBy(() -> IntStream.range(0, 1000).mapToObj(RecordBufferTest::record).forEach(buffer::add))
+			.matches(e -> ResultTooLargeException.CODE.equals(e.code()));
+
+		budget.close();
+		assertThat(resultBuffers.inMemory()).isZero();
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void shouldRestoreAllTypesFromDisk() {
+
+		var start = new InternalNode(1, "e1", List.of("Person", "Actor"), Map.of("name", Values.value("Keanu"), "born", Values.value(1964)));
+		var end = new InternalNode(2, "e2", List.of("Movie"), Map.of("title", Values.value("The Matrix")));
+		var actedIn = new InternalRelationship(3, "e3", 1, "e1", 2, "e2", "ACTED_IN", Map.of("roles", Values.value(List.of("Neo"))));
+		var keys = List.of("null", "boolean", "integer", "float", "string", "bytes", "list", "map", "node", "relationship", "path",
+			"point2d", "point3d", "date", "time", "localTime", "localDateTime", "dateTime", "duration");
+		var values = new Value[] {
+			Values.NULL,
+			Values.value(true),
+			Values.value(42L),
+			Values.value(47.11),
+			Values.value("Hello, Wörld"),
+			Values.value(new byte[] {1, 2, 3}),
+			Values.value(List.of(1L, "two", List.of(3.0))),
+			Values.value(Map.of("a", 1L, "b", Map.of("c", "d"))),
+			start.asValue(),
+			actedIn.asValue(),
+			new InternalPath(start, actedIn, end).asValue(),
+			Values.point(4326, 12.99, 55.61),
+			Values.point(4979, 12.99, 55.61, 2.0),
+			Values.value(LocalDate.of(2022, 10, 23)),
+			Values.value(OffsetTime.of(13, 37, 11, 5, ZoneOffset.ofHours(2))),
+			Values.value(LocalTime.of(13, 37, 11, 5)),
+			Values.value(LocalDateTime.of(2022, 10, 18, 13, 37, 11, 5)),
+			Values.value(ZonedDateTime.of(2022, 10, 18, 13, 37, 11, 5, ZoneId.of("Europe/Paris"))),
+			Values.isoDuration(1, 2, 3, 4)
+		};
+		var record = new InternalRecord(keys, values);
+
+		var budget = resultBuffers(0, 0, 1024 * 1024).newBudget();
+		var buffer = budget.newBuffer(keys);
+		buffer.add(record);
+		assertThat(buffer.isSpilled()).isTrue();
+
+		var restored = buffer.iterator().next();
+		assertThat(restored.keys()).isEqualTo(keys);
+		assertThat(restored.values()).isEqualTo(record.values());
+
+		var node = restored.get("node").asNode();
+		assertThat(node.elementId()).isEqualTo("e1");
+		assertThat(node.labels()).containsExactly("Person", "Actor");
+		assertThat(node.asMap()).isEqualTo(start.asMap());
+		var relationship = restored.get("relationship").asRelationship();
+		assertThat(relationship.startNodeElementId()).isEqualTo("e1");
+		assertThat(relationship.endNodeElementId()).isEqualTo("e2");
+		assertThat(relationship.type()).isEqualTo("ACTED_IN");
+		assertThat(relationship.asMap()).isEqualTo(actedIn.asMap());
+		var path = restored.get("path").asPath();
+		assertThat(path.start().id()).isEqualTo(1L);
+		assertThat(path.end().asMap()).isEqualTo(end.asMap());
+		assertThat(path.length()).isOne();
+
+		budget.close();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import java.nio.file.Path;
+
+import org.neo4j.http.config.ApplicationProperties;
+
+/**
+ * Creates {@link ApplicationProperties} for tests, so that the tests don't depend on the order of its components.
+ *
+ * @author Michael J. Simons
+ */
+final class TestApplicationProperties {
+
+	/**
+	 * {@return properties with all settings at their defaults}
+	 */
+	static ApplicationProperties withDefaults() {
+		return new ApplicationProperties(null, false, false, null, false, null, null, false, null, null, null, null, null);
+	}
+
+	/**
+	 * {@return default properties storing persisted queries in the given file}
+	 */
+	static ApplicationProperties withPersistedQueries(Path persistedQueries) {
+		return new ApplicationProperties(null, false, false, null, false, persistedQueries, null, false, null, null, null, null, null);
+	}
+
+	/**
+	 * {@return default properties with the given authentication settings}
+	 */
+	static ApplicationProperties withAuthentication(ApplicationProperties.AuthenticationSettings authentication) {
+		return new ApplicationProperties(null, false, false, null, false, null, null, false, null, null, authentication, null, null);
+	}
+
+	private TestApplicationProperties() {
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.TransactionConfig;
+import org.neo4j.driver.reactivestreams.ReactiveSession;
+import org.neo4j.driver.reactivestreams.ReactiveTransaction;
+import org.neo4j.http.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * @author Michael J. Simons
+ */
+class TransactionRegistryTest {
+
+	private final Neo4jPrincipal alice = new Neo4jPrincipal("alice", AuthTokens.basic("alice", "secret"));
+
+	private final Neo4jPrincipal bob = new Neo4jPrincipal("bob", AuthTokens.basic("bob", "secret"));
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final MutableClock clock = new MutableClock();
+
+	private final ReactiveTransaction transaction = mock(ReactiveTransaction.class);
+
+	private final ReactiveSession session = mock(ReactiveSession.class);
+
+	TransactionRegistryTest() {
+		when(session.beginTransaction(any(TransactionConfig.class))).thenReturn(Mono.just(transaction));
+		when(session.close()).thenReturn(Mono.empty());
+		when(transaction.commit()).thenReturn(Mono.empty());
+		when(transaction.rollback()).thenReturn(Mono.empty());
+	}
+
+	private TransactionRegistry registry(Integer maxOpen, Integer maxPerPrincipal) {
+		return new TransactionRegistry(new ApplicationProperties.TransactionSettings(Duration.ofSeconds(10), Duration.ofMinutes(1), maxOpen, maxPerPrincipal), meterRegistry, clock);
+	}
+
+	private double openTransactions() {
+		return meterRegistry.get(TransactionRegistry.OPEN_TRANSACTIONS_METRIC).gauge().value();
+	}
+
+	@Test
+	void shouldOnlyBeUsableByOwner() {
+
+		var registry = registry(null, null);
+		var id = registry.begin(alice, "neo4j", Mono.just(session)).map(TransactionRegistry.OpenTransaction::id).block();
+		assertThat(id).isNotNull();
+
+		registry.acquire(bob, "neo4j", id).as(StepVerifier::create)
+			.verifyErrorSatisfies(e -> assertThat(e).isInstanceOf(TransactionNotAvailableException.class)
+				.extracting(ex -> ((TransactionNotAvailableException) ex).code()).isEqualTo(TransactionNotAvailableException.NOT_FOUND));
+		registry.acquire(alice, "system", id).as(StepVerifier::create)
+			.verifyError(TransactionNotAvailableException.class);
+
+		var openTransaction = registry.acquire(alice, "neo4j", id).block();
+		assertThat(openTransaction).isNotNull();
+		registry.acquire(alice, "neo4j", id).as(StepVerifier::create)
+			.verifyErrorSatisfies(e -> assertThat(((TransactionNotAvailableException) e).code()).isEqualTo(TransactionNotAvailableException.ACCESSED_CONCURRENTLY));
+
+		registry.commit(openTransaction).as(StepVerifier::create).verifyComplete();
+		verify(transaction).commit();
+		verify(session).close();
+		assertThat(openTransactions()).isZero();
+		assertThat(meterRegistry.get(TransactionRegistry.TRANSACTIONS_METRIC).tag("outcome", "committed").timer().count()).isOne();
+
+		registry.acquire(alice, "neo4j", id).as(StepVerifier::create)
+			.verifyError(TransactionNotAvailableException.class);
+	}
+
+	@Test
+	void shouldBeUsableByTheSameUserAcrossRequests() {
+
+		var registry = registry(null, null);
+		var id = registry.begin(alice, "neo4j", Mono.just(session)).map(TransactionRegistry.OpenTransaction::id).block();
+		assertThat(id).isNotNull();
+
+		// The principal of the next request carries a different token and has been verified in the meantime
+		var aliceLater = new Neo4jPrincipal("alice", AuthTokens.bearer("token-of-alice"), true);
+		var openTransaction = registry.acquire(aliceLater, "neo4j", id).block();
+		assertThat(openTransaction).isNotNull();
+		registry.rollback(openTransaction).as(StepVerifier::create).verifyComplete();
+		assertThat(openTransactions()).isZero();
+	}
+
+	@Test
+	void shouldEnforceLimits() {
+
+		var registry = registry(3, 2);
+		var first = registry.begin(alice, "neo4j", Mono.just(session)).block();
+		registry.begin(alice, "neo4j", Mono.just(session)).block();
+
+		registry.begin(alice, "neo4j", Mono.just(session)).as(StepVerifier::create)
+			.verifyErrorSatisfies(e -> assertThat(((TransactionNotAvailableException) e).code()).isEqualTo(TransactionNotAvailableException.LIMIT_REACHED));
+		registry.begin(bob, "neo4j", Mono.just(session)).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+		registry.begin(bob, "neo4j", Mono.just(session)).as(StepVerifier::create)
+			.verifyError(TransactionNotAvailableException.class);
+		assertThat(openTransactions()).isEqualTo(3.0);
+
+		assertThat(first).isNotNull();
+		registry.rollback(first).as(StepVerifier::create).verifyComplete();
+		registry.begin(alice, "neo4j", Mono.just(session)).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+	}
+
+	@Test
+	void shouldReleaseReservationWhenBeginFails() {
+
+		var registry = registry(1, 1);
+		registry.begin(alice, "neo4j", Mono.error(new IllegalStateException("no session"))).as(StepVerifier::create)
+			.verifyError(IllegalStateException.class);
+		registry.begin(alice, "neo4j", Mono.just(session)).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+	}
+
+	@Test
+	void shouldReapIdleAndOverdueTransactions() {
+
+		var registry = registry(null, null);
+		var idle = registry.begin(alice, "neo4j", Mono.just(session)).block();
+		var busy = registry.begin(alice, "neo4j", Mono.just(session)).block();
+		assertThat(idle).isNotNull();
+		assertThat(busy).isNotNull();
+
+		clock.advance(Duration.ofSeconds(5));
+		var expires = registry.release(registry.acquire(alice, "neo4j", idle.id()).block());
+		assertThat(expires).isEqualTo(clock.instant().plusSeconds(10));
+		registry.acquire(alice, "neo4j", busy.id()).block();
+
+		clock.advance(Duration.ofSeconds(9));
+		registry.reap();
+		assertThat(openTransactions()).isEqualTo(2.0);
+		verify(transaction, never()).rollback();
+
+		clock.advance(Duration.ofSeconds(1));
+		registry.reap();
+		assertThat(openTransactions()).isEqualTo(1.0);
+		assertThat(meterRegistry.get(TransactionRegistry.TRANSACTIONS_METRIC).tag("outcome", "expired").timer().count()).isOne();
+
+		// Transactions in use are not reaped, but expire at the latest after their maximum duration
+		registry.release(busy);
+		clock.advance(Duration.ofSeconds(50));
+		registry.acquire(alice, "neo4j", busy.id()).map(registry::release).as(StepVerifier::create)
+			.expectNext(Instant.parse("2022-10-26T07:21:21Z"))
+			.verifyComplete();
+		registry.reap();
+		assertThat(openTransactions()).isZero();
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant now = Instant.parse("2022-10-26T07:20:21Z");
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(java.time.ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
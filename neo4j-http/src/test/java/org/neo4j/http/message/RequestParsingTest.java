@@ -19,6 +19,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.mock;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -29,6 +30,8 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -38,16 +41,22 @@ import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Value;
 import org.neo4j.driver.Values;
 import org.neo4j.http.config.JacksonConfig;
 import org.neo4j.http.db.AnnotatedQuery;
+import org.neo4j.http.db.PersistedQuery;
+import org.neo4j.http.db.QueryEvaluator;
+import org.neo4j.http.db.QueryFingerprint;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 /**
  * Test to ensure message parsing works correct.
@@ -117,6 +126,135 @@ class RequestParsingTest {
 		});
 	}
 
+	@Test
+	void marshalSingleCypherRequestFromPayload() throws JsonProcessingException {
+		var payload = """
+					{
+						"parameters": {"name": "Neo4j-HTTP-Proxy"},
+						"fetchSize": 10,
+						"statement": "MATCH (n) RETURN n"
+				}""";
+		var cypherRequest = objectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.single()).isTrue();
+		assertThat(cypherRequest.value()).singleElement().satisfies(annotatedQuery -> {
+			assertThat(annotatedQuery.fetchSize()).isEqualTo(10);
+			assertThat(annotatedQuery.value().text()).isEqualTo("MATCH (n) RETURN n");
+			assertThat(annotatedQuery.value().parameters().asMap(Function.identity())).containsEntry("name", Values.value("Neo4j-HTTP-Proxy"));
+		});
+
+		assertThat(objectMapper.readValue("{\"statements\": [{\"statement\": \"RETURN 1\"}]}", AnnotatedQuery.Container.class).single()).isFalse();
+	}
+
+	@Test
+	void marshalFetchSize() throws JsonProcessingException {
+		var payload = """
+					{
+						"statements": [
+							{"statement": "MATCH (n) RETURN n", "fetchSize": 500},
+							{"statement": "MATCH (n) RETURN n"}
+						]
+				}""";
+
+		var cypherRequest = objectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.value()).extracting(AnnotatedQuery::fetchSize).containsExactly(500, null);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"\"500\"", "1.5", "true", "4294967296", "[500]"})
+	void throwExceptionOnFetchSizesThatAreNoIntegers(String fetchSize) {
+		var payload = "{\"statements\": [{\"statement\": \"MATCH (n) RETURN n\", \"fetchSize\": %s}]}".formatted(fetchSize);
+
+		assertThatExceptionOfType(MismatchedInputException.class).isThrownBy(() -> objectMapper.readValue(payload, AnnotatedQuery.Container.class))
+				.withMessageContaining("Field fetchSize requires an integer");
+	}
+
+	@Test
+	void marshalNestedParametersAndIgnoreUnknownFields() throws JsonProcessingException {
+		var payload = """
+					{
+						"statements": [
+							{
+								"unknown": {"a": [1, {"b": 2}]},
+								"parameters": {
+									"rows": [{"id": 1, "big": 4294967296, "score": 1.5, "tags": ["a", null], "active": true}],
+									"date": {"$type": "Date", "_value": "2022-10-21"}
+								},
+								"statement": "UNWIND $rows AS row RETURN row",
+								"includeStats": true
+							}
+						]
+				}""";
+
+		var cypherRequest = objectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.value()).singleElement().satisfies(query -> {
+			assertThat(query.value().text()).isEqualTo("UNWIND $rows AS row RETURN row");
+			assertThat(query.includeStats()).isTrue();
+			var parameters = query.value().parameters();
+			assertThat(parameters.get("date")).isEqualTo(Values.value(LocalDate.of(2022, 10, 21)));
+			var row = parameters.get("rows").get(0);
+			assertThat(row.keys()).containsExactlyInAnyOrder("id", "big", "score", "tags", "active");
+			assertThat(row.get("id")).isEqualTo(Values.value(1));
+			assertThat(row.get("big")).isEqualTo(Values.value(4294967296L));
+			assertThat(row.get("score")).isEqualTo(Values.value(1.5));
+			assertThat(row.get("tags").asList(Function.identity())).containsExactly(Values.value("a"), Values.NULL);
+			assertThat(row.get("active")).isEqualTo(Values.value(true));
+		});
+	}
+
+	@Test
+	void marshalBinaryParametersFromSmile() throws IOException {
+
+		var smileObjectMapper = objectMapper.copyWith(new SmileFactory());
+		var payload = smileObjectMapper.writeValueAsBytes(Map.of("statements", List.of(Map.of(
+			"statement", "RETURN $a, $b",
+			"parameters", Map.of(
+				"a", new byte[] {1, 2, 3},
+				"b", Map.of("$type", "Byte[]", "_value", new byte[] {4, 5})
+			)
+		))));
+
+		var cypherRequest = smileObjectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.value()).singleElement().satisfies(query -> {
+			var parameters = query.value().parameters();
+			assertThat(parameters.get("a").asByteArray()).containsExactly(1, 2, 3);
+			assertThat(parameters.get("b").asByteArray()).containsExactly(4, 5);
+		});
+	}
+
+	@Test
+	void marshalPersistedQueryFromPayload() throws JsonProcessingException {
+
+		var statement = "MATCH (n:Person {name: $name}) RETURN n";
+		var persistedQuery = new PersistedQuery("findPerson", "neo4j", "neo4j", statement, QueryFingerprint.of(statement),
+			new QueryEvaluator.ExecutionRequirements(QueryEvaluator.Target.READERS, QueryEvaluator.TransactionMode.MANAGED));
+		var customObjectMapper = new ObjectMapper().registerModule(new DefaultRequestFormatModule(id -> Optional.of(persistedQuery).filter(q -> q.id().equals(id))));
+		var payload = """
+					{
+						"statements": [
+							{
+								"id": "findPerson",
+								"parameters": {"name": "Neo4j-HTTP-Proxy"}
+							}
+						]
+				}""";
+
+		var cypherRequest = customObjectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.value()).singleElement().satisfies(query -> {
+			assertThat(query.persistedQuery()).isSameAs(persistedQuery);
+			assertThat(query.text()).isEqualTo(statement);
+			assertThat(query.value().parameters().asMap(Function.identity())).containsEntry("name", Values.value("Neo4j-HTTP-Proxy"));
+		});
+		assertThatExceptionOfType(JsonMappingException.class)
+			.isThrownBy(() -> customObjectMapper.readValue("{\"statements\": [{\"id\": \"unknown\"}]}", AnnotatedQuery.Container.class))
+			.withRootCauseInstanceOf(IllegalArgumentException.class)
+			.havingRootCause().withMessage("Unknown persisted query unknown");
+	}
+
 	private static Stream<Arguments> simpleTypesParams() {
 		return Stream.of(
 				Arguments.of("Boolean", true, true),
@@ -288,4 +426,29 @@ class RequestParsingTest {
 				.withMessage("Value true (type BOOLEAN) for type Date has to be String-based.");
 
 	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"{\"statements\": [{\"statement\": {\"text\": \"RETURN 1\"}}]}",
+		"{\"statements\": [{\"statement\": \"RETURN 1\", \"id\": [\"a\"]}]}",
+		"{\"statements\": [{\"statement\": \"RETURN 1\", \"includeStats\": {\"value\": true}}]}"
+	})
+	void throwExceptionOnStructuredValuesOfScalarFields(String payload) {
+
+		assertThatExceptionOfType(MismatchedInputException.class).isThrownBy(() -> objectMapper.readValue(payload, AnnotatedQuery.Container.class))
+				.withMessageContaining("requires a scalar value");
+	}
+
+	@Test
+	void marshalIntegersUpTo64Bits() throws JsonProcessingException {
+		var payload = """
+				{"statements": [{"statement": "RETURN $value", "parameters": {"value": 9223372036854775807}}]}""";
+
+		var cypherRequest = objectMapper.readValue(payload, AnnotatedQuery.Container.class);
+
+		assertThat(cypherRequest.value().get(0).value().parameters().get("value").asLong()).isEqualTo(Long.MAX_VALUE);
+		assertThatExceptionOfType(MismatchedInputException.class)
+				.isThrownBy(() -> objectMapper.readValue(payload.replace("9223372036854775807", "9223372036854775808"), AnnotatedQuery.Container.class))
+				.withMessageContaining("Integer 9223372036854775808 does not fit into 64 bits");
+	}
 }
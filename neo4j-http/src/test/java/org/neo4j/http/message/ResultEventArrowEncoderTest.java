@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.util.Text;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.http.config.JacksonConfig;
+import org.neo4j.http.db.EagerResult;
+import org.neo4j.http.db.ResultEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Reads the written Arrow streams back.
+ */
+class ResultEventArrowEncoderTest {
+
+	private final ResultEventArrowEncoder encoder;
+
+	ResultEventArrowEncoderTest() {
+
+		var jacksonObjectMapperBuilder = new Jackson2ObjectMapperBuilder();
+		new JacksonConfig().objectMapperBuilderCustomizer(mock(Driver.class)).customize(jacksonObjectMapperBuilder);
+
+		this.encoder = new ResultEventArrowEncoder(jacksonObjectMapperBuilder.build(), 2);
+	}
+
+	private static ResultEvent.Data data(List<String> keys, Value... values) {
+		return new ResultEvent.Data(new EagerResult.ResultData(new InternalRecord(keys, values), null, null));
+	}
+
+	private List<String> encode(ResultEvent... events) {
+
+		return DataBufferUtils.join(encoder.encode(Flux.just(events), DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), ResultEventArrowEncoder.APPLICATION_ARROW_STREAM, null))
+			.map(buffer -> {
+				var bytes = new byte[buffer.readableByteCount()];
+				buffer.read(bytes);
+				return read(bytes);
+			})
+			.block();
+	}
+
+	/**
+	 * {@return the schema followed by one line per batch}
+	 */
+	private static List<String> read(byte[] bytes) {
+
+		var result = new ArrayList<String>();
+		try (
+			var allocator = new RootAllocator();
+			var reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), allocator)
+		) {
+			var root = reader.getVectorSchemaRoot();
+			result.add(root.getSchema().getFields().stream().map(Field::toString).toList().toString());
+			while (reader.loadNextBatch()) {
+				result.add(root.contentToTSVString().trim());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	@Test
+	void shouldOnlyEncodeArrow() {
+
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), ResultEventArrowEncoder.APPLICATION_ARROW_STREAM)).isTrue();
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_JSON)).isFalse();
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), null)).isFalse();
+	}
+
+	@Test
+	void shouldWriteSchemaForEmptyResult() {
+
+		assertThat(encode(new ResultEvent.Header(List.of("n")), new ResultEvent.Summary(null, List.of())))
+			.containsExactly("[n: Utf8]");
+	}
+
+	@Test
+	void shouldWriteBatches() {
+
+		var keys = List.of("i", "s", "d", "dt", "m");
+		var events = Stream.concat(
+			Stream.of(new ResultEvent.Header(keys)),
+			IntStream.range(0, 5).mapToObj(i -> data(keys,
+				Values.value(i),
+				i == 1 ? Values.NULL : Values.value("s" + i),
+				Values.value(LocalDate.of(2022, 10, 21).plusDays(i)),
+				Values.value(ZonedDateTime.of(2022, 10, 21, 7, 20, i, 0, ZoneOffset.ofHours(2))),
+				Values.value(Map.of("a", i))
+			))
+		).toArray(ResultEvent[]::new);
+
+		var result = encode(events);
+		assertThat(result).hasSize(4);
+		assertThat(result.get(0)).isEqualTo("[i: Int(64, true), s: Utf8, d: Date(DAY), dt: Timestamp(MICROSECOND, UTC), m: Utf8]");
+		// Dates are days since the epoch, timestamps are microseconds since the epoch in UTC
+		assertThat(result.get(1)).endsWith("0\ts0\t19286\t1666329600000000\t{\"a\":0}\n1\tnull\t19287\t1666329601000000\t{\"a\":1}");
+		assertThat(result.get(3)).endsWith("4\ts4\t19290\t1666329604000000\t{\"a\":4}");
+	}
+
+	@Test
+	void shouldWriteTimestampsFarFromTheEpoch() {
+
+		var keys = List.of("past", "future");
+		var result = encode(data(keys, Values.value(LocalDateTime.of(1500, 1, 1, 0, 0)), Values.value(LocalDateTime.of(3000, 1, 1, 0, 0, 0, 1_001))));
+		assertThat(result.get(0)).isEqualTo("[past: Timestamp(MICROSECOND, null), future: Timestamp(MICROSECOND, null)]");
+		// Nanoseconds are truncated
+		assertThat(result.get(1)).endsWith("1500-01-01T00:00\t3000-01-01T00:00:00.000001");
+	}
+
+	@Test
+	void shouldWriteTemporalValuesOutsideTheRangeOfArrowAsJson() {
+
+		var keys = List.of("d", "ldt");
+		var result = encode(data(keys, Values.value(LocalDate.MAX), Values.value(LocalDateTime.MIN)));
+		assertThat(result.get(0)).isEqualTo("[d: Utf8, ldt: Utf8]");
+		assertThat(result.get(1)).endsWith("{\"$type\":\"Date\",\"_value\":\"+999999999-12-31\"}\t{\"$type\":\"LocalDateTime\",\"_value\":\"-999999999-01-01T00:00:00\"}");
+	}
+
+	@Test
+	void shouldAddCypherTypesToMetadata() {
+
+		var keys = List.of("b", "x");
+		var bytes = DataBufferUtils.join(encoder.encode(Flux.just(data(keys, Values.value(new byte[] {1}), Values.value(1.0)), data(keys, Values.value(new byte[] {2}), Values.value("x"))),
+				DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), ResultEventArrowEncoder.APPLICATION_ARROW_STREAM, null))
+			.map(buffer -> {
+				var content = new byte[buffer.readableByteCount()];
+				buffer.read(content);
+				return content;
+			})
+			.block();
+
+		try (
+			var allocator = new RootAllocator();
+			var reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), allocator)
+		) {
+			var fields = reader.getVectorSchemaRoot().getSchema().getFields();
+			assertThat(fields.get(0).getMetadata()).containsEntry("neo4j:type", "Byte[]");
+			assertThat(fields.get(1).getMetadata()).containsEntry("neo4j:encoding", "json");
+			assertThat(reader.loadNextBatch()).isTrue();
+			assertThat(reader.getVectorSchemaRoot().getVector("x").getObject(1)).isEqualTo(new Text("\"x\""));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	void shouldFailOnChangingTypes() {
+
+		var keys = List.of("n");
+		var events = Flux.<ResultEvent>just(data(keys, Values.value(1)), data(keys, Values.value(2)), data(keys, Values.value("3")));
+		var buffers = encoder.encode(events, DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), ResultEventArrowEncoder.APPLICATION_ARROW_STREAM, null);
+
+		assertThatExceptionOfType(IllegalStateException.class)
+			.isThrownBy(buffers::blockLast)
+			.withMessage("Column n has been written as INTEGER and cannot contain a value of type STRING");
+	}
+
+	@Test
+	void shouldFailBeforeFirstBatch() {
+
+		var buffers = encoder.encode(Flux.just(new ResultEvent.Header(List.of("n")), new ResultEvent.Failure(new Neo4jException("Neo.ClientError.Statement.ArithmeticError", "/ by zero"))),
+			DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), ResultEventArrowEncoder.APPLICATION_ARROW_STREAM, null);
+
+		assertThatExceptionOfType(Neo4jException.class).isThrownBy(buffers::blockFirst);
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.http.config.JacksonConfig;
+import org.neo4j.http.db.EagerResult;
+import org.neo4j.http.db.ResultEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import reactor.core.publisher.Flux;
+
+/**
+ * Makes sure the streamed result has the same shape as the buffered one.
+ */
+class ResultEventEncoderTest {
+
+	private final ResultEventEncoder encoder;
+
+	private final ObjectMapper smileObjectMapper;
+
+	ResultEventEncoderTest() {
+
+		var jacksonObjectMapperBuilder = new Jackson2ObjectMapperBuilder();
+		new JacksonConfig().objectMapperBuilderCustomizer(mock(Driver.class)).customize(jacksonObjectMapperBuilder);
+
+		this.encoder = new ResultEventEncoder(jacksonObjectMapperBuilder.build());
+		this.smileObjectMapper = jacksonObjectMapperBuilder.factory(new SmileFactory()).build();
+	}
+
+	private String encode(ResultEvent... events) {
+
+		return DataBufferUtils.join(encoder.encode(Flux.just(events), DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_JSON, null))
+			.map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+			.block();
+	}
+
+	@Test
+	void shouldOnlyEncodeResultEvents() {
+
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.Data.class), MediaType.APPLICATION_JSON)).isTrue();
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_NDJSON)).isFalse();
+		assertThat(encoder.canEncode(ResolvableType.forClass(Object.class), MediaType.APPLICATION_JSON)).isFalse();
+	}
+
+	@Test
+	void shouldRenderSmile() throws IOException {
+
+		var smileEncoder = new ResultEventEncoder(smileObjectMapper, ResultEventEncoder.APPLICATION_SMILE);
+		assertThat(smileEncoder.canEncode(ResolvableType.forClass(ResultEvent.class), ResultEventEncoder.APPLICATION_SMILE)).isTrue();
+		assertThat(smileEncoder.canEncode(ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_JSON)).isFalse();
+
+		var record = new InternalRecord(List.of("n", "b"), new Value[] {Values.value(1), Values.value(new byte[] {1, 2, 3})});
+		var smile = DataBufferUtils.join(smileEncoder.encode(Flux.just(
+				new ResultEvent.Header(List.of("n", "b")),
+				new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+				new ResultEvent.Summary(null, List.of())
+			), DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), ResultEventEncoder.APPLICATION_SMILE, null))
+			.map(buffer -> {
+				var bytes = new byte[buffer.readableByteCount()];
+				buffer.read(bytes);
+				return bytes;
+			})
+			.block();
+
+		var result = smileObjectMapper.readTree(smile);
+		assertThat(result.at("/results/0/columns").toString()).isEqualTo("[\"n\",\"b\"]");
+		assertThat(result.at("/results/0/data/0/row/0").intValue()).isOne();
+		assertThat(result.at("/results/0/data/0/row/1").binaryValue()).containsExactly(1, 2, 3);
+		assertThat(result.at("/errors").isEmpty()).isTrue();
+	}
+
+	@Test
+	void shouldRenderEmptyResult() {
+
+		assertThat(encode()).isEqualTo("{\"results\":[],\"notifications\":[],\"errors\":[]}");
+	}
+
+	@Test
+	void shouldRenderOpenTransaction() {
+
+		assertThat(encode(new ResultEvent.Transaction(23, "movies", Instant.parse("2022-10-26T07:20:21Z"))))
+			.isEqualTo("{\"results\":[],\"notifications\":[],\"errors\":[],\"commit\":\"/db/movies/tx/23/commit\",\"transaction\":{\"expires\":\"Wed, 26 Oct 2022 07:20:21 GMT\"}}");
+	}
+
+	@Test
+	void shouldRenderResults() {
+
+		var record = new InternalRecord(List.of("n", "m"), new Value[] {Values.value(1), Values.value("x")});
+		var json = encode(
+			new ResultEvent.Header(List.of("n", "m")),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Summary(null, List.of()),
+			new ResultEvent.Header(List.of()),
+			new ResultEvent.Summary(null, List.of())
+		);
+		assertThat(json).isEqualTo("{\"results\":[" +
+			"{\"columns\":[\"n\",\"m\"],\"data\":[{\"row\":[1,\"x\"],\"meta\":[null,null]},{\"row\":[1,\"x\"],\"meta\":[null,null]}]}," +
+			"{\"columns\":[],\"data\":[]}" +
+			"],\"notifications\":[],\"errors\":[]}");
+	}
+
+	@Test
+	void shouldCloseResultsOnFailure() {
+
+		var record = new InternalRecord(List.of("n"), new Value[] {Values.value(1)});
+		var json = encode(
+			new ResultEvent.Header(List.of("n")),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Failure(new Neo4jException("Neo.ClientError.Statement.ArithmeticError", "/ by zero"))
+		);
+		assertThat(json).isEqualTo("{\"results\":[" +
+			"{\"columns\":[\"n\"],\"data\":[{\"row\":[1],\"meta\":[null]}]}" +
+			"],\"notifications\":[],\"errors\":[{\"code\":\"Neo.ClientError.Statement.ArithmeticError\",\"message\":\"/ by zero\"}]}");
+	}
+}
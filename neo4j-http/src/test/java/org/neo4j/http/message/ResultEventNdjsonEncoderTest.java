@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.http.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.http.config.JacksonConfig;
+import org.neo4j.http.db.EagerResult;
+import org.neo4j.http.db.ResultEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Makes sure that each event is rendered into its own frame.
+ */
+class ResultEventNdjsonEncoderTest {
+
+	private final ResultEventNdjsonEncoder encoder;
+
+	ResultEventNdjsonEncoderTest() {
+
+		var jacksonObjectMapperBuilder = new Jackson2ObjectMapperBuilder();
+		new JacksonConfig().objectMapperBuilderCustomizer(mock(Driver.class)).customize(jacksonObjectMapperBuilder);
+
+		this.encoder = new ResultEventNdjsonEncoder(jacksonObjectMapperBuilder.build());
+	}
+
+	private List<String> encode(ResultEvent... events) {
+
+		return encoder.encode(Flux.just(events), DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_NDJSON, null)
+			.map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+			.collectList()
+			.block();
+	}
+
+	@Test
+	void shouldOnlyEncodeResultEvents() {
+
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_NDJSON)).isTrue();
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_JSON)).isFalse();
+		assertThat(encoder.canEncode(ResolvableType.forClass(ResultEvent.class), null)).isFalse();
+		assertThat(encoder.canEncode(ResolvableType.forClass(DataBuffer.class), MediaType.APPLICATION_NDJSON)).isFalse();
+	}
+
+	@Test
+	void shouldRenderFramesForEachStatement() {
+
+		var record = new InternalRecord(List.of("n"), new Value[] {Values.value(1)});
+		var lines = encode(
+			new ResultEvent.Header(List.of("n")),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Summary(null, List.of()),
+			new ResultEvent.Header(List.of("n")),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Failure(new Neo4jException("Neo.ClientError.Statement.ArithmeticError", "/ by zero")),
+			new ResultEvent.Failure(new Neo4jException("Neo.ClientError.Statement.SyntaxError", "Invalid input"))
+		);
+		assertThat(lines).containsExactly(
+			"{\"statement\":0,\"header\":{\"columns\":[\"n\"]}}\n",
+			"{\"statement\":0,\"data\":{\"row\":[1],\"meta\":[null]}}\n",
+			"{\"statement\":0,\"summary\":{\"notifications\":[]}}\n",
+			"{\"statement\":1,\"header\":{\"columns\":[\"n\"]}}\n",
+			"{\"statement\":1,\"data\":{\"row\":[1],\"meta\":[null]}}\n",
+			"{\"statement\":1,\"error\":{\"code\":\"Neo.ClientError.Statement.ArithmeticError\",\"message\":\"/ by zero\"}}\n",
+			"{\"statement\":2,\"error\":{\"code\":\"Neo.ClientError.Statement.SyntaxError\",\"message\":\"Invalid input\"}}\n"
+		);
+	}
+
+	@Test
+	void shouldRenderPlainRecordsWithoutHeader() {
+
+		var record = new InternalRecord(List.of("n", "m"), new Value[] {Values.value(1), Values.value("x")});
+		var lines = encode(
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null)),
+			new ResultEvent.Data(new EagerResult.ResultData(record, null, null))
+		);
+		assertThat(lines).containsExactly("{\"n\":1,\"m\":\"x\"}\n", "{\"n\":1,\"m\":\"x\"}\n");
+	}
+
+	@Test
+	void shouldRenderPlainRecordsWithChangingColumns() {
+
+		var record1 = new InternalRecord(List.of("n", "m"), new Value[] {Values.value(1), Values.value("x")});
+		var record2 = new InternalRecord(List.of("n", "m"), new Value[] {Values.value(2), Values.value("y")});
+		var record3 = new InternalRecord(List.of("a"), new Value[] {Values.value(true)});
+		var lines = encode(
+			new ResultEvent.Data(new EagerResult.ResultData(record1, null, null)),
+			new ResultEvent.Data(new EagerResult.ResultData(record2, null, null)),
+			new ResultEvent.Data(new EagerResult.ResultData(record3, null, null))
+		);
+		assertThat(lines).containsExactly("{\"n\":1,\"m\":\"x\"}\n", "{\"n\":2,\"m\":\"y\"}\n", "{\"a\":true}\n");
+	}
+
+	@Test
+	void shouldWriteIntoBuffersOfTheFactory() {
+
+		var bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+		var record = new InternalRecord(List.of("n"), new Value[] {Values.value(1)});
+		var buffers = encoder.encode(Flux.just(new ResultEvent.Data(new EagerResult.ResultData(record, null, null))), bufferFactory, ResolvableType.forClass(ResultEvent.class), MediaType.APPLICATION_NDJSON, null)
+			.collectList()
+			.block();
+
+		assertThat(buffers).singleElement().isInstanceOf(NettyDataBuffer.class)
+			.satisfies(buffer -> assertThat(buffer.toString(StandardCharsets.UTF_8)).isEqualTo("{\"n\":1}\n"));
+		buffers.forEach(DataBufferUtils::release);
+		assertThat(((NettyDataBuffer) buffers.get(0)).getNativeBuffer().refCnt()).isZero();
+	}
+}